@@ -0,0 +1,88 @@
+package otp.sf.configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Подключение реплики для read-only запросов
+ * Включается свойством spring.datasource.replica.enabled, иначе используется
+ * стандартный DataSource Spring Boot
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "spring.datasource.replica", name = "enabled", havingValue = "true")
+public class DataSourceConfiguration {
+
+    // Адрес реплики
+    @Value("${spring.datasource.replica.url}")
+    private String replicaUrl;
+
+    @Value("${spring.datasource.replica.username:${spring.datasource.username}}")
+    private String replicaUsername;
+
+    @Value("${spring.datasource.replica.password:${spring.datasource.password}}")
+    private String replicaPassword;
+
+    // Запрос отставания реплики в миллисекундах
+    @Value("${spring.datasource.replica.lag-query}")
+    private String lagQuery;
+
+    // Максимальное допустимое отставание реплики в миллисекундах
+    @Value("${spring.datasource.replica.max-lag-millis:1000}")
+    private long maxLagMillis;
+
+    // Сколько миллисекунд после записи пользователь читает с основной БД
+    @Value("${spring.datasource.replica.read-your-writes-millis:5000}")
+    private long pinMillis;
+
+    @Bean(destroyMethod = "close")
+    public ReplicaRoutingDataSource routingDataSource(final DataSourceProperties properties,
+                                                      final Environment environment,
+                                                      final MeterRegistry meterRegistry) {
+        final var binder = Binder.get(environment);
+
+        final var primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName("primary");
+
+        final var replica = new HikariDataSource();
+        replica.setDriverClassName(properties.determineDriverClassName());
+        replica.setJdbcUrl(replicaUrl);
+        replica.setUsername(replicaUsername);
+        replica.setPassword(replicaPassword);
+        binder.bind("spring.datasource.replica.hikari", Bindable.ofInstance(replica));
+        replica.setPoolName("replica");
+        replica.setReadOnly(true);
+
+        final var routing = new ReplicaRoutingDataSource(primary, replica, lagQuery, maxLagMillis, pinMillis);
+        routing.afterPropertiesSet();
+
+        Gauge.builder("datasource.replica.lag", routing, ReplicaRoutingDataSource::getReplicaLagMillis)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("datasource.replica.available", routing, source -> source.isReplicaAvailable() ? 1 : 0)
+                .register(meterRegistry);
+        return routing;
+    }
+
+    /**
+     * Соединение берется при первом запросе, когда признак read-only транзакции уже известен
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(final ReplicaRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
@@ -1,14 +1,17 @@
 package otp.sf.configuration;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -26,6 +29,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtService jwtService;
     private final UserService userService;
 
+    // Пользователь определяется по claim id через кеш пользователей, а не поиском по имени в БД
+    @Value("${security.token.claims-principal:true}")
+    private boolean claimsPrincipal;
+
     @Override
     protected void doFilterInternal(
             @NonNull HttpServletRequest request,
@@ -40,17 +47,16 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
-        // Обрезаем префикс и получаем имя пользователя из токена
+        // Обрезаем префикс, разбираем токен один раз и получаем имя пользователя
         var jwt = authHeader.substring(BEARER_PREFIX.length());
-        var username = jwtService.extractUserName(jwt);
+        var claims = jwtService.parseToken(jwt);
+        var username = claims.getSubject();
 
         if (StringUtils.isNotEmpty(username) && SecurityContextHolder.getContext().getAuthentication() == null) {
-            var userDetails = userService
-                    .userDetailsService()
-                    .loadUserByUsername(username);
+            var userDetails = loadUser(claims);
 
             // Если токен валиден, то аутентифицируем пользователя
-            if (jwtService.isTokenValid(jwt, userDetails)) {
+            if (userDetails != null && jwtService.isTokenValid(claims, userDetails)) {
                 var context = SecurityContextHolder.createEmptyContext();
 
                 var authToken = new UsernamePasswordAuthenticationToken(
@@ -66,4 +72,20 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * Загрузка пользователя, указанного в токене
+     *
+     * @param claims данные токена
+     * @return пользователь или null, если он удален
+     */
+    private UserDetails loadUser(final Claims claims) {
+        final var id = claims.get("id", Long.class);
+        if (claimsPrincipal && id != null) {
+            return userService.findById(id).orElse(null);
+        }
+        return userService
+                .userDetailsService()
+                .loadUserByUsername(claims.getSubject());
+    }
 }
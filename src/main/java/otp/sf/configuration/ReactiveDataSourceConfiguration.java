@@ -0,0 +1,66 @@
+package otp.sf.configuration;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.time.Duration;
+
+/**
+ * Пул R2DBC для неблокирующих эндпоинтов OTP-кодов
+ * Включается свойством otp.reactive.enabled. Пул не регистрируется бином ConnectionFactory:
+ * иначе Spring Boot отключил бы JDBC DataSource, на котором работают JPA и Flyway.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "otp.reactive", name = "enabled", havingValue = "true")
+public class ReactiveDataSourceConfiguration {
+
+    // Адрес БД в формате r2dbc:postgresql://host:port/database
+    @Value("${otp.reactive.r2dbc.url}")
+    private String url;
+
+    @Value("${otp.reactive.r2dbc.username:${spring.datasource.username}}")
+    private String username;
+
+    @Value("${otp.reactive.r2dbc.password:${spring.datasource.password}}")
+    private String password;
+
+    // Размер пула соединений: запросы ждут соединение без блокировки потока
+    @Value("${otp.reactive.r2dbc.pool-size:10}")
+    private int poolSize;
+
+    // Максимальное время ожидания соединения из пула в миллисекундах
+    @Value("${otp.reactive.r2dbc.max-acquire-millis:3000}")
+    private long maxAcquireMillis;
+
+    private ConnectionPool pool;
+
+    @Bean
+    public DatabaseClient reactiveDatabaseClient() {
+        final var options = ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build();
+        pool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .name("reactive")
+                .initialSize(poolSize)
+                .maxSize(poolSize)
+                .maxAcquireTime(Duration.ofMillis(maxAcquireMillis))
+                .build());
+        return DatabaseClient.create(pool);
+    }
+
+    @PreDestroy
+    void close() {
+        if (pool != null) {
+            pool.dispose();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package otp.sf.configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import otp.sf.domain.model.User;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Маршрутизация соединений между основной БД и репликой
+ * На реплику уходят только read-only транзакции запросов пользователей, и только пока отставание
+ * реплики не превышает допустимое. После фиксации пишущей транзакции пользователь на время
+ * закрепляется за основной БД, чтобы сразу видеть свои изменения (read-your-writes).
+ * Закрепление хранится в памяти экземпляра и действует только для запросов, попавших на него же.
+ * Поэтому момент окончания закрепления также возвращается клиенту заголовком {@value #PIN_HEADER}:
+ * клиент, передавший заголовок обратно, читает с основной БД на любом экземпляре.
+ * Фоновые задачи без пользователя всегда работают с основной БД.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    /**
+     * Заголовок с моментом окончания закрепления за основной БД (миллисекунды эпохи)
+     */
+    public static final String PIN_HEADER = "X-Primary-Until";
+
+    enum Target {
+        PRIMARY,
+        REPLICA
+    }
+
+    private final HikariDataSource primary;
+    private final HikariDataSource replica;
+    private final JdbcTemplate replicaTemplate;
+    private final String lagQuery;
+    private final long maxLagMillis;
+    private final long pinMillis;
+
+    // Пользователи, закрепленные за основной БД, и момент окончания закрепления
+    private final Map<Long, Long> pinnedUntil = new ConcurrentHashMap<>();
+    private volatile boolean replicaAvailable;
+    private volatile long replicaLagMillis = -1;
+
+    public ReplicaRoutingDataSource(final HikariDataSource primary,
+                                    final HikariDataSource replica,
+                                    final String lagQuery,
+                                    final long maxLagMillis,
+                                    final long pinMillis) {
+        this.primary = primary;
+        this.replica = replica;
+        this.replicaTemplate = new JdbcTemplate(replica);
+        this.lagQuery = lagQuery;
+        this.maxLagMillis = maxLagMillis;
+        this.pinMillis = pinMillis;
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        final var userId = currentUserId();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (userId != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        final long until = System.currentTimeMillis() + pinMillis;
+                        pinnedUntil.put(userId, until);
+                        exposePin(until);
+                    }
+                });
+            }
+            return Target.PRIMARY;
+        }
+        if (userId == null || !replicaAvailable || isPinned(userId)) {
+            return Target.PRIMARY;
+        }
+        return Target.REPLICA;
+    }
+
+    /**
+     * Проверка отставания реплики
+     * Если реплика недоступна или отстает сильнее допустимого, чтение идет с основной БД
+     */
+    @Scheduled(fixedDelayString = "${spring.datasource.replica.lag-check-millis:1000}")
+    public void checkReplicaLag() {
+        boolean available;
+        try {
+            final var lag = replicaTemplate.queryForObject(lagQuery, Long.class);
+            replicaLagMillis = lag == null ? 0 : lag;
+            available = replicaLagMillis <= maxLagMillis;
+        } catch (Exception e) {
+            replicaLagMillis = -1;
+            available = false;
+        }
+        if (available != replicaAvailable) {
+            log.warn("Чтение с реплики {}, отставание: {} мс", available ? "включено" : "отключено", replicaLagMillis);
+        }
+        replicaAvailable = available;
+
+        final long now = System.currentTimeMillis();
+        pinnedUntil.values().removeIf(until -> until <= now);
+    }
+
+    public boolean isReplicaAvailable() {
+        return replicaAvailable;
+    }
+
+    public long getReplicaLagMillis() {
+        return replicaLagMillis;
+    }
+
+    @Override
+    public void close() {
+        replica.close();
+        primary.close();
+    }
+
+    private boolean isPinned(final long userId) {
+        final long now = System.currentTimeMillis();
+        final var until = pinnedUntil.get(userId);
+        return (until != null && until > now) || isPinnedByHeader(now);
+    }
+
+    /**
+     * Закрепление, выданное другим экземпляром; значение дальше срока закрепления не учитывается,
+     * чтобы клиент не мог навсегда увести свои чтения с реплики
+     */
+    private boolean isPinnedByHeader(final long now) {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return false;
+        }
+        final var header = attributes.getRequest().getHeader(PIN_HEADER);
+        if (header == null) {
+            return false;
+        }
+        try {
+            final long until = Long.parseLong(header.trim());
+            return until > now && until <= now + pinMillis;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static void exposePin(final long until) {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            final var response = attributes.getResponse();
+            if (response != null && !response.isCommitted()) {
+                response.setHeader(PIN_HEADER, Long.toString(until));
+            }
+        }
+    }
+
+    private static Long currentUserId() {
+        final var authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof User user) {
+            return user.getId();
+        }
+        return null;
+    }
+}
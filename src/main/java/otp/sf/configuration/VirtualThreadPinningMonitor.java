@@ -0,0 +1,98 @@
+package otp.sf.configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Диагностика закрепления виртуальных потоков за потоками-носителями
+ * Слушает событие JFR jdk.VirtualThreadPinned (блокировка внутри synchronized или native-вызова,
+ * например в opensmpp и JDBC-драйвере), считает длительность в метрике и один раз на каждое
+ * место вызова пишет стек в журнал.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnThreading(Threading.VIRTUAL)
+@ConditionalOnProperty(prefix = "diagnostics.pinning", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class VirtualThreadPinningMonitor {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int MAX_REPORTED_SITES = 100;
+    private static final int MAX_FRAMES = 20;
+
+    private final MeterRegistry meterRegistry;
+
+    // Закрепления короче порога не записываются
+    @Value("${diagnostics.pinning.threshold-millis:20}")
+    private long thresholdMillis;
+
+    private final Set<String> reportedSites = ConcurrentHashMap.newKeySet();
+    private RecordingStream stream;
+    private Timer pinned;
+
+    @PostConstruct
+    void start() {
+        pinned = Timer.builder("jvm.threads.virtual.pinned")
+                .description("Длительность закрепления виртуальных потоков")
+                .register(meterRegistry);
+
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT)
+                .withThreshold(Duration.ofMillis(thresholdMillis))
+                .withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+        log.info("Диагностика закрепления виртуальных потоков включена, порог {} мс", thresholdMillis);
+    }
+
+    @PreDestroy
+    void stop() {
+        stream.close();
+    }
+
+    private void onPinned(final RecordedEvent event) {
+        pinned.record(event.getDuration());
+
+        final var stackTrace = event.getStackTrace();
+        if (stackTrace == null) {
+            return;
+        }
+        final var frames = stackTrace.getFrames();
+        final var site = frames.stream()
+                .filter(RecordedFrame::isJavaFrame)
+                .map(VirtualThreadPinningMonitor::format)
+                .filter(frame -> !frame.startsWith("java.") && !frame.startsWith("jdk.") && !frame.startsWith("sun."))
+                .findFirst()
+                .orElse("неизвестно");
+        if (reportedSites.size() < MAX_REPORTED_SITES && reportedSites.add(site)) {
+            log.warn("Виртуальный поток закреплен за носителем на {} мс в {}:\n\t{}",
+                    event.getDuration().toMillis(), site,
+                    frames.stream()
+                            .limit(MAX_FRAMES)
+                            .map(VirtualThreadPinningMonitor::format)
+                            .collect(Collectors.joining("\n\t")));
+        }
+    }
+
+    private static String format(final RecordedFrame frame) {
+        final var method = frame.getMethod();
+        return method.getType().getName() + "." + method.getName() + ":" + frame.getLineNumber();
+    }
+}
@@ -0,0 +1,13 @@
+package otp.sf.domain.dto;
+
+import java.util.List;
+
+/**
+ * Страница выборки по ключу
+ *
+ * @param items      элементы страницы
+ * @param nextCursor идентификатор, после которого начинается следующая страница, или null, если страниц больше нет
+ * @param <T>        тип элемента
+ */
+public record KeysetPage<T>(List<T> items, Long nextCursor) {
+}
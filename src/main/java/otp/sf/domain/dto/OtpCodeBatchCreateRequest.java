@@ -0,0 +1,20 @@
+package otp.sf.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+@Schema(description = "OTP код: DTO запроса на пакетное создание кодов")
+public record OtpCodeBatchCreateRequest(
+        @Schema(description = "Идентификаторы операций", example = "[1, 2, 3]")
+        @Size(max = 1000, message = "За один запрос можно создать не более 1000 кодов")
+        @NotEmpty(message = "Поле не может быть пустым")
+        List<@NotNull(message = "Идентификатор операции не может быть пустым") Long> operationIds,
+
+        @Schema(description = "Тип операций: выбирает профиль конфигурации OTP-кодов", example = "payment")
+        @Size(max = 50, message = "Тип операции не может быть длиннее 50 символов")
+        String operationType) {
+}
@@ -2,10 +2,15 @@ package otp.sf.domain.dto;
 
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 
 @Schema(description = "OTP код: DTO запроса на создание кода")
 public record OtpCodeCreateRequest(
         @Schema(description = "Идентификатор операции", example = "1")
         @NotNull(message = "Поле не может быть пустыми")
-        long operationId) {
+        long operationId,
+
+        @Schema(description = "Тип операции: выбирает профиль конфигурации OTP-кода", example = "payment")
+        @Size(max = 50, message = "Тип операции не может быть длиннее 50 символов")
+        String operationType) {
 }
@@ -0,0 +1,16 @@
+package otp.sf.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import otp.sf.domain.model.DeliveryStatus;
+
+@Schema(description = "OTP код: DTO статуса доставки")
+public record OtpDeliveryResponse(
+        @Schema(description = "Канал доставки", example = "email")
+        String channel,
+
+        @Schema(description = "Статус доставки", example = "Отправлен")
+        DeliveryStatus status,
+
+        @Schema(description = "Количество попыток отправки", example = "1")
+        int attempts) {
+}
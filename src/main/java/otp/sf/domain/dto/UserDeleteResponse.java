@@ -0,0 +1,15 @@
+package otp.sf.domain.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Пользователь: DTO ответа на удаление")
+public record UserDeleteResponse(
+        @Schema(description = "Идентификатор пользователя", example = "1")
+        long id,
+
+        @Schema(description = "Количество OTP-кодов, удаленных в рамках запроса", example = "10")
+        long removedCodes,
+
+        @Schema(description = "Удаление завершено; иначе оставшиеся коды удаляются в фоне", example = "true")
+        boolean completed) {
+}
@@ -0,0 +1,33 @@
+package otp.sf.domain.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Статус доставки OTP-кода
+ */
+@RequiredArgsConstructor
+public enum DeliveryStatus {
+
+    PENDING("Ожидает отправки"),
+    SENT("Отправлен"),
+    FAILED("Не доставлен");
+
+    @Getter(onMethod_ = @JsonValue)
+    private final String name;
+
+    private static final Map<String, DeliveryStatus> MAP = Stream.of(values())
+            .collect(Collectors.toMap(DeliveryStatus::getName, Function.identity()));
+
+    @JsonCreator
+    public static DeliveryStatus forValue(final String value) {
+        return MAP.get(value);
+    }
+}
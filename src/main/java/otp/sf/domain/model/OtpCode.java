@@ -4,6 +4,7 @@ import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -11,6 +12,7 @@ import jakarta.persistence.ManyToOne;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import org.hibernate.annotations.CreationTimestamp;
 
 import java.io.Serial;
@@ -31,7 +33,9 @@ public class OtpCode implements Serializable {
     @EqualsAndHashCode.Include
     private Long id;
 
-    @ManyToOne
+    // Пользователь нужен только по идентификатору, он доступен у прокси без загрузки строки
+    @ManyToOne(fetch = FetchType.LAZY)
+    @ToString.Exclude
     private User user;
 
     @Column(unique = true, nullable = false)
@@ -50,4 +54,8 @@ public class OtpCode implements Serializable {
 
     @Column(nullable = false)
     private Long expirationTime;
+
+    // Количество неудачных попыток активации
+    @Column(nullable = false)
+    private int failedAttempts;
 }
@@ -28,4 +28,9 @@ public class OtpConfig implements Serializable {
 
     @Column(nullable = false)
     private Integer length;
+
+    // Версия конфигурации вместе с профилями; при изменении повышается только запросом
+    // OtpConfigRepository.incrementVersion, поэтому при обновлении сущности не пишется
+    @Column(nullable = false, updatable = false)
+    private long version;
 }
@@ -0,0 +1,33 @@
+package otp.sf.domain.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@Entity(name = "otp_config_profile")
+public class OtpConfigProfile implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = -6040283460815398512L;
+
+    // Тип операции, для которой действует профиль
+    @Id
+    @Column(length = 50)
+    @EqualsAndHashCode.Include
+    private String name;
+
+    @Column(nullable = false)
+    private Long expirationTime;
+
+    @Column(nullable = false)
+    private Integer length;
+}
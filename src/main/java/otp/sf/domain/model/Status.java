@@ -18,7 +18,8 @@ public enum Status {
 
     ACTIVE("Активен"),
     EXPIRED("Просрочен"),
-    USED("Использован");
+    USED("Использован"),
+    LOCKED("Заблокирован");
 
     @Getter(onMethod_ = @JsonValue)
     private final String name;
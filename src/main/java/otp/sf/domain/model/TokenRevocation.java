@@ -0,0 +1,40 @@
+package otp.sf.domain.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Date;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@Entity(name = "token_revocation")
+public class TokenRevocation implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = -2318846512096431177L;
+
+    // Пользователь, токены которого отозваны
+    @Id
+    @EqualsAndHashCode.Include
+    private Long userId;
+
+    // Токены с версией меньше этой считаются отозванными; версия только растет
+    @Column(nullable = false)
+    private long version;
+
+    // Момент, после которого все отозванные токены истекли сами; пусто - отзыв больше не действует
+    private Date expiresAt;
+
+    // Момент последнего отзыва
+    @Column(nullable = false)
+    private Date changedAt;
+}
@@ -0,0 +1,12 @@
+package otp.sf.exception;
+
+/**
+ * Неудачная попытка активации OTP-кода
+ * Транзакция активации при этой ошибке фиксируется, чтобы сохранить счетчик неудачных попыток
+ */
+public class ActivationFailedException extends LogicException {
+
+    public ActivationFailedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,18 @@
+package otp.sf.exception;
+
+import lombok.Getter;
+
+/**
+ * Сервис перегружен, запрос нужно повторить позже
+ */
+@Getter
+public class OverloadException extends RuntimeException {
+
+    // Через сколько секунд можно повторить запрос
+    private final long retryAfterSeconds;
+
+    public OverloadException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
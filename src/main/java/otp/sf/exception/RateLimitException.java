@@ -0,0 +1,18 @@
+package otp.sf.exception;
+
+import lombok.Getter;
+
+/**
+ * Превышен лимит запросов, запрос нужно повторить позже
+ */
+@Getter
+public class RateLimitException extends RuntimeException {
+
+    // Через сколько секунд можно повторить запрос
+    private final long retryAfterSeconds;
+
+    public RateLimitException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,11 @@
+package otp.sf.exception;
+
+/**
+ * Запрос больше допустимого лимита и не может быть выполнен ни сейчас, ни позже
+ */
+public class RequestTooLargeException extends RuntimeException {
+
+    public RequestTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -1,24 +1,135 @@
 package otp.sf.repository;
 
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import otp.sf.domain.model.OtpCode;
 import otp.sf.domain.model.Status;
 import otp.sf.domain.model.User;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 /**
  * Репозиторий OTP-кодов
  */
 @Repository
 public interface OtpCodeRepository extends JpaRepository<OtpCode, Long> {
-    Optional<OtpCode> findByOperationId(Long id);
-    Optional<OtpCode> findByOperationIdAndUser(Long id, User user);
+    <T> Optional<T> findByOperationId(Long id, Class<T> type);
+    <T> Optional<T> findByOperationIdAndUserId(Long id, Long userId, Class<T> type);
     Optional<OtpCode> findByOperationIdAndStatusAndUser(Long id, Status status, User user);
     List<OtpCode> findByStatus(Status status);
-    List<OtpCode> findByStatusAndUser(Status status, User user);
     boolean existsByOperationIdAndStatusAndUser(Long id, Status status, User user);
-    boolean existsByCodeAndStatusAndUser(String code, Status status, User user);
+    List<OtpCodeView> findByStatusAndIdGreaterThanOrderByIdAsc(Status status, Long afterId, Limit limit);
+    List<OtpCodeView> findByStatusAndUserIdAndIdGreaterThanOrderByIdAsc(Status status, Long userId, Long afterId,
+                                                                       Limit limit);
+
+    /**
+     * Потоковое чтение кодов в статусе: строки читаются из БД порциями по мере обработки
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select new otp.sf.repository.OtpCodeView(c.id, c.status, c.insertTime, c.expirationTime) "
+            + "from otp_code c where c.status = :status order by c.id")
+    Stream<OtpCodeView> streamByStatus(@Param("status") Status status);
+
+    /**
+     * Потоковое чтение кодов пользователя в статусе
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select new otp.sf.repository.OtpCodeView(c.id, c.status, c.insertTime, c.expirationTime) "
+            + "from otp_code c where c.status = :status and c.user.id = :userId order by c.id")
+    Stream<OtpCodeView> streamByStatusAndUserId(@Param("status") Status status, @Param("userId") Long userId);
+
+    /**
+     * Смена статуса OTP-кода, только если он все еще находится в ожидаемом статусе
+     *
+     * @return количество измененных записей
+     */
+    @Modifying
+    @Query("update otp_code c set c.status = :status where c.id = :id and c.status = :expected")
+    int updateStatus(@Param("id") Long id, @Param("expected") Status expected, @Param("status") Status status);
+
+    /**
+     * Учет неудачной попытки активации: по достижении лимита код блокируется
+     *
+     * @param id идентификатор OTP-кода
+     * @param maxAttempts допустимое количество неудачных попыток
+     * @return количество измененных записей
+     */
+    @Modifying
+    @Query("update otp_code c set c.failedAttempts = c.failedAttempts + 1, "
+            + "c.status = case when c.failedAttempts + 1 >= :maxAttempts then otp.sf.domain.model.Status.LOCKED "
+            + "else c.status end "
+            + "where c.id = :id and c.status = otp.sf.domain.model.Status.ACTIVE")
+    int registerFailedAttempt(@Param("id") Long id, @Param("maxAttempts") int maxAttempts);
+
+    /**
+     * Идентификаторы операций, для которых уже есть OTP-код в любом статусе
+     * Одним запросом на пакет; статус не проверяется, как и в уникальном индексе по operation_id
+     *
+     * @param operationIds идентификаторы операций
+     * @return занятые идентификаторы операций
+     */
+    @Query("select c.operationId from otp_code c where c.operationId in :operationIds")
+    List<Long> findExistingOperationIds(@Param("operationIds") Collection<Long> operationIds);
+
+    @Query("select c.status from otp_code c where c.id = :id")
+    Optional<Status> findStatusById(@Param("id") Long id);
+
+    /**
+     * Пакетная смена статуса OTP-кодов, находящихся в ожидаемом статусе
+     *
+     * @return количество измененных записей
+     */
+    @Transactional
+    @Modifying
+    @Query("update otp_code c set c.status = :status where c.id in :ids and c.status = :expected")
+    int updateStatus(@Param("ids") Collection<Long> ids,
+                     @Param("expected") Status expected,
+                     @Param("status") Status status);
+
+    /**
+     * Перевод в статус EXPIRED всех активных кодов с истекшим сроком одним запросом
+     *
+     * @return количество измененных записей
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "update otp_code set status = 'EXPIRED' where status = 'ACTIVE' "
+            + "and insert_time + expiration_time * interval '1 millisecond' < now()", nativeQuery = true)
+    int expireOverdue();
+
+    /**
+     * Удаление порции OTP-кодов пользователя (доставки удаляются каскадом в БД)
+     *
+     * @return количество удаленных записей
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "delete from otp_code where id in (select id from otp_code where user_id = :userId limit :limit)",
+            nativeQuery = true)
+    int deleteChunkByUser(@Param("userId") Long userId, @Param("limit") int limit);
+
+    /**
+     * Удаление порции архивных OTP-кодов пользователя
+     * Условие по user_id во внешнем запросе позволяет искать удаляемые строки по индексу (user_id, id)
+     * в каждой секции архива
+     *
+     * @return количество удаленных записей
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "delete from otp_code_archive where user_id = :userId and id in "
+            + "(select id from otp_code_archive where user_id = :userId limit :limit)", nativeQuery = true)
+    int deleteArchiveChunkByUser(@Param("userId") Long userId, @Param("limit") int limit);
 }
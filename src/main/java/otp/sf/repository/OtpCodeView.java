@@ -0,0 +1,16 @@
+package otp.sf.repository;
+
+import otp.sf.domain.model.Status;
+
+import java.util.Date;
+
+/**
+ * Проекция OTP-кода для ответов API: только колонки, нужные для статуса, без пользователя и хеша
+ *
+ * @param id идентификатор OTP-кода
+ * @param status статус в БД
+ * @param insertTime время создания
+ * @param expirationTime время жизни в миллисекундах
+ */
+public record OtpCodeView(Long id, Status status, Date insertTime, Long expirationTime) {
+}
@@ -0,0 +1,12 @@
+package otp.sf.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import otp.sf.domain.model.OtpConfigProfile;
+
+/**
+ * Репозиторий профилей OTP-конфигурации
+ */
+@Repository
+public interface OtpConfigProfileRepository extends JpaRepository<OtpConfigProfile, String> {
+}
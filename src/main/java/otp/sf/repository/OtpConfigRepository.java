@@ -1,12 +1,32 @@
 package otp.sf.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import otp.sf.domain.model.OtpConfig;
 
+import java.util.Optional;
+
 /**
  * Репозиторий OTP-конфигурации
  */
 @Repository
 public interface OtpConfigRepository extends JpaRepository<OtpConfig, Long> {
+
+    /**
+     * Текущая версия конфигурации
+     */
+    @Query("select c.version from otp_config c where c.id = :id")
+    Optional<Long> findVersion(@Param("id") Long id);
+
+    /**
+     * Увеличение версии конфигурации
+     *
+     * @return количество измененных записей
+     */
+    @Modifying
+    @Query("update otp_config c set c.version = c.version + 1 where c.id = :id")
+    int incrementVersion(@Param("id") Long id);
 }
@@ -0,0 +1,50 @@
+package otp.sf.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import otp.sf.domain.dto.OtpDeliveryResponse;
+import otp.sf.domain.model.DeliveryStatus;
+import otp.sf.domain.model.OtpDelivery;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Репозиторий доставок OTP-кодов
+ */
+@Repository
+public interface OtpDeliveryRepository extends JpaRepository<OtpDelivery, Long> {
+    List<OtpDeliveryResponse> findByOtpCodeIdOrderById(Long otpCodeId);
+
+    /**
+     * Фиксация результата попытки доставки
+     *
+     * @return количество измененных записей
+     */
+    @Transactional
+    @Modifying
+    @Query("update otp_delivery d set d.status = :status, d.attempts = :attempts, d.lastError = :error, "
+            + "d.updateTime = current_timestamp where d.id = :id")
+    int updateResult(@Param("id") Long id,
+                     @Param("status") DeliveryStatus status,
+                     @Param("attempts") int attempts,
+                     @Param("error") String error);
+
+    /**
+     * Закрытие доставок, оставшихся незавершенными до момента времени
+     *
+     * @return количество измененных записей
+     */
+    @Transactional
+    @Modifying
+    @Query("update otp_delivery d set d.status = :status, d.lastError = :error, d.updateTime = current_timestamp "
+            + "where d.status = :expected and d.updateTime < :before")
+    int closeStale(@Param("expected") DeliveryStatus expected,
+                   @Param("status") DeliveryStatus status,
+                   @Param("error") String error,
+                   @Param("before") Date before);
+}
@@ -0,0 +1,111 @@
+package otp.sf.repository;
+
+import io.r2dbc.spi.Readable;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import otp.sf.domain.model.Status;
+import otp.sf.service.cache.ActiveOtpCode;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Неблокирующий доступ к OTP-кодам через R2DBC
+ * Каждый метод - один SQL-запрос без транзакции, соединение возвращается в пул сразу после ответа БД
+ */
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "otp.reactive", name = "enabled", havingValue = "true")
+public class ReactiveOtpCodeRepository {
+
+    private static final String VIEW_COLUMNS = "select id, status, insert_time, expiration_time from otp_code ";
+
+    private final DatabaseClient reactiveDatabaseClient;
+
+    /**
+     * Поиск активного кода операции пользователя
+     */
+    public Mono<ActiveOtpCode> findActive(final long operationId, final long userId) {
+        return reactiveDatabaseClient.sql("""
+                        select id, code, insert_time, expiration_time from otp_code
+                        where operation_id = :operationId and user_id = :userId and status = 'ACTIVE'""")
+                .bind("operationId", operationId)
+                .bind("userId", userId)
+                .map(row -> new ActiveOtpCode(row.get("id", Long.class), userId, operationId,
+                        row.get("code", String.class),
+                        toDate(row.get("insert_time", LocalDateTime.class)).getTime()
+                                + row.get("expiration_time", Long.class),
+                        0))
+                .one();
+    }
+
+    /**
+     * Проекция кода операции
+     */
+    public Mono<OtpCodeView> findByOperationId(final long operationId) {
+        return reactiveDatabaseClient.sql(VIEW_COLUMNS + "where operation_id = :operationId")
+                .bind("operationId", operationId)
+                .map(ReactiveOtpCodeRepository::toView)
+                .one();
+    }
+
+    /**
+     * Проекция кода операции пользователя
+     */
+    public Mono<OtpCodeView> findByOperationIdAndUserId(final long operationId, final long userId) {
+        return reactiveDatabaseClient.sql(VIEW_COLUMNS + "where operation_id = :operationId and user_id = :userId")
+                .bind("operationId", operationId)
+                .bind("userId", userId)
+                .map(ReactiveOtpCodeRepository::toView)
+                .one();
+    }
+
+    /**
+     * Условная смена статуса кода
+     *
+     * @return количество измененных строк
+     */
+    public Mono<Long> updateStatus(final long id, final Status from, final Status to) {
+        return reactiveDatabaseClient.sql("update otp_code set status = :to where id = :id and status = :from")
+                .bind("to", to.name())
+                .bind("id", id)
+                .bind("from", from.name())
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * Учет неудачной попытки активации: по достижении лимита код блокируется
+     *
+     * @return статус кода после попытки, пусто - код уже не активен
+     */
+    public Mono<Status> registerFailedAttempt(final long id, final int maxAttempts) {
+        return reactiveDatabaseClient.sql("""
+                        update otp_code set failed_attempts = failed_attempts + 1,
+                            status = case when failed_attempts + 1 >= :maxAttempts then 'LOCKED' else status end
+                        where id = :id and status = 'ACTIVE'
+                        returning status""")
+                .bind("maxAttempts", maxAttempts)
+                .bind("id", id)
+                .map(row -> Status.valueOf(row.get("status", String.class)))
+                .one();
+    }
+
+    private static OtpCodeView toView(final Readable row) {
+        return new OtpCodeView(row.get("id", Long.class),
+                Status.valueOf(row.get("status", String.class)),
+                toDate(row.get("insert_time", LocalDateTime.class)),
+                row.get("expiration_time", Long.class));
+    }
+
+    /**
+     * Колонка timestamp без зоны: Hibernate пишет ее в часовом поясе JVM, так же и читаем
+     */
+    private static Date toDate(final LocalDateTime value) {
+        return Date.from(value.atZone(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -0,0 +1,50 @@
+package otp.sf.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import otp.sf.domain.model.TokenRevocation;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Репозиторий отзывов токенов
+ */
+@Repository
+public interface TokenRevocationRepository extends JpaRepository<TokenRevocation, Long> {
+    List<TokenRevocation> findByExpiresAtAfter(Date now);
+
+    List<TokenRevocation> findByChangedAtAfter(Date since);
+
+    /**
+     * Атомарное повышение версии токенов пользователя
+     * Строка создается при первом отзыве и больше не удаляется, поэтому версия никогда не уменьшается
+     *
+     * @param userId идентификатор пользователя
+     * @param expiresAt момент истечения последнего отозванного токена
+     * @return количество измененных записей
+     */
+    @Modifying
+    @Query(value = """
+            insert into token_revocation (user_id, version, expires_at, changed_at)
+            values (:userId, 1, :expiresAt, now())
+            on conflict (user_id) do update
+            set version = token_revocation.version + 1, expires_at = excluded.expires_at, changed_at = now()""",
+            nativeQuery = true)
+    int incrementVersion(@Param("userId") long userId, @Param("expiresAt") Date expiresAt);
+
+    /**
+     * Снятие отметки действия с отзывов, все токены которых уже истекли
+     * Версия сохраняется
+     *
+     * @return количество измененных записей
+     */
+    @Transactional
+    @Modifying
+    @Query("update token_revocation r set r.expiresAt = null where r.expiresAt <= :now")
+    int clearExpired(@Param("now") Date now);
+}
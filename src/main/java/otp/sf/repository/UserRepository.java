@@ -1,19 +1,65 @@
 package otp.sf.repository;
 
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import otp.sf.domain.dto.UserDTO;
 import otp.sf.domain.model.Role;
 import otp.sf.domain.model.User;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 /**
  * Репозиторий пользователей
  */
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
-    Optional<User> findByUsername(String username);
-    List<User> findByRoleNot(Role role);
+    Optional<User> findByUsernameAndDeletedFalse(String username);
+    Optional<User> findByIdAndDeletedFalse(Long id);
+    List<UserDTO> findByRoleNotAndDeletedFalseAndIdGreaterThanOrderByIdAsc(Role role, Long afterId, Limit limit);
+
+    /**
+     * Потоковое чтение пользователей, кроме указанной роли
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select new otp.sf.domain.dto.UserDTO(u.id, u.username, u.email, u.phone, u.telegramChatId) "
+            + "from users u where u.role <> :role and u.deleted = false order by u.id")
+    Stream<UserDTO> streamByRoleNot(@Param("role") Role role);
     boolean existsByUsername(String username);
+
+    /**
+     * Пометка пользователя удаленным
+     *
+     * @return количество измененных записей
+     */
+    @Transactional
+    @Modifying
+    @Query("update users u set u.deleted = true where u.id = :id and u.deleted = false")
+    int markDeleted(@Param("id") Long id);
+
+    /**
+     * Идентификаторы пользователей, ожидающих окончательного удаления
+     */
+    @Query("select u.id from users u where u.deleted = true")
+    List<Long> findDeletedIds();
+
+    /**
+     * Окончательное удаление помеченного пользователя
+     *
+     * @return количество удаленных записей
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from users u where u.id = :id and u.deleted = true")
+    int deleteMarked(@Param("id") Long id);
 }
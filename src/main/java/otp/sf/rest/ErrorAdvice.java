@@ -1,12 +1,17 @@
 package otp.sf.rest;
 
 import org.springframework.data.util.Pair;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import otp.sf.exception.LogicException;
+import otp.sf.exception.OverloadException;
+import otp.sf.exception.RateLimitException;
+import otp.sf.exception.RequestTooLargeException;
 
 import java.util.List;
 import java.util.Map;
@@ -50,4 +55,39 @@ public class ErrorAdvice {
         return List.of(ex.getMessage());
     }
 
+    /**
+     * Если поймали исключение перегрузки {@link OverloadException}, то возвращаем статус 503
+     *
+     * @return ответ со статусом 503 и заголовком Retry-After
+     */
+    @ExceptionHandler(OverloadException.class)
+    public ResponseEntity<List<String>> handleOverload(final OverloadException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(List.of(ex.getMessage()));
+    }
+
+    /**
+     * Если поймали исключение {@link RequestTooLargeException}, то возвращаем статус 400
+     *
+     * @return ответ со статусом 400
+     */
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(RequestTooLargeException.class)
+    public List<String> handleRequestTooLarge(final RequestTooLargeException ex) {
+        return List.of(ex.getMessage());
+    }
+
+    /**
+     * Если поймали исключение лимита запросов {@link RateLimitException}, то возвращаем статус 429
+     *
+     * @return ответ со статусом 429 и заголовком Retry-After
+     */
+    @ExceptionHandler(RateLimitException.class)
+    public ResponseEntity<List<String>> handleRateLimit(final RateLimitException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(List.of(ex.getMessage()));
+    }
+
 }
@@ -0,0 +1,73 @@
+package otp.sf.rest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import otp.sf.domain.dto.KeysetPage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Ответы списочных методов: страница с курсором в заголовке и поток NDJSON
+ */
+final class ListingResponses {
+
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private ListingResponses() {
+    }
+
+    /**
+     * Страница списка, курсор следующей страницы передается в заголовке X-Next-Cursor
+     *
+     * @param page страница
+     * @param <T> тип элементов
+     * @return ответ с элементами страницы
+     */
+    static <T> ResponseEntity<List<T>> page(final KeysetPage<T> page) {
+        final var response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor().toString());
+        }
+        return response.body(page.items());
+    }
+
+    /**
+     * Ответ NDJSON (один JSON-объект на строку), записываемый по мере чтения строк из БД
+     *
+     * @param objectMapper сериализатор
+     * @param type тип элементов
+     * @param producer источник элементов, передающий каждый элемент обработчику
+     * @param <T> тип элементов
+     * @return потоковый ответ
+     */
+    static <T> ResponseEntity<StreamingResponseBody> ndjson(final ObjectMapper objectMapper,
+                                                            final Class<T> type,
+                                                            final Consumer<Consumer<T>> producer) {
+        // Поток ответа закрывает контейнер, а не сериализатор после первого объекта
+        final var writer = objectMapper.writerFor(type).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        final StreamingResponseBody body = outputStream -> {
+            try {
+                producer.accept(item -> {
+                    try {
+                        writer.writeValue(outputStream, item);
+                        outputStream.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(body);
+    }
+}
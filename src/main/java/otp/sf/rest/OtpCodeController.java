@@ -1,5 +1,6 @@
 package otp.sf.rest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
@@ -15,16 +16,24 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import otp.sf.domain.dto.OtpCodeActivateRequest;
+import otp.sf.domain.dto.OtpCodeBatchCreateRequest;
 import otp.sf.domain.dto.OtpCodeCreateRequest;
 import otp.sf.domain.dto.OtpCodeResponse;
 import otp.sf.domain.dto.OtpConfigurationDTO;
+import otp.sf.domain.dto.OtpDeliveryResponse;
 import otp.sf.service.OtpCodeService;
 import otp.sf.service.OtpConfigurationService;
+import otp.sf.service.UserService;
+import otp.sf.service.journal.OtpJournalReader;
+import otp.sf.service.ratelimit.OtpRateLimiter;
 
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -35,6 +44,10 @@ public class OtpCodeController {
 
     private final OtpConfigurationService otpConfigurationService;
     private final OtpCodeService otpCodeService;
+    private final ObjectMapper objectMapper;
+    private final UserService userService;
+    private final OtpRateLimiter rateLimiter;
+    private final OtpJournalReader journalReader;
 
     @Operation(summary = "Создание OTP-кода")
     @ResponseStatus(HttpStatus.CREATED)
@@ -43,9 +56,21 @@ public class OtpCodeController {
             consumes = MediaType.APPLICATION_JSON_VALUE)
     public OtpCodeResponse createCode(@RequestBody @Valid OtpCodeCreateRequest code) {
         log.info("Создание OTP-кода операции {}", code.operationId());
+        rateLimiter.checkCreate(userService.getCurrentUser().getId(), code.operationId());
         return otpCodeService.createCode(code);
     }
 
+    @Operation(summary = "Пакетное создание OTP-кодов")
+    @ResponseStatus(HttpStatus.CREATED)
+    @PostMapping(value = "/create/batch",
+            produces = MediaType.APPLICATION_JSON_VALUE,
+            consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<OtpCodeResponse> createCodes(@RequestBody @Valid OtpCodeBatchCreateRequest request) {
+        log.info("Пакетное создание OTP-кодов: {} операций", request.operationIds().size());
+        rateLimiter.checkCreateBatch(userService.getCurrentUser().getId(), request.operationIds().size());
+        return otpCodeService.createCodes(request);
+    }
+
     @Operation(summary = "Активация OTP-кода")
     @ResponseStatus(HttpStatus.OK)
     @PostMapping(value = "/{id}/activate",
@@ -53,6 +78,7 @@ public class OtpCodeController {
             consumes = MediaType.APPLICATION_JSON_VALUE)
     public OtpCodeResponse useCode(@PathVariable("id") Long id, @RequestBody @Valid OtpCodeActivateRequest code) {
         log.info("Активация OTP-кода операции {}", id);
+        rateLimiter.checkActivate(userService.getCurrentUser().getId(), id);
         return otpCodeService.activateCode(id, code);
     }
 
@@ -66,13 +92,32 @@ public class OtpCodeController {
         return otpCodeService.getCodeInfo(id);
     }
 
-    @Operation(summary = "Список всех OTP-кодов")
+    @Operation(summary = "Статус доставки OTP-кода")
     @ResponseStatus(HttpStatus.OK)
+    @GetMapping(value = "/{id}/delivery",
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<OtpDeliveryResponse> getDeliveryInfo(@PathVariable("id") Long id) {
+        log.info("Статус доставки OTP-кода операции {}", id);
+        return otpCodeService.getDeliveryInfo(id);
+    }
+
+    @Operation(summary = "Список активных OTP-кодов постранично",
+            description = "Курсор следующей страницы возвращается в заголовке X-Next-Cursor")
     @GetMapping(value = "/all",
             produces = MediaType.APPLICATION_JSON_VALUE)
-    public List<OtpCodeResponse> getAllCodes() {
-        log.info("Список всех OTP-кодов");
-        return otpCodeService.getAllCodeInfo();
+    public ResponseEntity<List<OtpCodeResponse>> getAllCodes(
+            @RequestParam(value = "afterId", required = false) Long afterId,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        log.info("Список всех OTP-кодов после {}", afterId);
+        return ListingResponses.page(otpCodeService.getAllCodeInfo(afterId, limit));
+    }
+
+    @Operation(summary = "Потоковый список всех активных OTP-кодов (NDJSON)")
+    @GetMapping(value = "/all/stream",
+            produces = ListingResponses.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllCodes() {
+        log.info("Потоковый список всех OTP-кодов");
+        return ListingResponses.ndjson(objectMapper, OtpCodeResponse.class, otpCodeService::streamAllCodeInfo);
     }
 
     @Operation(summary = "Удаление OTP-кода")
@@ -85,6 +130,16 @@ public class OtpCodeController {
         return ResponseEntity.ok().build();
     }
 
+    @Operation(summary = "Последние записи журнала OTP-кодов")
+    @ResponseStatus(HttpStatus.OK)
+    @GetMapping(value = "/journal/tail",
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public List<String> getJournalTail(@RequestParam(value = "limit", defaultValue = "100") int limit) {
+        log.info("Последние записи журнала OTP-кодов: {}", limit);
+        return journalReader.tail(limit);
+    }
+
     @Operation(summary = "Изменение конфигурации")
     @ResponseStatus(HttpStatus.OK)
     @PostMapping(value = "/configuration/update",
@@ -106,4 +161,37 @@ public class OtpCodeController {
         log.info("Получение конфигурации");
         return otpConfigurationService.getConfiguration();
     }
+
+    @Operation(summary = "Изменение профиля конфигурации для типа операции")
+    @ResponseStatus(HttpStatus.OK)
+    @PostMapping(value = "/configuration/profile/{name}/update",
+            produces = MediaType.APPLICATION_JSON_VALUE,
+            consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public OtpConfigurationDTO updateProfile(@PathVariable("name") String name,
+                                             @RequestBody @Valid OtpConfigurationDTO configuration) {
+        log.info("Изменение профиля конфигурации {}", name);
+        otpConfigurationService.updateProfile(name, configuration);
+        return configuration;
+    }
+
+    @Operation(summary = "Получение профилей конфигурации")
+    @ResponseStatus(HttpStatus.OK)
+    @GetMapping(value = "/configuration/profiles",
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public Map<String, OtpConfigurationDTO> getProfiles() {
+        log.info("Получение профилей конфигурации");
+        return otpConfigurationService.getProfiles();
+    }
+
+    @Operation(summary = "Удаление профиля конфигурации")
+    @ResponseStatus(HttpStatus.OK)
+    @DeleteMapping(value = "/configuration/profile/{name}/delete")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Void> deleteProfile(@PathVariable("name") String name) {
+        log.info("Удаление профиля конфигурации {}", name);
+        otpConfigurationService.deleteProfile(name);
+        return ResponseEntity.ok().build();
+    }
 }
@@ -0,0 +1,61 @@
+package otp.sf.rest;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import otp.sf.domain.dto.OtpCodeActivateRequest;
+import otp.sf.domain.dto.OtpCodeResponse;
+import otp.sf.service.UserService;
+import otp.sf.service.ratelimit.OtpRateLimiter;
+import otp.sf.service.reactive.ReactiveOtpCodeService;
+import reactor.core.publisher.Mono;
+
+/**
+ * Неблокирующие варианты активации и просмотра OTP-кода
+ * Запрос обрабатывается асинхронно: поток сервлета освобождается до ответа БД
+ */
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("otp/reactive")
+@Tag(name = "REST API: OTP-коды (R2DBC)")
+@ConditionalOnProperty(prefix = "otp.reactive", name = "enabled", havingValue = "true")
+public class ReactiveOtpCodeController {
+
+    private final ReactiveOtpCodeService reactiveOtpCodeService;
+    private final UserService userService;
+    private final OtpRateLimiter rateLimiter;
+
+    @Operation(summary = "Активация OTP-кода")
+    @ResponseStatus(HttpStatus.OK)
+    @PostMapping(value = "/{id}/activate",
+            produces = MediaType.APPLICATION_JSON_VALUE,
+            consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<OtpCodeResponse> useCode(@PathVariable("id") Long id, @RequestBody @Valid OtpCodeActivateRequest code) {
+        log.info("Активация OTP-кода операции {}", id);
+        final var user = userService.getCurrentUser();
+        rateLimiter.checkActivate(user.getId(), id);
+        return reactiveOtpCodeService.activateCode(user, id, code);
+    }
+
+    @Operation(summary = "Информация OTP-кода")
+    @ResponseStatus(HttpStatus.OK)
+    @GetMapping(value = "/{id}/get",
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<OtpCodeResponse> getCodeInfo(@PathVariable("id") Long id) {
+        log.info("Информация OTP-кода операции {}", id);
+        return reactiveOtpCodeService.getCodeInfo(userService.getCurrentUser(), id);
+    }
+}
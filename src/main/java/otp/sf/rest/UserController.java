@@ -1,5 +1,6 @@
 package otp.sf.rest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
@@ -15,9 +16,12 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import otp.sf.domain.dto.UserDTO;
+import otp.sf.domain.dto.UserDeleteResponse;
 import otp.sf.service.UserService;
 
 import java.util.List;
@@ -30,6 +34,7 @@ import java.util.List;
 public class UserController {
 
     private final UserService userService;
+    private final ObjectMapper objectMapper;
 
     @Operation(summary = "Редактирование имени пользователя")
     @ResponseStatus(HttpStatus.OK)
@@ -41,24 +46,35 @@ public class UserController {
         return userService.saveUser(userDTO);
     }
 
-    @Operation(summary = "Список всех пользователей, кроме администраторов")
-    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "Список пользователей, кроме администраторов, постранично",
+            description = "Курсор следующей страницы возвращается в заголовке X-Next-Cursor")
     @GetMapping(value = "/all",
             produces = MediaType.APPLICATION_JSON_VALUE)
     @PreAuthorize("hasRole('ADMIN')")
-    public List<UserDTO> getUsers() {
-        log.info("Список всех пользователей, кроме администраторов");
-        return userService.getAllUsers();
+    public ResponseEntity<List<UserDTO>> getUsers(
+            @RequestParam(value = "afterId", required = false) Long afterId,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        log.info("Список всех пользователей, кроме администраторов, после {}", afterId);
+        return ListingResponses.page(userService.getAllUsers(afterId, limit));
+    }
+
+    @Operation(summary = "Потоковый список всех пользователей, кроме администраторов (NDJSON)")
+    @GetMapping(value = "/all/stream",
+            produces = ListingResponses.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> streamUsers() {
+        log.info("Потоковый список всех пользователей, кроме администраторов");
+        return ListingResponses.ndjson(objectMapper, UserDTO.class, userService::streamAllUsers);
     }
 
     @Operation(summary = "Удаление пользователя")
     @ResponseStatus(HttpStatus.OK)
-    @DeleteMapping(value = "/{id}/delete")
+    @DeleteMapping(value = "/{id}/delete",
+            produces = MediaType.APPLICATION_JSON_VALUE)
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Void> deleteUser(@PathVariable("id") Long id) {
+    public UserDeleteResponse deleteUser(@PathVariable("id") Long id) {
         log.info("Удаление пользователя");
-        userService.deleteUser(id);
-        return ResponseEntity.ok().build();
+        return userService.deleteUser(id);
     }
 
     @PutMapping("/{id}/set-admin")
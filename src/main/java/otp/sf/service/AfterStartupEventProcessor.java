@@ -11,6 +11,8 @@ import otp.sf.domain.dto.OtpConfigurationDTO;
 import otp.sf.domain.model.Role;
 import otp.sf.domain.model.User;
 import otp.sf.exception.LogicException;
+import otp.sf.service.notification.NotificationDispatcher;
+import otp.sf.service.purge.UserPurgeService;
 
 /**
  * Проверка и добавление данных в БД при старте сервиса
@@ -22,6 +24,9 @@ public class AfterStartupEventProcessor {
 
     private final OtpConfigurationService otpConfigurationService;
     private final UserService userService;
+    private final OtpCodeService otpCodeService;
+    private final NotificationDispatcher notificationDispatcher;
+    private final UserPurgeService userPurgeService;
     private final PasswordEncoder passwordEncoder;
 
     // Время жизни OTP-кода по умолчанию
@@ -47,6 +52,9 @@ public class AfterStartupEventProcessor {
     public void startup() {
         checkConfiguration();
         checkUserAdmin();
+        loadActiveCodes();
+        notificationDispatcher.closeStaleDeliveries();
+        userPurgeService.resumePending();
     }
 
     /**
@@ -61,6 +69,13 @@ public class AfterStartupEventProcessor {
         }
     }
 
+    /**
+     * Загрузка активных OTP-кодов в память
+     */
+    private void loadActiveCodes() {
+        otpCodeService.rebuildActiveCodeIndex();
+    }
+
     /**
      * Проверка наличия первого администратора в БД
      */
@@ -9,7 +9,9 @@ import otp.sf.domain.dto.ChangePasswordRequest;
 import otp.sf.domain.dto.JwtAuthenticationResponse;
 import otp.sf.domain.dto.SignInRequest;
 import otp.sf.domain.dto.SignUpRequest;
+import otp.sf.domain.model.User;
 import otp.sf.exception.LogicException;
+import otp.sf.service.token.TokenRevocationService;
 
 /**
  * Сервис аутентификации
@@ -22,6 +24,8 @@ public class AuthenticationService {
     private final JwtService jwtService;
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationManager authenticationManager;
+    private final PasswordHashingExecutor hashingExecutor;
+    private final TokenRevocationService revocationService;
 
     /**
      * Регистрация пользователя
@@ -30,7 +34,7 @@ public class AuthenticationService {
      * @return токен
      */
     public JwtAuthenticationResponse signUp(SignUpRequest request) {
-        final var user = userService.addUser(request, passwordEncoder.encode(request.password()));
+        final var user = userService.addUser(request, hashingExecutor.encode(request.password()));
         final var jwt = jwtService.generateToken(user);
         return new JwtAuthenticationResponse(jwt);
     }
@@ -42,14 +46,16 @@ public class AuthenticationService {
      * @return токен
      */
     public JwtAuthenticationResponse signIn(SignInRequest request) {
-        authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(
-                request.username(),
-                request.password()
-        ));
+        // Проверка пароля (BCrypt) выполняется в выделенном пуле
+        final var authentication = hashingExecutor.call(() ->
+                authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(
+                        request.username(),
+                        request.password()
+                )));
 
-        final var user = userService
-                .userDetailsService()
-                .loadUserByUsername(request.username());
+        final var user = authentication.getPrincipal() instanceof User principal
+                ? principal
+                : userService.userDetailsService().loadUserByUsername(request.username());
 
         final var jwt = jwtService.generateToken(user);
         return new JwtAuthenticationResponse(jwt);
@@ -63,13 +69,17 @@ public class AuthenticationService {
      */
     public JwtAuthenticationResponse passwordChange(ChangePasswordRequest request) {
         final var user = userService.getCurrentUser();
-        final var newPassword = passwordEncoder.encode(request.password());
-        if (newPassword.equals(user.getPassword())) {
-            throw new LogicException("Новый пароль совпадает со старым");
-        }
+        final var newPassword = hashingExecutor.call(() -> {
+            if (passwordEncoder.matches(request.password(), user.getPassword())) {
+                throw new LogicException("Новый пароль совпадает со старым");
+            }
+            return passwordEncoder.encode(request.password());
+        });
 
         user.setPassword(newPassword);
         userService.saveUser(user);
+        // Токены, выданные со старым паролем, больше не принимаются
+        revocationService.revokeAll(user.getId());
 
         final var jwt = jwtService.generateToken(user);
         return new JwtAuthenticationResponse(jwt);
@@ -1,16 +1,25 @@
 package otp.sf.service;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.time.DateUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 import otp.sf.domain.model.User;
+import otp.sf.service.cache.BoundedCache;
+import otp.sf.service.token.TokenRevocationService;
 
 import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -20,8 +29,11 @@ import java.util.function.Function;
  * Сервис для JWT
  */
 @Service
+@RequiredArgsConstructor
 public class JwtService {
 
+    private final TokenRevocationService revocationService;
+
     // Уникальный ключ для генерации токена
     @Value("${security.token.signing.key:EXAMPLE}")
     private String jwtSigningKey;
@@ -30,6 +42,49 @@ public class JwtService {
     @Value("${security.token.expiration.milliseconds:6000000}")
     private int jwtExpirationMillis;
 
+    // Максимальное количество проверенных токенов в кеше
+    @Value("${security.token.cache.max-entries:100000}")
+    private int cacheMaxEntries;
+
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    // Проверенные токены по дайджесту: подпись повторно не проверяется до истечения токена
+    private BoundedCache<TokenDigest, Claims> verifiedTokens;
+
+    @PostConstruct
+    void init() {
+        verifiedTokens = new BoundedCache<>(cacheMaxEntries);
+        signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSigningKey));
+        parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+    }
+
+    /**
+     * Разбор и проверка токена
+     * Результат кешируется, поэтому при повторных запросах с тем же токеном
+     * подпись не проверяется, пока токен не истечет
+     *
+     * @param token токен
+     * @return данные токена
+     */
+    public Claims parseToken(String token) {
+        final var digest = digest(token);
+        final var cached = verifiedTokens.get(digest);
+        if (cached != null) {
+            if (!isExpired(cached)) {
+                return cached;
+            }
+            verifiedTokens.remove(digest);
+        }
+
+        final var claims = parser.parseSignedClaims(token).getPayload();
+        // При переполнении вытесняются самые старые токены, истекшие удаляются при обращении к ним
+        verifiedTokens.put(digest, claims);
+        return claims;
+    }
+
     /**
      * Извлечение имени пользователя из токена
      *
@@ -51,6 +106,7 @@ public class JwtService {
         if (userDetails instanceof User customUserDetails) {
             claims.put("id", customUserDetails.getId());
             claims.put("role", customUserDetails.getRole());
+            claims.put("ver", revocationService.currentVersion(customUserDetails.getId()));
         }
         return generateToken(claims, userDetails);
     }
@@ -63,8 +119,36 @@ public class JwtService {
      * @return true, если токен валиден
      */
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final var userName = extractUserName(token);
-        return userName.equals(userDetails.getUsername()) && !isTokenExpired(token);
+        return isTokenValid(parseToken(token), userDetails);
+    }
+
+    /**
+     * Проверка разобранного токена на валидность
+     * Включает проверку отзыва, которая выполняется в памяти
+     *
+     * @param claims      данные токена
+     * @param userDetails данные пользователя
+     * @return true, если токен валиден
+     */
+    public boolean isTokenValid(Claims claims, UserDetails userDetails) {
+        return claims.getSubject().equals(userDetails.getUsername())
+                && !isExpired(claims)
+                && !isRevoked(claims, userDetails);
+    }
+
+    /**
+     * Проверка отзыва токена
+     *
+     * @param claims      данные токена
+     * @param userDetails данные пользователя
+     * @return true, если токен отозван
+     */
+    private boolean isRevoked(Claims claims, UserDetails userDetails) {
+        if (!(userDetails instanceof User user) || user.getId() == null) {
+            return false;
+        }
+        final var version = claims.get("ver", Long.class);
+        return revocationService.isRevoked(user.getId(), version == null ? 0 : version);
     }
 
     /**
@@ -76,8 +160,7 @@ public class JwtService {
      * @return данные
      */
     private <T> T extractClaim(String token, Function<Claims, T> claimsResolvers) {
-        final var claims = extractAllClaims(token);
-        return claimsResolvers.apply(claims);
+        return claimsResolvers.apply(parseToken(token));
     }
 
     /**
@@ -94,51 +177,39 @@ public class JwtService {
                 .subject(userDetails.getUsername())
                 .issuedAt(currentTime)
                 .expiration(DateUtils.addMilliseconds(currentTime, jwtExpirationMillis))
-                .signWith(getSigningKey(), Jwts.SIG.HS256)
+                .signWith(signingKey, Jwts.SIG.HS256)
                 .compact();
     }
 
     /**
      * Проверка токена на просроченность
      *
-     * @param token токен
+     * @param claims данные токена
      * @return true, если токен просрочен
      */
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private static boolean isExpired(Claims claims) {
+        return claims.getExpiration().before(new Date());
     }
 
     /**
-     * Извлечение даты истечения токена
+     * Дайджест токена: первые 128 бит SHA-256
      *
      * @param token токен
-     * @return дата истечения
+     * @return ключ кеша
      */
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    private TokenDigest digest(String token) {
+        final var hash = ByteBuffer.wrap(sha256().digest(token.getBytes(StandardCharsets.US_ASCII)));
+        return new TokenDigest(hash.getLong(), hash.getLong());
     }
 
-    /**
-     * Извлечение всех данных из токена
-     *
-     * @param token токен
-     * @return данные
-     */
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
-    /**
-     * Получение ключа для подписи токена
-     *
-     * @return ключ
-     */
-    private SecretKey getSigningKey() {
-        final var keyBytes = Decoders.BASE64.decode(jwtSigningKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private record TokenDigest(long high, long low) {
     }
 }
@@ -0,0 +1,41 @@
+package otp.sf.service;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import otp.sf.domain.model.Status;
+import otp.sf.repository.OtpCodeRepository;
+
+/**
+ * Учет неудачных попыток активации OTP-кодов
+ */
+@Service
+@RequiredArgsConstructor
+public class OtpAttemptService {
+
+    private final OtpCodeRepository repository;
+
+    // Количество неудачных попыток, после которого код блокируется
+    @Getter
+    @Value("${otp.activation.max-failed-attempts:5}")
+    private int maxFailedAttempts;
+
+    /**
+     * Учет неудачной попытки в транзакции активации
+     * Второе соединение не берется: активация при {@link otp.sf.exception.ActivationFailedException}
+     * не откатывается, поэтому счетчик сохраняется вместе с ней
+     *
+     * @param codeId идентификатор OTP-кода
+     * @return true, если код заблокирован
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean registerFailure(final long codeId) {
+        repository.registerFailedAttempt(codeId, maxFailedAttempts);
+        return repository.findStatusById(codeId)
+                .filter(Status.LOCKED::equals)
+                .isPresent();
+    }
+}
@@ -0,0 +1,71 @@
+package otp.sf.service;
+
+import otp.sf.domain.dto.OtpCodeResponse;
+import otp.sf.domain.model.Status;
+import otp.sf.exception.ActivationFailedException;
+import otp.sf.exception.LogicException;
+import otp.sf.repository.OtpCodeView;
+import otp.sf.service.cache.ActiveOtpCode;
+import otp.sf.service.hash.OtpCodeHasher;
+
+import java.util.Date;
+
+/**
+ * Правила проверки и отображения OTP-кодов, общие для блокирующего и реактивного API
+ */
+public final class OtpCodeRules {
+
+    public static final String ACTIVE_CODE_NOT_FOUND = "Активный OTP-код для операции не найден";
+    public static final String CODE_NOT_FOUND = "OTP-код не найден";
+    public static final String CODE_MISMATCH = "OTP-код не подходит";
+    public static final String CODE_LOCKED = "OTP-код заблокирован после неудачных попыток активации";
+
+    private OtpCodeRules() {
+    }
+
+    /**
+     * Проверка кода перед активацией: срок проверяется при чтении, не дожидаясь перевода кода в EXPIRED
+     *
+     * @param code активный OTP-код
+     * @param candidate код, введенный пользователем
+     * @param hasher проверка хеша
+     * @return true, если код подходит
+     * @throws LogicException если срок истек
+     */
+    public static boolean matches(final ActiveOtpCode code, final String candidate, final OtpCodeHasher hasher) {
+        if (code.isExpired(System.currentTimeMillis())) {
+            throw new LogicException("Срок действия OTP-кода истек");
+        }
+        return hasher.matches(candidate, code.code());
+    }
+
+    /**
+     * Ошибка неудачной активации
+     *
+     * @param locked код заблокирован этой или предыдущей попыткой
+     */
+    public static ActivationFailedException activationFailed(final boolean locked) {
+        return new ActivationFailedException(locked ? CODE_LOCKED : CODE_MISMATCH);
+    }
+
+    /**
+     * Ответ API по проекции OTP-кода
+     */
+    public static OtpCodeResponse toResponse(final OtpCodeView code) {
+        return new OtpCodeResponse(code.id(),
+                effectiveStatus(code.status(), code.insertTime(), code.expirationTime()));
+    }
+
+    /**
+     * Статус кода с учетом срока действия: активный код с истекшим сроком считается просроченным,
+     * даже если колесо таймеров еще не успело обновить запись
+     */
+    public static Status effectiveStatus(final Status status, final Date insertTime, final long expirationTime) {
+        // insertTime пуст только у кода, созданного в текущей транзакции
+        if (status == Status.ACTIVE && insertTime != null
+                && System.currentTimeMillis() - insertTime.getTime() >= expirationTime) {
+            return Status.EXPIRED;
+        }
+        return status;
+    }
+}
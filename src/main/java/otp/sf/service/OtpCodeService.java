@@ -2,27 +2,45 @@ package otp.sf.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import otp.sf.domain.dto.OtpCodeActivateRequest;
+import otp.sf.domain.dto.OtpCodeBatchCreateRequest;
 import otp.sf.domain.dto.OtpCodeCreateRequest;
 import otp.sf.domain.dto.OtpCodeResponse;
+import otp.sf.domain.dto.KeysetPage;
+import otp.sf.domain.dto.OtpDeliveryResponse;
 import otp.sf.domain.model.OtpCode;
 import otp.sf.domain.model.Role;
 import otp.sf.domain.model.Status;
+import otp.sf.domain.model.User;
+import otp.sf.exception.ActivationFailedException;
 import otp.sf.exception.LogicException;
 import otp.sf.repository.OtpCodeRepository;
-import otp.sf.service.notification.FileOtpStorageService;
-import otp.sf.service.notification.NotificationService;
+import otp.sf.repository.OtpCodeView;
+import otp.sf.repository.OtpDeliveryRepository;
+import otp.sf.service.cache.ActiveOtpCode;
+import otp.sf.service.cache.ActiveOtpCodeIndex;
+import otp.sf.service.expiry.OtpExpiryService;
+import otp.sf.service.generator.GeneratedKey;
+import otp.sf.service.generator.OtpKeyGenerator;
+import otp.sf.service.hash.OtpCodeHasher;
+import otp.sf.service.journal.OtpJournal;
+import otp.sf.service.metrics.OtpMetrics;
+import otp.sf.service.notification.NotificationDispatcher;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
-import java.util.function.Predicate;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Сервис управления категориями
@@ -33,14 +51,25 @@ import java.util.function.Predicate;
 @Transactional
 public class OtpCodeService {
 
-    private static final String ALPHABET = "1234567890";
-    private final Random random = new Random();
+    // Уникальный индекс otp_code по operation_id
+    private static final String OPERATION_ID_CONSTRAINT = "otp_code_operation_id_key";
 
     private final OtpConfigurationService configurationService;
     private final OtpCodeRepository repository;
     private final UserService userService;
-    private final PasswordEncoder passwordEncoder;
-    private final List<NotificationService> notificationServices;
+    private final OtpCodeHasher codeHasher;
+    private final NotificationDispatcher notificationDispatcher;
+    private final OtpDeliveryRepository deliveryRepository;
+    private final ActiveOtpCodeIndex activeCodeIndex;
+    private final OtpExpiryService expiryService;
+    private final OtpKeyGenerator keyGenerator;
+    private final OtpJournal journal;
+    private final OtpMetrics metrics;
+    private final OtpAttemptService attemptService;
+
+    // Максимальный размер страницы
+    @Value("${pagination.max-limit:1000}")
+    private int maxLimit;
 
     /**
      * Добавление OTP-кода
@@ -50,39 +79,120 @@ public class OtpCodeService {
      */
     @Transactional(propagation = Propagation.REQUIRES_NEW)
     public OtpCodeResponse createCode(final OtpCodeCreateRequest request) {
+        return metrics.time(OtpMetrics.CREATE, () -> create(request));
+    }
+
+    private OtpCodeResponse create(final OtpCodeCreateRequest request) {
         var user = userService.getCurrentUser();
-        if (repository.existsByOperationIdAndStatusAndUser(request.operationId(), Status.ACTIVE, user)) {
+        // При промахе индекса БД не опрашивается: повтор операции отклонит уникальный индекс по operation_id
+        if (activeCodeIndex.find(user.getId(), request.operationId()).isPresent()) {
             throw new LogicException("Найден активный OTP-код для операции");
         }
 
-        var config = configurationService.getConfiguration();
+        var config = configurationService.getConfiguration(request.operationType());
 
-        var newKey = generateKey(config.length(), value ->
-                repository.existsByCodeAndStatusAndUser(value, Status.ACTIVE, user));
+        var newKey = keyGenerator.generate(user.getId(), config.length());
 
         var code = new OtpCode();
         code.setUser(user);
         code.setStatus(Status.ACTIVE);
         code.setOperationId(request.operationId());
-        code.setCode(passwordEncoder.encode(newKey));
+        code.setCode(codeHasher.hash(newKey.value()));
         code.setExpirationTime(config.expirationTime());
-        repository.save(code);
-        try {
-            fileOtpStorageService.saveOtpCode(user.toString(),code.toString());
-        } catch (Exception e){
-            log.error("Не удалось сохранить код в файл",e);
+        insert(() -> repository.saveAndFlush(code));
+        final var activeCode = ActiveOtpCode.of(code, newKey.fingerprint());
+        activeCodeIndex.putAfterCommit(activeCode);
+        expiryService.schedule(activeCode);
+        journal.appendAfterCommit("CREATED", user.getUsername(), code.getOperationId(), code.getId());
+
+        notificationDispatcher.enqueue(code, user, newKey.value());
+        TransactionHooks.afterCommit(() -> metrics.codesCreated(1));
+
+        return convertToResponse(code);
+    }
+
+    /**
+     * Пакетное добавление OTP-кодов для нескольких операций
+     * Коды сохраняются одной транзакцией пакетными INSERT, доставки регистрируются одним пакетом
+     *
+     * @param request идентификаторы операций
+     * @return информация о OTP-кодах в порядке операций
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public List<OtpCodeResponse> createCodes(final OtpCodeBatchCreateRequest request) {
+        return metrics.time(OtpMetrics.CREATE_BATCH, () -> createAll(request));
+    }
+
+    private List<OtpCodeResponse> createAll(final OtpCodeBatchCreateRequest request) {
+        final var user = userService.getCurrentUser();
+        final var operationIds = request.operationIds();
+        if (new HashSet<>(operationIds).size() != operationIds.size()) {
+            throw new LogicException("Идентификаторы операций в пакете повторяются");
+        }
+        for (final var operationId : operationIds) {
+            if (activeCodeIndex.find(user.getId(), operationId).isPresent()) {
+                throw new LogicException("Найден активный OTP-код для операции " + operationId);
+            }
+        }
+        // Один запрос на пакет вместо запроса на каждую операцию; гонку с другим экземпляром отклонит индекс
+        final var existing = repository.findExistingOperationIds(operationIds);
+        if (!existing.isEmpty()) {
+            throw new LogicException("OTP-код для операции уже создан: " + existing.getFirst());
         }
 
-        var sendResult = false;
-        for(var service : notificationServices) {
-            sendResult |= service.sendOtpCode(user, newKey);
+        final var config = configurationService.getConfiguration(request.operationType());
+
+        final var codes = new ArrayList<OtpCode>(operationIds.size());
+        final var keys = new ArrayList<GeneratedKey>(operationIds.size());
+        // Коды пакета попадут в индекс только после фиксации, поэтому их отпечатки резервируются здесь
+        final var fingerprints = new HashSet<Long>(operationIds.size() * 2);
+        for (final var operationId : operationIds) {
+            final var newKey = keyGenerator.generate(user.getId(), config.length(), fingerprints::contains);
+            fingerprints.add(newKey.fingerprint());
+            keys.add(newKey);
+
+            final var code = new OtpCode();
+            code.setUser(user);
+            code.setStatus(Status.ACTIVE);
+            code.setOperationId(operationId);
+            code.setCode(codeHasher.hash(newKey.value()));
+            code.setExpirationTime(config.expirationTime());
+            codes.add(code);
         }
+        insert(() -> repository.saveAllAndFlush(codes));
 
-        if (!sendResult) {
-            throw new LogicException("Не получилось отправить OTP-код пользователю");
+        final var responses = new ArrayList<OtpCodeResponse>(codes.size());
+        for (int i = 0; i < codes.size(); i++) {
+            final var code = codes.get(i);
+            final var activeCode = ActiveOtpCode.of(code, keys.get(i).fingerprint());
+            activeCodeIndex.putAfterCommit(activeCode);
+            expiryService.schedule(activeCode);
+            journal.appendAfterCommit("CREATED", user.getUsername(), code.getOperationId(), code.getId());
+            responses.add(convertToResponse(code));
         }
 
-        return convertToResponse(code);
+        notificationDispatcher.enqueueAll(codes, user, keys.stream().map(GeneratedKey::value).toList());
+        TransactionHooks.afterCommit(() -> metrics.codesCreated(codes.size()));
+
+        return responses;
+    }
+
+    /**
+     * Вставка новых OTP-кодов с немедленным flush, чтобы нарушение уникальности operation_id
+     * стало ошибкой логики здесь, а не ошибкой фиксации транзакции
+     *
+     * @param save сохранение с flush
+     */
+    private static void insert(final Runnable save) {
+        try {
+            save.run();
+        } catch (DataIntegrityViolationException e) {
+            if (e.getCause() instanceof ConstraintViolationException violation
+                    && OPERATION_ID_CONSTRAINT.equals(violation.getConstraintName())) {
+                throw new LogicException("OTP-код для операции уже создан");
+            }
+            throw e;
+        }
     }
 
     /**
@@ -95,6 +205,8 @@ public class OtpCodeService {
         final var code = repository.findById(id)
                 .orElseThrow(() -> new LogicException("OTP-код не найден"));
         repository.delete(code);
+        activeCodeIndex.removeAfterCommit(code.getUser().getId(), code.getOperationId());
+        expiryService.cancelAfterCommit(code.getId());
     }
 
     /**
@@ -104,23 +216,66 @@ public class OtpCodeService {
      * @param request данные OTP-кода
      * @return информация о OTP-коде
      */
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, noRollbackFor = ActivationFailedException.class)
     public OtpCodeResponse activateCode(final Long id, final OtpCodeActivateRequest request) {
+        return metrics.time(OtpMetrics.ACTIVATE, () -> activate(id, request));
+    }
+
+    private OtpCodeResponse activate(final Long id, final OtpCodeActivateRequest request) {
         var user = userService.getCurrentUser();
-        if (!repository.existsByOperationIdAndStatusAndUser(id, Status.ACTIVE, user)) {
-            throw new LogicException("Активный OTP-код для операции не найден");
+        var code = findActiveCode(user, id)
+                .orElseThrow(() -> new LogicException(OtpCodeRules.ACTIVE_CODE_NOT_FOUND));
+        if (!OtpCodeRules.matches(code, request.code(), codeHasher)) {
+            final boolean locked = attemptService.registerFailure(code.id());
+            if (locked) {
+                activeCodeIndex.removeAfterCommit(user.getId(), id);
+                expiryService.cancelAfterCommit(code.id());
+                journal.appendAfterCommit("LOCKED", user.getUsername(), id, code.id());
+                TransactionHooks.afterCommit(metrics::codeLocked);
+            }
+            throw OtpCodeRules.activationFailed(locked);
         }
-
-        var code = repository.findByOperationIdAndStatusAndUser(id, Status.ACTIVE, user)
-                .orElseThrow(IllegalStateException::new);
-        final var inputKey = passwordEncoder.encode(request.code());
-        if (inputKey.equals(code.getCode())) {
-            throw new LogicException("OTP-код не подходит");
+        // Условное обновление защищает от устаревшей записи индекса и от повторной активации
+        if (repository.updateStatus(code.id(), Status.ACTIVE, Status.USED) == 0) {
+            activeCodeIndex.remove(user.getId(), id);
+            expiryService.cancel(code.id());
+            throw new LogicException(OtpCodeRules.ACTIVE_CODE_NOT_FOUND);
         }
-        code.setStatus(Status.USED);
-        repository.save(code);
+        activeCodeIndex.removeAfterCommit(user.getId(), id);
+        expiryService.cancelAfterCommit(code.id());
+        journal.appendAfterCommit("USED", user.getUsername(), id, code.id());
+        TransactionHooks.afterCommit(metrics::codeUsed);
 
-        return convertToResponse(code);
+        return new OtpCodeResponse(code.id(), Status.USED);
+    }
+
+    /**
+     * Перезагрузка индекса активных OTP-кодов из БД
+     */
+    @Transactional(readOnly = true)
+    public void rebuildActiveCodeIndex() {
+        final var activeCodes = repository.findByStatus(Status.ACTIVE).stream()
+                .map(ActiveOtpCode::of)
+                .toList();
+        activeCodeIndex.rebuild(activeCodes);
+        activeCodes.forEach(expiryService::schedule);
+    }
+
+    /**
+     * Поиск активного OTP-кода операции: сначала в памяти, при промахе - в БД
+     * Промах не достоверен: код мог создать другой экземпляр сервиса
+     *
+     * @param user пользователь
+     * @param operationId идентификатор операции
+     * @return активный OTP-код
+     */
+    private Optional<ActiveOtpCode> findActiveCode(final User user, final long operationId) {
+        final var cached = activeCodeIndex.find(user.getId(), operationId);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        return repository.findByOperationIdAndStatusAndUser(operationId, Status.ACTIVE, user)
+                .map(ActiveOtpCode::of);
     }
 
     /**
@@ -128,84 +283,99 @@ public class OtpCodeService {
      *
      * @return информация о OTP-коде
      */
+    @Transactional(readOnly = true)
     public OtpCodeResponse getCodeInfo(Long id) {
-        var user = userService.getCurrentUser();
-        if (Role.ROLE_ADMIN.equals(user.getRole())) {
-            return repository.findByOperationId(id)
-                    .map(this::convertToResponse)
-                    .orElseThrow(() -> new LogicException("OTP-код не найден"));
-        } else {
-            return repository.findByOperationIdAndUser(id, user)
-                    .map(this::convertToResponse)
-                    .orElseThrow(() -> new LogicException("OTP-код не найден"));
-        }
+        return convertToResponse(findCode(id));
     }
 
     /**
-     * Выборка всех активных OTP-кодов
+     * Статус доставки OTP-кода по каналам
      *
-     * @return список активных OTP-кодов
+     * @param id идентификатор операции
+     * @return список доставок
      */
-    public List<OtpCodeResponse> getAllCodeInfo() {
-        var user = userService.getCurrentUser();
-        if (Role.ROLE_ADMIN.equals(user.getRole())) {
-            return repository.findByStatus(Status.ACTIVE).stream()
-                    .map(this::convertToResponse)
-                    .toList();
-        } else {
-            return repository.findByStatusAndUser(Status.ACTIVE, user).stream()
-                    .map(this::convertToResponse)
-                    .toList();
-        }
+    @Transactional(readOnly = true)
+    public List<OtpDeliveryResponse> getDeliveryInfo(Long id) {
+        return deliveryRepository.findByOtpCodeIdOrderById(findCode(id).id());
     }
 
-    private OtpCodeResponse convertToResponse(OtpCode input) {
-        return new OtpCodeResponse(input.getId(), input.getStatus());
+    /**
+     * Поиск OTP-кода операции: администратору доступны все коды, пользователю - только свои
+     */
+    private OtpCodeView findCode(final Long id) {
+        var user = userService.getCurrentUser();
+        var code = Role.ROLE_ADMIN.equals(user.getRole())
+                ? repository.findByOperationId(id, OtpCodeView.class)
+                : repository.findByOperationIdAndUserId(id, user.getId(), OtpCodeView.class);
+        return code.orElseThrow(() -> new LogicException(OtpCodeRules.CODE_NOT_FOUND));
     }
 
     /**
-     * Метод формирования уникального кода ссылки для короткой ссылки
-     * Каждый символ кода выбирается случайным образом, после чего код проверяется на совпадение с уже
-     * сохраненными активными кодами, если совпадений нет, то код принимается, если нет - пробуем еще раз
+     * Выборка активных OTP-кодов постранично по возрастанию идентификатора
      *
-     * @param size размер кода
-     * @param existChecker лямбда для проверки уникальности кода
+     * @param afterId идентификатор, после которого начинается страница
+     * @param limit размер страницы
+     * @return страница активных OTP-кодов
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<OtpCodeResponse> getAllCodeInfo(final Long afterId, final int limit) {
+        var user = userService.getCurrentUser();
+        var pageSize = Limit.of(Math.clamp(limit, 1, maxLimit));
+        var cursor = afterId == null ? 0L : afterId;
+        var codes = Role.ROLE_ADMIN.equals(user.getRole())
+                ? repository.findByStatusAndIdGreaterThanOrderByIdAsc(Status.ACTIVE, cursor, pageSize)
+                : repository.findByStatusAndUserIdAndIdGreaterThanOrderByIdAsc(Status.ACTIVE, user.getId(), cursor,
+                        pageSize);
+        // Коды с истекшим сроком отфильтровываются, поэтому страница может быть короче лимита
+        var nextCursor = codes.size() < pageSize.max() ? null : codes.getLast().id();
+        return new KeysetPage<>(codes.stream()
+                .map(this::convertToResponse)
+                .filter(code -> code.status() == Status.ACTIVE)
+                .toList(), nextCursor);
+    }
+
+    /**
+     * Потоковая выборка всех активных OTP-кодов
+     * Строки читаются из БД порциями и сразу передаются обработчику, память не зависит от количества кодов
      *
-     * @return уникальный для пользователя код
+     * @param consumer обработчик кода
      */
-    private String generateKey(final int size, final Predicate<String> existChecker) {
-        String key;
-        do {
-            // Генерация строки случайным образом
-            var sb = new StringBuilder();
-            for (int i = 0; i < size; i++) {
-                sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
-            }
-            key = sb.toString();
-        } while (existChecker.test(key));
+    @Transactional(readOnly = true)
+    public void streamAllCodeInfo(final Consumer<OtpCodeResponse> consumer) {
+        var user = userService.getCurrentUser();
+        try (var codes = Role.ROLE_ADMIN.equals(user.getRole())
+                ? repository.streamByStatus(Status.ACTIVE)
+                : repository.streamByStatusAndUserId(Status.ACTIVE, user.getId())) {
+            // Проекции не попадают в контекст персистентности, поэтому память не растет
+            codes.map(this::convertToResponse)
+                    .filter(code -> code.status() == Status.ACTIVE)
+                    .forEach(consumer);
+        }
+    }
+
+    private OtpCodeResponse convertToResponse(OtpCode input) {
+        return new OtpCodeResponse(input.getId(),
+                OtpCodeRules.effectiveStatus(input.getStatus(), input.getInsertTime(), input.getExpirationTime()));
+    }
 
-        return key;
+    private OtpCodeResponse convertToResponse(OtpCodeView input) {
+        return OtpCodeRules.toResponse(input);
     }
 
     /**
-     * Проверка по крону истекших по времени кодов OTP
-     * метод вызывается раз в минуту
+     * Страховочная проверка истекших по времени кодов OTP
+     * Основную работу выполняет {@link OtpExpiryService}, здесь одним UPDATE добираются коды,
+     * созданные другими экземплярами сервиса
      */
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    @Scheduled(cron = "0 * * * * *")
+    @Scheduled(cron = "${otp.expiry.sweep-cron:0 */10 * * * *}")
     @Async
     public void checkExpiringCode() {
-        final var activeCodeList = repository.findByStatus(Status.ACTIVE);
-        final long currentMilliseconds = System.currentTimeMillis();
-        for (final var activeCode : activeCodeList) {
-            if (currentMilliseconds - activeCode.getInsertTime().getTime() > activeCode.getExpirationTime()) {
-                activeCode.setStatus(Status.EXPIRED);
-                log.info("OTP-код {} просрочен", activeCode.getCode());
-            }
+        final long start = System.currentTimeMillis();
+        final var expired = repository.expireOverdue();
+        metrics.recordSweep("reconcile", System.currentTimeMillis() - start);
+        metrics.codesExpired(expired);
+        if (expired > 0) {
+            log.info("Просрочено OTP-кодов при сверке: {}", expired);
         }
-        repository.saveAll(activeCodeList);
     }
-
-    @Autowired
-    private FileOtpStorageService fileOtpStorageService;
 }
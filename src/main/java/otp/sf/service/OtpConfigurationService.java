@@ -1,30 +1,54 @@
 package otp.sf.service;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import otp.sf.domain.dto.OtpConfigurationDTO;
 import otp.sf.domain.model.OtpConfig;
+import otp.sf.domain.model.OtpConfigProfile;
 import otp.sf.exception.LogicException;
+import otp.sf.repository.OtpConfigProfileRepository;
 import otp.sf.repository.OtpConfigRepository;
 
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
 /**
- * Сервис управления транзакциями
+ * Сервис управления конфигурацией OTP-кодов
+ * Конфигурация и профили читаются из неизменяемого снимка в памяти, который заменяется целиком
+ * после фиксации изменений. Любое изменение увеличивает версию конфигурации в БД, по ней
+ * остальные экземпляры сервиса узнают о необходимости перечитать снимок.
  */
+@Slf4j
 @RequiredArgsConstructor
 @Service
-@Transactional
 public class OtpConfigurationService {
 
     public static final long CONFIG_ID = 1L;
+    private static final int PROFILE_NAME_LENGTH = 50;
 
     private final OtpConfigRepository repository;
+    private final OtpConfigProfileRepository profileRepository;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    // Блокировка вместо synchronized: чтение из БД не закрепляет виртуальный поток за носителем
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    @PostConstruct
+    void init() {
+        reload();
+    }
 
     /**
      * Обновление конфигурации
      *
      * @param request данные конфигурации
      */
+    @Transactional
     public void updateConfiguration(final OtpConfigurationDTO request) {
         var config = repository.findById(CONFIG_ID)
                 .orElseGet(OtpConfig::new);
@@ -33,18 +57,139 @@ public class OtpConfigurationService {
         config.setExpirationTime(request.expirationTime());
         config.setLength(request.length());
 
-        repository.save(config);
+        // Версия не пишется из Java: повышается атомарно в БД, как и при изменении профилей
+        repository.saveAndFlush(config);
+        incrementVersion();
     }
 
     /**
-     * Обновление конфигурации
+     * Получение конфигурации по умолчанию
      *
      * @return данные конфигурации
      */
     public OtpConfigurationDTO getConfiguration() {
-        var config = repository.findById(CONFIG_ID)
-                .orElseThrow(() -> new LogicException("Конфигурация OTP не найдена"));
+        final var defaults = snapshot.defaults();
+        if (defaults == null) {
+            throw new LogicException("Конфигурация OTP не найдена");
+        }
+        return defaults;
+    }
+
+    /**
+     * Получение конфигурации для типа операции
+     * Если профиль для типа не задан, действует конфигурация по умолчанию
+     *
+     * @param operationType тип операции
+     * @return данные конфигурации
+     */
+    public OtpConfigurationDTO getConfiguration(final String operationType) {
+        if (operationType != null) {
+            final var profile = snapshot.profiles().get(operationType);
+            if (profile != null) {
+                return profile;
+            }
+        }
+        return getConfiguration();
+    }
+
+    /**
+     * Получение профилей конфигурации
+     *
+     * @return профили по типам операций
+     */
+    public Map<String, OtpConfigurationDTO> getProfiles() {
+        return snapshot.profiles();
+    }
+
+    /**
+     * Создание или изменение профиля конфигурации
+     *
+     * @param name тип операции
+     * @param request данные конфигурации
+     */
+    @Transactional
+    public void updateProfile(final String name, final OtpConfigurationDTO request) {
+        if (name.isBlank() || name.length() > PROFILE_NAME_LENGTH) {
+            throw new LogicException("Имя профиля должно содержать от 1 до 50 символов");
+        }
+        final var profile = profileRepository.findById(name)
+                .orElseGet(OtpConfigProfile::new);
+
+        profile.setName(name);
+        profile.setExpirationTime(request.expirationTime());
+        profile.setLength(request.length());
+
+        profileRepository.save(profile);
+        incrementVersion();
+    }
+
+    /**
+     * Удаление профиля конфигурации
+     *
+     * @param name тип операции
+     */
+    @Transactional
+    public void deleteProfile(final String name) {
+        if (!profileRepository.existsById(name)) {
+            throw new LogicException("Профиль конфигурации не найден");
+        }
+        profileRepository.deleteById(name);
+        incrementVersion();
+    }
+
+    /**
+     * Проверка версии конфигурации в БД
+     * Подхватывает изменения, сделанные другими экземплярами сервиса
+     */
+    @Scheduled(fixedDelayString = "${otp.config.refresh-millis:5000}")
+    public void refresh() {
+        final long version = repository.findVersion(CONFIG_ID).orElse(Snapshot.NO_VERSION);
+        if (version != snapshot.version()) {
+            reload();
+        }
+    }
+
+    private void incrementVersion() {
+        if (repository.incrementVersion(CONFIG_ID) == 0) {
+            throw new LogicException("Конфигурация OTP не найдена");
+        }
+        TransactionHooks.afterCommit(this::reload);
+    }
+
+    /**
+     * Чтение снимка из БД
+     * Версия читается раньше профилей: если профили успели измениться, снимок получит
+     * устаревшую версию и будет перечитан при следующей проверке
+     */
+    private void reload() {
+        reloadLock.lock();
+        try {
+            final var config = repository.findById(CONFIG_ID);
+            final var profiles = profileRepository.findAll().stream()
+                    .collect(Collectors.toUnmodifiableMap(OtpConfigProfile::getName,
+                            profile -> new OtpConfigurationDTO(profile.getExpirationTime(), profile.getLength())));
+
+            snapshot = config
+                    .map(defaults -> new Snapshot(defaults.getVersion(),
+                            new OtpConfigurationDTO(defaults.getExpirationTime(), defaults.getLength()),
+                            profiles))
+                    .orElseGet(() -> new Snapshot(Snapshot.NO_VERSION, null, profiles));
+            log.info("Загружена конфигурация OTP версии {}, профилей: {}", snapshot.version(), profiles.size());
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    /**
+     * Неизменяемый снимок конфигурации
+     *
+     * @param version версия конфигурации в БД
+     * @param defaults конфигурация по умолчанию (null, если еще не создана)
+     * @param profiles профили по типам операций
+     */
+    private record Snapshot(long version, OtpConfigurationDTO defaults, Map<String, OtpConfigurationDTO> profiles) {
 
-        return new OtpConfigurationDTO(config.getExpirationTime(), config.getLength());
+        static final long NO_VERSION = -1;
+        static final Snapshot EMPTY = new Snapshot(NO_VERSION, null, Map.of());
     }
 }
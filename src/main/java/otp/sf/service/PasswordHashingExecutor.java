@@ -0,0 +1,112 @@
+package otp.sf.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import otp.sf.exception.OverloadException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выделенный пул для BCrypt
+ * Хеширование паролей выполняется на фиксированном числе потоков по числу ядер с очередью
+ * ограниченной длины. Если очередь заполнена, запрос сразу отклоняется ({@link OverloadException}),
+ * поэтому всплеск входов не отнимает процессор у активации OTP-кодов.
+ */
+@Component
+@RequiredArgsConstructor
+public class PasswordHashingExecutor {
+
+    private final PasswordEncoder passwordEncoder;
+    private final MeterRegistry meterRegistry;
+
+    // Количество потоков (0 - по числу ядер)
+    @Value("${security.hashing.threads:0}")
+    private int threads;
+
+    // Длина очереди ожидающих задач
+    @Value("${security.hashing.queue-capacity:64}")
+    private int queueCapacity;
+
+    // Значение заголовка Retry-After при отказе
+    @Value("${security.hashing.retry-after-seconds:1}")
+    private long retryAfterSeconds;
+
+    private ThreadPoolExecutor executor;
+    private Timer latency;
+    private Counter rejected;
+
+    @PostConstruct
+    void init() {
+        final int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        executor = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("password-hashing-", 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        latency = Timer.builder("password.hashing.latency")
+                .description("Время выполнения задачи BCrypt, включая ожидание в очереди")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        rejected = Counter.builder("password.hashing.rejected")
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.queue", executor, pool -> pool.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Хеширование пароля
+     *
+     * @param rawPassword пароль
+     * @return хеш
+     */
+    public String encode(final String rawPassword) {
+        return call(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    /**
+     * Выполнение задачи с BCrypt в пуле с ожиданием результата
+     *
+     * @param task задача
+     * @param <T> тип результата
+     * @return результат задачи
+     */
+    public <T> T call(final Callable<T> task) {
+        final long start = System.nanoTime();
+        try {
+            return executor.submit(task).get();
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new OverloadException("Сервис перегружен, повторите запрос позже", retryAfterSeconds);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
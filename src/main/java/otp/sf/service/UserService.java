@@ -1,19 +1,28 @@
 package otp.sf.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import otp.sf.domain.dto.KeysetPage;
 import otp.sf.domain.dto.SignUpRequest;
+import otp.sf.domain.dto.UserDeleteResponse;
 import otp.sf.domain.dto.UserDTO;
 import otp.sf.domain.model.Role;
 import otp.sf.domain.model.User;
 import otp.sf.exception.LogicException;
 import otp.sf.repository.UserRepository;
+import otp.sf.service.cache.ActiveOtpCodeIndex;
+import otp.sf.service.cache.UserDirectory;
+import otp.sf.service.purge.UserPurgeService;
+import otp.sf.service.token.TokenRevocationService;
 
-import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Сервис управления пользователями
@@ -24,6 +33,14 @@ import java.util.List;
 public class UserService {
 
     private final UserRepository repository;
+    private final ActiveOtpCodeIndex activeCodeIndex;
+    private final UserDirectory userDirectory;
+    private final TokenRevocationService revocationService;
+    private final UserPurgeService purgeService;
+
+    // Максимальный размер страницы
+    @Value("${pagination.max-limit:1000}")
+    private int maxLimit;
 
     /**
      * Создание пользователя
@@ -53,20 +70,31 @@ public class UserService {
      */
     public void saveUser(final User user) {
         repository.save(user);
+        if (user.getId() != null) {
+            userDirectory.invalidateAfterCommit(user.getId());
+        }
     }
 
     /**
      * Удаление пользователя
+     * Пользователь сразу помечается удаленным, история OTP-кодов удаляется порциями
      *
      * @param id идентификатор пользователя
+     * @return количество удаленных OTP-кодов и признак завершения
      */
     @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void deleteUser(final Long id) {
+    public UserDeleteResponse deleteUser(final Long id) {
         final var user = getCurrentUser();
         if (user.getId().equals(id)) {
             throw new LogicException("Нельзя удалить себя");
         }
-        repository.deleteById(id);
+        if (repository.markDeleted(id) == 0) {
+            throw new LogicException("Пользователь не найден");
+        }
+        userDirectory.invalidateAfterCommit(id);
+        activeCodeIndex.removeUserAfterCommit(id);
+        revocationService.revokeAll(id);
+        return purgeService.purge(id);
     }
 
     /**
@@ -85,6 +113,7 @@ public class UserService {
         user.setPhone(request.phone());
         user.setTelegramChatId(request.telegramChatId());
         repository.save(user);
+        userDirectory.invalidateAfterCommit(user.getId());
 
         return convertToResponse(user);
     }
@@ -94,12 +123,26 @@ public class UserService {
      *
      * @return пользователь
      */
+    @Transactional(readOnly = true)
     public User getByUsername(final String username) {
-        return repository.findByUsername(username)
+        return repository.findByUsernameAndDeletedFalse(username)
                 .orElseThrow(() -> new LogicException("Пользователь не найден"));
 
     }
 
+    /**
+     * Получение пользователя по идентификатору через кеш пользователей
+     * Без собственной транзакции: при попадании в кеш соединение с БД не берется,
+     * при промахе запрос выполняется в транзакции репозитория
+     *
+     * @param id идентификатор пользователя
+     * @return пользователь
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Optional<User> findById(final long id) {
+        return userDirectory.get(id, () -> repository.findByIdAndDeletedFalse(id));
+    }
+
     /**
      * Получение пользователя по имени пользователя
      * Нужен для Spring Security
@@ -116,24 +159,43 @@ public class UserService {
      * @return текущий пользователь
      */
     public User getCurrentUser() {
-        // Получение имени пользователя из контекста Spring Security
-        final var username = SecurityContextHolder
+        final var authentication = SecurityContextHolder
                 .getContext()
-                .getAuthentication()
-                .getName();
+                .getAuthentication();
+        // Фильтр аутентификации уже положил пользователя в контекст, повторно в БД не идем
+        if (authentication.getPrincipal() instanceof User user) {
+            return user;
+        }
+
+        return getByUsername(authentication.getName());
+    }
 
-        return getByUsername(username);
+    /**
+     * Выборка пользователей постранично по возрастанию идентификатора
+     *
+     * @param afterId идентификатор, после которого начинается страница
+     * @param limit размер страницы
+     * @return страница пользователей
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<UserDTO> getAllUsers(final Long afterId, final int limit) {
+        final var pageSize = Limit.of(Math.clamp(limit, 1, maxLimit));
+        final var users = repository.findByRoleNotAndDeletedFalseAndIdGreaterThanOrderByIdAsc(Role.ROLE_ADMIN,
+                afterId == null ? 0L : afterId, pageSize);
+        final var nextCursor = users.size() < pageSize.max() ? null : users.getLast().id();
+        return new KeysetPage<>(users, nextCursor);
     }
 
     /**
-     * Выборка всех пользователей
+     * Потоковая выборка всех пользователей
      *
-     * @return список пользователей
+     * @param consumer обработчик пользователя
      */
-    public List<UserDTO> getAllUsers() {
-        return repository.findByRoleNot(Role.ROLE_ADMIN).stream()
-                .map(this::convertToResponse)
-                .toList();
+    @Transactional(readOnly = true)
+    public void streamAllUsers(final Consumer<UserDTO> consumer) {
+        try (var users = repository.streamByRoleNot(Role.ROLE_ADMIN)) {
+            users.forEach(consumer);
+        }
     }
 
     private UserDTO convertToResponse(User user) {
@@ -150,9 +212,11 @@ public class UserService {
      * @param id идентификатор пользователя
      */
     public void setAdmin(final Long id) {
-        final var user = repository.findById(id)
+        final var user = repository.findByIdAndDeletedFalse(id)
                 .orElseThrow(() -> new LogicException("Пользователь не найден"));
         user.setRole(Role.ROLE_ADMIN);
         repository.save(user);
+        userDirectory.invalidateAfterCommit(id);
+        revocationService.revokeAll(id);
     }
 }
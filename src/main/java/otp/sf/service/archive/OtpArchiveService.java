@@ -0,0 +1,99 @@
+package otp.sf.service.archive;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.YearMonth;
+
+/**
+ * Архивация завершенных OTP-кодов
+ * Использованные и просроченные коды старше окна хранения переносятся из otp_code
+ * в архивную таблицу, секционированную по месяцам insert_time. Секции старше срока
+ * хранения архива удаляются целиком (DROP TABLE), без построчного DELETE.
+ * Схема архива и функции секционирования создаются миграцией Flyway.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class OtpArchiveService {
+
+    private static final String MOVE_CHUNK = """
+            with moved as (
+                delete from otp_code where id in (
+                    select id from otp_code
+                    where status <> 'ACTIVE' and insert_time < ?
+                    order by insert_time
+                    limit ?)
+                returning id, user_id, operation_id, status, code, insert_time, expiration_time)
+            insert into otp_code_archive (id, user_id, operation_id, status, code, insert_time, expiration_time)
+            select id, user_id, operation_id, status, code, insert_time, expiration_time from moved""";
+
+    /**
+     * Секции от месяца самого старого кандидата на перенос до текущего месяца.
+     * Функции секционирования объявлены в миграции V8__otp_code_archive.sql
+     */
+    private static final String ADD_PARTITIONS = """
+            select otp_code_archive_add_partitions(
+                (select min(insert_time) from otp_code where status <> 'ACTIVE' and insert_time < ?),
+                localtimestamp)""";
+
+    private static final String DROP_PARTITIONS = "select otp_code_archive_drop_partitions(?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Архивация включена
+    @Value("${otp.archive.enabled:true}")
+    private boolean enabled;
+
+    // Сколько миллисекунд завершенные коды остаются в основной таблице
+    @Value("${otp.archive.hot-retention-millis:86400000}")
+    private long hotRetentionMillis;
+
+    // Сколько месяцев хранится архив
+    @Value("${otp.archive.retention-months:12}")
+    private int retentionMonths;
+
+    // Количество строк, переносимых одним запросом
+    @Value("${otp.archive.batch-size:5000}")
+    private int batchSize;
+
+    /**
+     * Перенос завершенных кодов в архив и удаление устаревших секций архива
+     */
+    @Scheduled(cron = "${otp.archive.cron:0 30 * * * *}")
+    public void archive() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            final var cutoff = new Timestamp(System.currentTimeMillis() - hotRetentionMillis);
+            log.info("Создано секций архива OTP-кодов: {}",
+                    jdbcTemplate.queryForObject(ADD_PARTITIONS, Integer.class, cutoff));
+            log.info("Перенесено в архив OTP-кодов: {}", moveFinishedCodes(cutoff));
+            final var oldestKept = YearMonth.now().minusMonths(retentionMonths).atDay(1).atStartOfDay();
+            log.info("Удалено секций архива OTP-кодов: {}",
+                    jdbcTemplate.queryForObject(DROP_PARTITIONS, Integer.class, Timestamp.valueOf(oldestKept)));
+        } catch (Exception e) {
+            log.error("Ошибка архивации OTP-кодов", e);
+        }
+    }
+
+    /**
+     * Перенос порциями: каждая порция - один оператор DELETE ... RETURNING + INSERT в своей транзакции,
+     * поэтому блокировки основной таблицы короткие, а память не зависит от объема истории
+     */
+    private long moveFinishedCodes(final Timestamp cutoff) {
+        long total = 0;
+        int moved;
+        do {
+            moved = jdbcTemplate.update(MOVE_CHUNK, cutoff, batchSize);
+            total += moved;
+        } while (moved == batchSize);
+        return total;
+    }
+}
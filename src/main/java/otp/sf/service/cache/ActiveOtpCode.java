@@ -0,0 +1,38 @@
+package otp.sf.service.cache;
+
+import otp.sf.domain.model.OtpCode;
+
+/**
+ * Снимок активного OTP-кода, хранимый в памяти
+ *
+ * @param id идентификатор OTP-кода
+ * @param userId идентификатор владельца
+ * @param operationId идентификатор операции
+ * @param code хеш OTP-кода
+ * @param expiresAt момент истечения в миллисекундах
+ * @param keyFingerprint отпечаток исходного кода для проверки уникальности (0 - неизвестен)
+ */
+public record ActiveOtpCode(long id, long userId, long operationId, String code, long expiresAt,
+                            long keyFingerprint) {
+
+    public static ActiveOtpCode of(final OtpCode code) {
+        return of(code, 0);
+    }
+
+    public static ActiveOtpCode of(final OtpCode code, final long keyFingerprint) {
+        // insertTime заполняется Hibernate при вставке, до flush используем текущее время
+        final long insertTime = code.getInsertTime() != null
+                ? code.getInsertTime().getTime()
+                : System.currentTimeMillis();
+        return new ActiveOtpCode(code.getId(), code.getUser().getId(), code.getOperationId(), code.getCode(),
+                insertTime + code.getExpirationTime(), keyFingerprint);
+    }
+
+    /**
+     * @param nowMillis текущее время в миллисекундах
+     * @return true, если срок действия кода истек
+     */
+    public boolean isExpired(final long nowMillis) {
+        return nowMillis >= expiresAt;
+    }
+}
@@ -0,0 +1,270 @@
+package otp.sf.service.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import otp.sf.service.TransactionHooks;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Индекс активных OTP-кодов в памяти ("горячий" уровень перед {@link otp.sf.repository.OtpCodeRepository})
+ * Ключ - пара (пользователь, операция), таблица разбита по пользователям на сегменты со своими блокировками.
+ * Изменения применяются только после фиксации транзакции, поэтому индекс никогда не опережает БД.
+ * Индекс отвечает только за попадания: отсутствие кода в индексе не означает его отсутствия в БД
+ * (код мог создать другой экземпляр сервиса или он не поместился в лимит), поэтому при промахе
+ * вызывающий код обязан обратиться к репозиторию.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ActiveOtpCodeIndex {
+
+    private final MeterRegistry meterRegistry;
+
+    // Количество сегментов (округляется вверх до степени двойки)
+    @Value("${otp.cache.shards:64}")
+    private int shardCount;
+
+    // Максимальное количество кодов в памяти
+    @Value("${otp.cache.max-entries:1000000}")
+    private int maxEntries;
+
+    private Shard[] shards;
+    private int shardMask;
+
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private volatile boolean complete;
+
+    @PostConstruct
+    void init() {
+        final int count = shardCount <= 1 ? 1 : Integer.highestOneBit(shardCount - 1) << 1;
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard();
+        }
+        shardMask = count - 1;
+
+        Gauge.builder("otp.cache.size", size, AtomicInteger::get)
+                .description("Количество активных OTP-кодов в памяти")
+                .register(meterRegistry);
+        Gauge.builder("otp.cache.complete", this, index -> index.complete ? 1 : 0)
+                .description("Индекс содержит все активные OTP-коды")
+                .register(meterRegistry);
+        FunctionCounter.builder("otp.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("otp.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("otp.cache.rejected", rejected, LongAdder::sum)
+                .description("Коды, не попавшие в индекс из-за лимита памяти")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Полная перезагрузка индекса
+     *
+     * @param activeCodes все активные OTP-коды из БД
+     */
+    public void rebuild(final Collection<ActiveOtpCode> activeCodes) {
+        complete = false;
+        for (final var shard : shards) {
+            shard.clear();
+        }
+        size.set(0);
+        final long rejectedBefore = rejected.sum();
+        activeCodes.forEach(this::put);
+        complete = rejected.sum() == rejectedBefore;
+        log.info("Индекс активных OTP-кодов загружен: {} записей, полный: {}", size.get(), complete);
+    }
+
+    /**
+     * Поиск активного кода операции пользователя
+     * Пустой результат нужно проверить по БД
+     *
+     * @param userId идентификатор пользователя
+     * @param operationId идентификатор операции
+     * @return активный OTP-код
+     */
+    public Optional<ActiveOtpCode> find(final long userId, final long operationId) {
+        final var code = shard(userId).get(userId, operationId);
+        if (code != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return Optional.ofNullable(code);
+    }
+
+    /**
+     * Проверка, выдан ли пользователю активный код с таким отпечатком
+     * Коды, загруженные из БД, отпечатка не имеют, поэтому проверка не строгая
+     *
+     * @param userId идентификатор пользователя
+     * @param keyFingerprint отпечаток кода
+     * @return true, если код с таким отпечатком найден
+     */
+    public boolean containsKey(final long userId, final long keyFingerprint) {
+        return shard(userId).containsKey(keyFingerprint);
+    }
+
+    /**
+     * Добавление кода после успешной фиксации текущей транзакции
+     */
+    public void putAfterCommit(final ActiveOtpCode code) {
+        TransactionHooks.afterCommit(() -> put(code));
+    }
+
+    /**
+     * Удаление кода после успешной фиксации текущей транзакции
+     */
+    public void removeAfterCommit(final long userId, final long operationId) {
+        TransactionHooks.afterCommit(() -> remove(userId, operationId));
+    }
+
+    /**
+     * Удаление всех кодов пользователя после успешной фиксации текущей транзакции
+     */
+    public void removeUserAfterCommit(final long userId) {
+        TransactionHooks.afterCommit(() -> {
+            for (final var shard : shards) {
+                size.addAndGet(-shard.removeUser(userId));
+            }
+        });
+    }
+
+    public void put(final ActiveOtpCode code) {
+        if (size.get() >= maxEntries) {
+            rejected.increment();
+            if (complete) {
+                complete = false;
+                log.warn("Достигнут лимит индекса активных OTP-кодов ({}), поиск переключен на БД", maxEntries);
+            }
+            return;
+        }
+        if (shard(code.userId()).put(code) == null) {
+            size.incrementAndGet();
+        }
+    }
+
+    public void remove(final long userId, final long operationId) {
+        if (shard(userId).remove(userId, operationId) != null) {
+            size.decrementAndGet();
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    private Shard shard(final long userId) {
+        return shards[(int) LongObjectMap.mix(userId) & shardMask];
+    }
+
+    /**
+     * Сегмент индекса. Идентификатор операции уникален в БД, поэтому внутри сегмента
+     * ключом служит он, а владелец сверяется при чтении. Отпечаток кода уже включает пользователя
+     */
+    private static final class Shard {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final LongObjectMap<ActiveOtpCode> codes = new LongObjectMap<>();
+        private final LongObjectMap<ActiveOtpCode> keys = new LongObjectMap<>();
+
+        ActiveOtpCode get(final long userId, final long operationId) {
+            lock.readLock().lock();
+            try {
+                final var code = codes.get(operationId);
+                return code != null && code.userId() == userId ? code : null;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        boolean containsKey(final long keyFingerprint) {
+            lock.readLock().lock();
+            try {
+                return keys.get(keyFingerprint) != null;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        ActiveOtpCode put(final ActiveOtpCode code) {
+            lock.writeLock().lock();
+            try {
+                final var previous = codes.put(code.operationId(), code);
+                unlinkKey(previous);
+                if (code.keyFingerprint() != 0) {
+                    keys.put(code.keyFingerprint(), code);
+                }
+                return previous;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        ActiveOtpCode remove(final long userId, final long operationId) {
+            lock.writeLock().lock();
+            try {
+                final var code = codes.get(operationId);
+                if (code == null || code.userId() != userId) {
+                    return null;
+                }
+                codes.remove(operationId);
+                unlinkKey(code);
+                return code;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        int removeUser(final long userId) {
+            lock.writeLock().lock();
+            try {
+                final var owned = new LongObjectMap<ActiveOtpCode>();
+                codes.forEach(code -> {
+                    if (code.userId() == userId) {
+                        owned.put(code.operationId(), code);
+                    }
+                });
+                owned.forEach(code -> {
+                    codes.remove(code.operationId());
+                    unlinkKey(code);
+                });
+                return owned.size();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void clear() {
+            lock.writeLock().lock();
+            try {
+                codes.clear();
+                keys.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void unlinkKey(final ActiveOtpCode code) {
+            if (code != null && code.keyFingerprint() != 0 && keys.get(code.keyFingerprint()) == code) {
+                keys.remove(code.keyFingerprint());
+            }
+        }
+    }
+}
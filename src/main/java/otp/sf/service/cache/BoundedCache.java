@@ -0,0 +1,97 @@
+package otp.sf.service.cache;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ограниченный кеш с вытеснением в порядке добавления
+ * Чтение и запись без блокировок; при переполнении вытесняются самые старые добавления,
+ * поэтому стоимость записи не зависит от размера кеша.
+ *
+ * @param <K> тип ключа
+ * @param <V> тип значения
+ */
+public final class BoundedCache<K, V> {
+
+    private final int maxEntries;
+    private final Map<K, Node<K, V>> entries = new ConcurrentHashMap<>();
+    // Добавления по порядку; узел замененной или удаленной записи остается здесь до вытеснения
+    private final Queue<Node<K, V>> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /**
+     * @param maxEntries максимальное количество записей
+     */
+    public BoundedCache(final int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Размер кеша должен быть положительным");
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Поиск значения
+     *
+     * @param key ключ
+     * @return значение или null
+     */
+    public V get(final K key) {
+        final var node = entries.get(key);
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * Добавление или замена значения с вытеснением самых старых записей
+     *
+     * @param key ключ
+     * @param value значение
+     */
+    public void put(final K key, final V value) {
+        final var node = new Node<>(key, value);
+        entries.put(key, node);
+        order.offer(node);
+        queued.incrementAndGet();
+        while (queued.get() > maxEntries) {
+            final var eldest = order.poll();
+            if (eldest == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            // Удаляется только та запись, которую добавил этот узел, а не более новая с тем же ключом
+            entries.remove(eldest.key, eldest);
+        }
+    }
+
+    /**
+     * Удаление значения
+     *
+     * @param key ключ
+     */
+    public void remove(final K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * @return количество записей
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Узел сравнивается по ссылке: повторное добавление того же ключа создает новый узел
+     */
+    private static final class Node<K, V> {
+
+        private final K key;
+        private final V value;
+
+        private Node(final K key, final V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
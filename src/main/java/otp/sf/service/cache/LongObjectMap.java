@@ -0,0 +1,170 @@
+package otp.sf.service.cache;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Хеш-таблица с примитивными ключами long (открытая адресация, линейное пробирование)
+ * Не потокобезопасна, синхронизация выполняется владельцем таблицы
+ *
+ * @param <V> тип значения
+ */
+final class LongObjectMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    LongObjectMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Поиск значения по ключу
+     *
+     * @param key ключ
+     * @return значение или null
+     */
+    @SuppressWarnings("unchecked")
+    V get(final long key) {
+        int slot = slot(key);
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                return (V) values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Добавление или замена значения
+     *
+     * @param key ключ
+     * @param value значение (не null)
+     * @return предыдущее значение или null
+     */
+    @SuppressWarnings("unchecked")
+    V put(final long key, final V value) {
+        int slot = slot(key);
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                final var previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        // Заполненность держим не выше 50%, чтобы цепочки пробирования оставались короткими
+        if (++size > (mask + 1) >> 1) {
+            rehash((mask + 1) << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Удаление значения по ключу
+     *
+     * @param key ключ
+     * @return удаленное значение или null
+     */
+    @SuppressWarnings("unchecked")
+    V remove(final long key) {
+        int slot = slot(key);
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                final var previous = (V) values[slot];
+                shiftBack(slot);
+                size--;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Обход всех значений
+     *
+     * @param action действие над значением
+     */
+    @SuppressWarnings("unchecked")
+    void forEach(final Consumer<V> action) {
+        for (final var value : values) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        if (keys.length > MIN_CAPACITY) {
+            allocate(MIN_CAPACITY);
+        } else {
+            Arrays.fill(values, null);
+        }
+        size = 0;
+    }
+
+    private int slot(final long key) {
+        return (int) mix(key) & mask;
+    }
+
+    /**
+     * Удаление без "надгробий": элементы цепочки сдвигаются на освободившееся место
+     */
+    private void shiftBack(int hole) {
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (values[slot] == null) {
+                break;
+            }
+            final int home = slot(keys[slot]);
+            // Элемент можно сдвинуть, если его "домашний" слот не лежит между дыркой и текущей позицией
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                keys[hole] = keys[slot];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+        values[hole] = null;
+    }
+
+    private void rehash(final int capacity) {
+        final var oldKeys = keys;
+        final var oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = slot(oldKeys[i]);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+}
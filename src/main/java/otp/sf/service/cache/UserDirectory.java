@@ -0,0 +1,113 @@
+package otp.sf.service.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import otp.sf.domain.model.User;
+import otp.sf.service.TransactionHooks;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Кеш пользователей по идентификатору
+ * Хранит отсоединенные копии без коллекции OTP-кодов и выдает каждому вызывающему свою копию.
+ * Записи сбрасываются после фиксации изменений пользователя и по истечении времени жизни.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserDirectory {
+
+    private final MeterRegistry meterRegistry;
+
+    // Максимальное количество пользователей в кеше
+    @Value("${security.user-cache.max-entries:100000}")
+    private int maxEntries;
+
+    // Время жизни записи в миллисекундах (ограничивает расхождение между экземплярами сервиса)
+    @Value("${security.user-cache.ttl-millis:300000}")
+    private long ttlMillis;
+
+    private BoundedCache<Long, Entry> users;
+    private final AtomicLong invalidations = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        users = new BoundedCache<>(maxEntries);
+        Gauge.builder("user.cache.size", users, BoundedCache::size)
+                .register(meterRegistry);
+        FunctionCounter.builder("user.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("user.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Поиск пользователя в кеше с загрузкой при промахе
+     *
+     * @param id идентификатор пользователя
+     * @param loader загрузка пользователя из БД
+     * @return копия пользователя
+     */
+    public Optional<User> get(final long id, final Supplier<Optional<User>> loader) {
+        final long now = System.currentTimeMillis();
+        final var entry = users.get(id);
+        if (entry != null) {
+            if (entry.expiresAt() > now) {
+                hits.increment();
+                return Optional.of(copy(entry.user()));
+            }
+            users.remove(id);
+        }
+        misses.increment();
+
+        // Если во время загрузки пользователя изменили, устаревшую копию не кешируем
+        final long generation = invalidations.get();
+        final var loaded = loader.get().map(UserDirectory::copy);
+        loaded.ifPresent(user -> {
+            // При переполнении вытесняются самые старые записи, истекшие удаляются при обращении к ним
+            if (invalidations.get() == generation) {
+                users.put(id, new Entry(user, now + ttlMillis));
+            }
+        });
+        return loaded.map(UserDirectory::copy);
+    }
+
+    /**
+     * Сброс пользователя после фиксации текущей транзакции
+     *
+     * @param id идентификатор пользователя
+     */
+    public void invalidateAfterCommit(final long id) {
+        invalidations.incrementAndGet();
+        TransactionHooks.afterCommit(() -> {
+            invalidations.incrementAndGet();
+            users.remove(id);
+        });
+    }
+
+    private static User copy(final User user) {
+        return User.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .password(user.getPassword())
+                .role(user.getRole())
+                .email(user.getEmail())
+                .phone(user.getPhone())
+                .telegramChatId(user.getTelegramChatId())
+                .build();
+    }
+
+    private record Entry(User user, long expiresAt) {
+    }
+}
@@ -0,0 +1,142 @@
+package otp.sf.service.expiry;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import otp.sf.domain.model.Status;
+import otp.sf.repository.OtpCodeRepository;
+import otp.sf.service.TransactionHooks;
+import otp.sf.service.cache.ActiveOtpCode;
+import otp.sf.service.cache.ActiveOtpCodeIndex;
+import otp.sf.service.metrics.OtpMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сервис истечения OTP-кодов
+ * Каждый код планируется в колесе таймеров на точный момент insertTime + expirationTime,
+ * сработавшие коды переводятся в статус EXPIRED пакетными обновлениями.
+ * Колесо продвигает собственный поток, чтобы долгие задачи общего планировщика не задерживали истечение;
+ * использованные, заблокированные и удаленные коды снимаются с колеса.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class OtpExpiryService {
+
+    private final OtpCodeRepository repository;
+    private final ActiveOtpCodeIndex activeCodeIndex;
+    private final MeterRegistry meterRegistry;
+    private final OtpMetrics metrics;
+
+    // Шаг колеса таймеров в миллисекундах
+    @Value("${otp.expiry.tick-millis:1000}")
+    private long tickMillis;
+
+    // Максимальное количество кодов в одном UPDATE
+    @Value("${otp.expiry.batch-size:500}")
+    private int batchSize;
+
+    private TimingWheel<ActiveOtpCode> wheel;
+    // Задачи колеса по идентификатору OTP-кода
+    private final Map<Long, TimingWheel.Timeout> timeouts = new ConcurrentHashMap<>();
+    private ScheduledExecutorService ticker;
+
+    @PostConstruct
+    void init() {
+        wheel = new TimingWheel<>(tickMillis, System.currentTimeMillis());
+        Gauge.builder("otp.expiry.scheduled", wheel, TimingWheel::size)
+                .description("Количество OTP-кодов, ожидающих истечения")
+                .register(meterRegistry);
+        ticker = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("otp-expiry").daemon().factory());
+        ticker.scheduleAtFixedRate(this::expireDueCodes, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    /**
+     * Планирование истечения OTP-кода
+     *
+     * @param code активный OTP-код
+     */
+    public void schedule(final ActiveOtpCode code) {
+        final var previous = timeouts.put(code.id(), wheel.schedule(code, code.expiresAt()));
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    /**
+     * Снятие OTP-кода с колеса: код больше не активен
+     *
+     * @param codeId идентификатор OTP-кода
+     */
+    public void cancel(final long codeId) {
+        final var timeout = timeouts.remove(codeId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * Снятие OTP-кода с колеса после фиксации транзакции: при откате код остается активным
+     *
+     * @param codeId идентификатор OTP-кода
+     */
+    public void cancelAfterCommit(final long codeId) {
+        TransactionHooks.afterCommit(() -> cancel(codeId));
+    }
+
+    /**
+     * Перевод в статус EXPIRED всех кодов, срок которых наступил
+     * Обновление условное: уже использованные коды не затрагиваются
+     */
+    void expireDueCodes() {
+        try {
+            expireDueCodes(System.currentTimeMillis());
+        } catch (Exception e) {
+            // Исключение остановило бы периодическую задачу
+            log.error("Ошибка шага колеса истечения OTP-кодов", e);
+        }
+    }
+
+    private void expireDueCodes(final long start) {
+        final var due = new ArrayList<ActiveOtpCode>();
+        wheel.advance(start, code -> {
+            timeouts.remove(code.id());
+            due.add(code);
+        });
+        for (int from = 0; from < due.size(); from += batchSize) {
+            expire(due.subList(from, Math.min(from + batchSize, due.size())));
+        }
+        metrics.recordSweep("wheel", System.currentTimeMillis() - start);
+    }
+
+    private void expire(final List<ActiveOtpCode> batch) {
+        try {
+            final var updated = repository.updateStatus(batch.stream().map(ActiveOtpCode::id).toList(),
+                    Status.ACTIVE, Status.EXPIRED);
+            batch.forEach(code -> activeCodeIndex.remove(code.userId(), code.operationId()));
+            metrics.codesExpired(updated);
+            log.info("Просрочено OTP-кодов: {}", updated);
+        } catch (Exception e) {
+            // Коды вернутся в колесо и будут обработаны на следующем шаге
+            log.error("Не удалось перевести OTP-коды в статус EXPIRED", e);
+            batch.forEach(this::schedule);
+        }
+    }
+}
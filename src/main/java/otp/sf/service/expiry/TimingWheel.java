@@ -0,0 +1,170 @@
+package otp.sf.service.expiry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Иерархическое колесо таймеров
+ * Четыре уровня по 64 слота: при шаге в 1 секунду покрывается более 190 суток.
+ * Планировать и отменять задачи можно из любого потока (без блокировок, через очередь),
+ * продвигать колесо - только из одного потока. Отмененный элемент не срабатывает и сразу
+ * перестает учитываться в размере, а из слота удаляется, когда колесо до него доходит.
+ *
+ * @param <T> тип планируемого элемента
+ */
+public final class TimingWheel<T> {
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELTA = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    private final long tickMillis;
+    private final List<List<Entry>> slots;
+    private final Queue<Entry> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private long currentTick;
+
+    public TimingWheel(final long tickMillis, final long startMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        this.slots = new ArrayList<>(LEVELS * WHEEL_SIZE);
+        for (int i = 0; i < LEVELS * WHEEL_SIZE; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Планирование элемента на момент времени
+     *
+     * @param item элемент
+     * @param deadlineMillis момент срабатывания в миллисекундах
+     * @return задача для отмены
+     */
+    public Timeout schedule(final T item, final long deadlineMillis) {
+        // Округление вверх: элемент никогда не срабатывает раньше срока
+        final var entry = new Entry(item, Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis));
+        size.incrementAndGet();
+        pending.add(entry);
+        return entry;
+    }
+
+    /**
+     * Продвижение колеса до текущего момента
+     *
+     * @param nowMillis текущее время в миллисекундах
+     * @param onExpired обработчик сработавших элементов
+     */
+    public void advance(final long nowMillis, final Consumer<T> onExpired) {
+        final long targetTick = nowMillis / tickMillis;
+        Entry entry;
+        while ((entry = pending.poll()) != null) {
+            place(entry, onExpired);
+        }
+        while (currentTick <= targetTick) {
+            cascade(1);
+            final var slot = slots.get((int) (currentTick & WHEEL_MASK));
+            if (!slot.isEmpty()) {
+                final var due = new ArrayList<>(slot);
+                slot.clear();
+                due.forEach(dueEntry -> place(dueEntry, onExpired));
+            }
+            currentTick++;
+        }
+    }
+
+    /**
+     * @return количество запланированных элементов
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Перенос слота уровня level на уровни ниже при переходе через границу оборота
+     */
+    private void cascade(final int level) {
+        if (level >= LEVELS || (currentTick & ((1L << (WHEEL_BITS * level)) - 1)) != 0) {
+            return;
+        }
+        // Старшие уровни переносятся раньше, чтобы их элементы успели попасть в текущий слот
+        cascade(level + 1);
+        final int index = (int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        final var slot = slots.get(level * WHEEL_SIZE + index);
+        if (!slot.isEmpty()) {
+            final var moved = new ArrayList<>(slot);
+            slot.clear();
+            moved.forEach(movedEntry -> place(movedEntry, null));
+        }
+    }
+
+    private void place(final Entry entry, final Consumer<T> onExpired) {
+        if (entry.isDone()) {
+            return;
+        }
+        final long delta = entry.deadlineTick - currentTick;
+        if (delta <= 0 && onExpired != null) {
+            if (entry.complete()) {
+                onExpired.accept(entry.item);
+            }
+            return;
+        }
+        // Элементы дальше горизонта колеса кладутся в последний слот и перекладываются при срабатывании
+        final long tick = delta > MAX_DELTA ? currentTick + MAX_DELTA : Math.max(entry.deadlineTick, currentTick);
+        int level = 0;
+        while (level < LEVELS - 1 && (tick - currentTick) >= (1L << (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+        final int index = (int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        slots.get(level * WHEEL_SIZE + index).add(entry);
+    }
+
+    /**
+     * Запланированный элемент
+     */
+    public interface Timeout {
+
+        /**
+         * Отмена срабатывания
+         *
+         * @return true, если элемент еще не сработал и не был отменен
+         */
+        boolean cancel();
+    }
+
+    private final class Entry implements Timeout {
+
+        private final T item;
+        private final long deadlineTick;
+        // Срабатывание и отмена взаимоисключающи: побеждает первый
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Entry(final T item, final long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+
+        @Override
+        public boolean cancel() {
+            return complete();
+        }
+
+        private boolean complete() {
+            if (!done.compareAndSet(false, true)) {
+                return false;
+            }
+            size.decrementAndGet();
+            return true;
+        }
+
+        private boolean isDone() {
+            return done.get();
+        }
+    }
+}
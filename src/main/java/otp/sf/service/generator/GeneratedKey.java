@@ -0,0 +1,10 @@
+package otp.sf.service.generator;
+
+/**
+ * Сгенерированный OTP-код
+ *
+ * @param value значение кода
+ * @param fingerprint отпечаток кода с учетом пользователя
+ */
+public record GeneratedKey(String value, long fingerprint) {
+}
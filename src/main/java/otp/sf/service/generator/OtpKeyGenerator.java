@@ -0,0 +1,143 @@
+package otp.sf.service.generator;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import otp.sf.exception.LogicException;
+import otp.sf.service.cache.ActiveOtpCodeIndex;
+import otp.sf.service.metrics.OtpMetrics;
+
+import java.security.SecureRandom;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongPredicate;
+
+/**
+ * Генератор OTP-кодов
+ * Генерация берет из пула буфер с собственным {@link SecureRandom} и переиспользуемым массивом символов;
+ * пул, а не ThreadLocal, чтобы буферы не создавались заново на каждом виртуальном потоке.
+ * Уникальность кода среди активных кодов пользователя проверяется по отпечаткам в {@link ActiveOtpCodeIndex},
+ * без обращения к БД.
+ */
+@Component
+@RequiredArgsConstructor
+public class OtpKeyGenerator {
+
+    private static final int ENTROPY_SIZE = 256;
+
+    private final ActiveOtpCodeIndex activeCodeIndex;
+    private final OtpMetrics metrics;
+
+    // Алфавит OTP-кода
+    @Value("${otp.generator.alphabet:1234567890}")
+    private String alphabet;
+
+    // Максимальное количество попыток получить уникальный код
+    @Value("${otp.generator.max-attempts:100}")
+    private int maxAttempts;
+
+    private char[] symbols;
+    private int acceptLimit;
+    private long fingerprintSeed;
+
+    private final Queue<Buffer> buffers = new ConcurrentLinkedQueue<>();
+
+    @PostConstruct
+    void init() {
+        symbols = alphabet.toCharArray();
+        if (symbols.length < 2 || symbols.length > ENTROPY_SIZE) {
+            throw new IllegalStateException("Алфавит OTP-кода должен содержать от 2 до 256 символов");
+        }
+        // Байты не меньше границы отбрасываются, иначе первые символы алфавита выпадали бы чаще
+        acceptLimit = ENTROPY_SIZE - ENTROPY_SIZE % symbols.length;
+        fingerprintSeed = new SecureRandom().nextLong();
+    }
+
+    /**
+     * Генерация кода, уникального среди активных кодов пользователя
+     *
+     * @param userId идентификатор пользователя
+     * @param length длина кода
+     * @return код и его отпечаток
+     */
+    public GeneratedKey generate(final long userId, final int length) {
+        return generate(userId, length, fingerprint -> false);
+    }
+
+    /**
+     * Генерация кода, уникального среди активных кодов пользователя и уже выданных в текущем пакете
+     *
+     * @param userId идентификатор пользователя
+     * @param length длина кода
+     * @param reserved отпечатки, занятые кодами пакета, еще не попавшими в индекс
+     * @return код и его отпечаток
+     */
+    public GeneratedKey generate(final long userId, final int length, final LongPredicate reserved) {
+        final long start = System.nanoTime();
+        final var pooled = buffers.poll();
+        final var buffer = pooled == null ? new Buffer() : pooled;
+        try {
+            final var chars = buffer.chars(length);
+            for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+                for (int i = 0; i < length; i++) {
+                    chars[i] = symbols[buffer.nextIndex(symbols.length, acceptLimit)];
+                }
+                final long fingerprint = fingerprint(userId, chars, length);
+                if (!reserved.test(fingerprint) && !activeCodeIndex.containsKey(userId, fingerprint)) {
+                    metrics.recordKeyGeneration(System.nanoTime() - start, attempt);
+                    return new GeneratedKey(new String(chars, 0, length), fingerprint);
+                }
+            }
+            metrics.recordKeyGeneration(System.nanoTime() - start, maxAttempts);
+            throw new LogicException("Не удалось сформировать уникальный OTP-код");
+        } finally {
+            buffers.offer(buffer);
+        }
+    }
+
+    /**
+     * Отпечаток кода пользователя: 64-битный хеш с секретной солью процесса
+     * Совпадение отпечатков разных кодов приводит лишь к лишней попытке генерации
+     */
+    private long fingerprint(final long userId, final char[] chars, final int length) {
+        long hash = fingerprintSeed ^ (userId * 0x9e3779b97f4a7c15L);
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ chars[i]) * 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Буфер случайных байтов и символов кода, которым в каждый момент владеет один вызов
+     */
+    private static final class Buffer {
+
+        private final SecureRandom random = new SecureRandom();
+        private final byte[] entropy = new byte[ENTROPY_SIZE];
+        private int position = ENTROPY_SIZE;
+        private char[] chars = new char[32];
+
+        char[] chars(final int length) {
+            if (chars.length < length) {
+                chars = new char[length];
+            }
+            return chars;
+        }
+
+        int nextIndex(final int bound, final int acceptLimit) {
+            while (true) {
+                if (position == ENTROPY_SIZE) {
+                    random.nextBytes(entropy);
+                    position = 0;
+                }
+                final int value = entropy[position++] & 0xff;
+                if (value < acceptLimit) {
+                    return value % bound;
+                }
+            }
+        }
+    }
+}
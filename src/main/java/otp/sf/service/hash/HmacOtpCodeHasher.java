@@ -0,0 +1,117 @@
+package otp.sf.service.hash;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import otp.sf.service.metrics.OtpMetrics;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Хеширование OTP-кодов через HMAC-SHA256
+ * Ключ (pepper) хранится только на сервере, у каждого кода своя соль, сравнение - за постоянное время.
+ * Коды, захешированные ранее через BCrypt, проверяются прежним {@link PasswordEncoder}, пока не истекут.
+ * Формат хеша: $hmac$соль$мак (base64)
+ */
+@Component
+@RequiredArgsConstructor
+public class HmacOtpCodeHasher implements OtpCodeHasher {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String PREFIX = "$hmac$";
+    private static final int SALT_SIZE = 16;
+
+    private static final Base64.Encoder ENCODER = Base64.getEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getDecoder();
+
+    private final PasswordEncoder passwordEncoder;
+    private final OtpMetrics metrics;
+    private final SecureRandom random = new SecureRandom();
+
+    // Серверный ключ HMAC в base64
+    @Value("${otp.hasher.pepper}")
+    private String pepper;
+
+    private SecretKeySpec key;
+    // Пул инициализированных Mac вместо ThreadLocal: виртуальные потоки не переиспользуются
+    private final Queue<Mac> macs = new ConcurrentLinkedQueue<>();
+
+    @PostConstruct
+    void init() {
+        key = new SecretKeySpec(DECODER.decode(pepper), ALGORITHM);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String hash(final String code) {
+        final long start = System.nanoTime();
+        final var salt = new byte[SALT_SIZE];
+        random.nextBytes(salt);
+        final var hash = PREFIX + ENCODER.encodeToString(salt) + '$' + ENCODER.encodeToString(mac(salt, code));
+        metrics.recordHash(System.nanoTime() - start);
+        return hash;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean matches(final String code, final String hash) {
+        final long start = System.nanoTime();
+        try {
+            return verify(code, hash);
+        } finally {
+            metrics.recordMatch(System.nanoTime() - start);
+        }
+    }
+
+    private boolean verify(final String code, final String hash) {
+        if (!hash.startsWith(PREFIX)) {
+            return passwordEncoder.matches(code, hash);
+        }
+        final int separator = hash.indexOf('$', PREFIX.length());
+        if (separator < 0) {
+            return false;
+        }
+        try {
+            final var salt = DECODER.decode(hash.substring(PREFIX.length(), separator));
+            final var expected = DECODER.decode(hash.substring(separator + 1));
+            return MessageDigest.isEqual(expected, mac(salt, code));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private byte[] mac(final byte[] salt, final String code) {
+        final var pooled = macs.poll();
+        final var mac = pooled == null ? createMac() : pooled;
+        try {
+            mac.update(salt);
+            return mac.doFinal(code.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            macs.offer(mac);
+        }
+    }
+
+    private Mac createMac() {
+        try {
+            final var mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Алгоритм " + ALGORITHM + " недоступен", e);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package otp.sf.service.hash;
+
+/**
+ * Хеширование OTP-кодов для хранения в БД
+ */
+public interface OtpCodeHasher {
+
+    /**
+     * Хеширование кода
+     *
+     * @param code OTP-код
+     * @return хеш для хранения
+     */
+    String hash(String code);
+
+    /**
+     * Проверка кода
+     *
+     * @param code введенный OTP-код
+     * @param hash сохраненный хеш
+     * @return true, если код соответствует хешу
+     */
+    boolean matches(String code, String hash);
+}
@@ -0,0 +1,13 @@
+package otp.sf.service.journal;
+
+/**
+ * Политика сброса журнала на диск
+ */
+public enum FsyncPolicy {
+    // Сброс выполняет операционная система
+    NEVER,
+    // Сброс после каждой групповой записи
+    BATCH,
+    // Сброс не чаще заданного интервала
+    INTERVAL
+}
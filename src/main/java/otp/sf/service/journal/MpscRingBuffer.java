@@ -0,0 +1,74 @@
+package otp.sf.service.journal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Кольцевой буфер без блокировок: много производителей, один потребитель
+ * Производитель резервирует номер ячейки через CAS и публикует в нее элемент,
+ * потребитель забирает элементы строго по порядку номеров
+ *
+ * @param <T> тип элемента
+ */
+final class MpscRingBuffer<T> {
+
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    MpscRingBuffer(final int capacity) {
+        final int size = Integer.highestOneBit(Math.max(2, capacity - 1) << 1);
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Добавление элемента
+     *
+     * @param item элемент
+     * @return false, если буфер заполнен
+     */
+    boolean offer(final T item) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head > mask) {
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        slots.lazySet((int) sequence & mask, item);
+        return true;
+    }
+
+    /**
+     * Извлечение всех опубликованных элементов (только из потока-потребителя)
+     *
+     * @param consumer обработчик элемента
+     * @param limit максимальное количество элементов
+     * @return количество извлеченных элементов
+     */
+    int drain(final Consumer<T> consumer, final int limit) {
+        long current = head;
+        int count = 0;
+        while (count < limit) {
+            final int index = (int) current & mask;
+            final var item = slots.get(index);
+            // Ячейка зарезервирована, но еще не опубликована - дочитаем в следующий раз
+            if (item == null) {
+                break;
+            }
+            slots.lazySet(index, null);
+            consumer.accept(item);
+            current++;
+            count++;
+        }
+        head = current;
+        return count;
+    }
+
+    int size() {
+        return (int) (tail.get() - head);
+    }
+}
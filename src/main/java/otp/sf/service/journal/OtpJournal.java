@@ -0,0 +1,282 @@
+package otp.sf.service.journal;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import otp.sf.service.TransactionHooks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Журнал выданных и использованных OTP-кодов (только добавление)
+ * Поток запроса лишь кладет запись в кольцевой буфер, единственный поток-писатель
+ * собирает накопившиеся записи в одну групповую запись в FileChannel, сбрасывает их на диск
+ * согласно {@link FsyncPolicy}, переключает сегменты по размеру и сжимает закрытые сегменты.
+ * Значения и хеши кодов в журнал не попадают.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OtpJournal {
+
+    static final String SEGMENT_PREFIX = "otp-journal-";
+    static final String SEGMENT_SUFFIX = ".log";
+    static final String COMPRESSED_SUFFIX = ".gz";
+    static final String TEMP_SUFFIX = ".tmp";
+
+    private static final DateTimeFormatter SEGMENT_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS")
+            .withZone(ZoneOffset.UTC);
+    private static final int DRAIN_LIMIT = 4096;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final MeterRegistry meterRegistry;
+
+    // Каталог сегментов журнала
+    @Value("${otp.journal.directory:journal}")
+    private Path directory;
+
+    // Емкость кольцевого буфера (округляется до степени двойки)
+    @Value("${otp.journal.capacity:65536}")
+    private int capacity;
+
+    // Размер сегмента, после которого открывается новый
+    @Value("${otp.journal.segment-bytes:67108864}")
+    private long segmentBytes;
+
+    // Политика сброса на диск
+    @Value("${otp.journal.fsync:INTERVAL}")
+    private FsyncPolicy fsyncPolicy;
+
+    // Интервал сброса на диск для политики INTERVAL
+    @Value("${otp.journal.fsync-interval-millis:1000}")
+    private long fsyncIntervalMillis;
+
+    // Сжимать закрытые сегменты
+    @Value("${otp.journal.compress:true}")
+    private boolean compress;
+
+    private MpscRingBuffer<String> buffer;
+    private ByteBuffer writeBuffer;
+    private FileChannel channel;
+    private Path segment;
+    private long lastFsyncNanos;
+    private boolean dirty;
+
+    private Thread writer;
+    private volatile boolean running;
+    private volatile boolean writerParked;
+    private Counter dropped;
+
+    @PostConstruct
+    void init() throws IOException {
+        Files.createDirectories(directory);
+        buffer = new MpscRingBuffer<>(capacity);
+        writeBuffer = ByteBuffer.allocateDirect(1 << 20);
+        openSegment();
+
+        Gauge.builder("otp.journal.backlog", buffer, MpscRingBuffer::size)
+                .description("Записи журнала, ожидающие записи на диск")
+                .register(meterRegistry);
+        dropped = Counter.builder("otp.journal.dropped")
+                .description("Записи журнала, отброшенные из-за переполнения буфера")
+                .register(meterRegistry);
+
+        running = true;
+        writer = Thread.ofPlatform().name("otp-journal-writer").daemon().start(this::writeLoop);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Добавление записи о событии OTP-кода
+     *
+     * @param event событие
+     * @param username имя пользователя
+     * @param operationId идентификатор операции
+     * @param codeId идентификатор OTP-кода
+     */
+    public void append(final String event, final String username, final long operationId, final long codeId) {
+        final var record = new StringBuilder(96)
+                .append(Instant.now()).append('|')
+                .append(event).append('|')
+                .append(username).append('|')
+                .append(operationId).append('|')
+                .append(codeId).append('\n')
+                .toString();
+        if (!buffer.offer(record)) {
+            dropped.increment();
+            log.warn("Буфер журнала OTP-кодов переполнен, запись отброшена");
+            return;
+        }
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Добавление записи о событии OTP-кода после фиксации текущей транзакции
+     * Откаченные создания и активации в журнал не попадают
+     *
+     * @param event событие
+     * @param username имя пользователя
+     * @param operationId идентификатор операции
+     * @param codeId идентификатор OTP-кода
+     */
+    public void appendAfterCommit(final String event, final String username, final long operationId,
+                                  final long codeId) {
+        TransactionHooks.afterCommit(() -> append(event, username, operationId, codeId));
+    }
+
+    /**
+     * @return каталог сегментов журнала
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    private void writeLoop() {
+        while (running || buffer.size() > 0) {
+            try {
+                if (buffer.drain(this::put, DRAIN_LIMIT) == 0) {
+                    flush();
+                    writerParked = true;
+                    // Повторная проверка после выставления флага, чтобы не пропустить пробуждение
+                    if (buffer.size() == 0 && running) {
+                        LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    }
+                    writerParked = false;
+                }
+            } catch (IOException e) {
+                log.error("Ошибка записи журнала OTP-кодов", e);
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        try {
+            flush();
+            channel.force(true);
+            channel.close();
+        } catch (IOException e) {
+            log.error("Ошибка закрытия журнала OTP-кодов", e);
+        }
+    }
+
+    private void put(final String record) {
+        final var bytes = record.getBytes(StandardCharsets.UTF_8);
+        try {
+            if (writeBuffer.remaining() < bytes.length) {
+                flush();
+            }
+            if (bytes.length > writeBuffer.capacity()) {
+                channel.write(ByteBuffer.wrap(bytes));
+                return;
+            }
+            writeBuffer.put(bytes);
+        } catch (IOException e) {
+            log.error("Ошибка записи журнала OTP-кодов", e);
+        }
+    }
+
+    /**
+     * Групповая запись накопленных записей, сброс на диск и смена сегмента
+     */
+    private void flush() throws IOException {
+        if (writeBuffer.position() > 0) {
+            writeBuffer.flip();
+            while (writeBuffer.hasRemaining()) {
+                channel.write(writeBuffer);
+            }
+            writeBuffer.clear();
+            dirty = true;
+        }
+        if (dirty && needsFsync()) {
+            channel.force(false);
+            lastFsyncNanos = System.nanoTime();
+            dirty = false;
+        }
+        if (channel.size() >= segmentBytes) {
+            rotate();
+        }
+    }
+
+    private boolean needsFsync() {
+        return switch (fsyncPolicy) {
+            case NEVER -> false;
+            case BATCH -> true;
+            case INTERVAL ->
+                    System.nanoTime() - lastFsyncNanos >= TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+        };
+    }
+
+    private void rotate() throws IOException {
+        channel.force(true);
+        channel.close();
+        final var closed = segment;
+        openSegment();
+        if (compress) {
+            // Сжатие в отдельном потоке, чтобы не задерживать запись нового сегмента
+            Thread.ofPlatform().name("otp-journal-compress").daemon().start(() -> compress(closed));
+        }
+    }
+
+    private void openSegment() throws IOException {
+        segment = directory.resolve(SEGMENT_PREFIX + SEGMENT_NAME.format(Instant.now()) + SEGMENT_SUFFIX);
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        lastFsyncNanos = System.nanoTime();
+    }
+
+    /**
+     * Сжатие закрытого сегмента: архив пишется под временным именем и атомарно переименовывается,
+     * поэтому читатель видит либо исходный сегмент, либо полный архив
+     */
+    private void compress(final Path source) {
+        final var target = source.resolveSibling(source.getFileName() + COMPRESSED_SUFFIX);
+        final var temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try {
+            try (InputStream in = Files.newInputStream(source);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                in.transferTo(out);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Не удалось сжать сегмент журнала {}", source, e);
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // Незавершенный архив читатель пропускает
+            }
+            return;
+        }
+        try {
+            Files.delete(source);
+        } catch (IOException e) {
+            log.error("Не удалось удалить сжатый сегмент журнала {}", source, e);
+        }
+    }
+}
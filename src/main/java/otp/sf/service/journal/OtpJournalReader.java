@@ -0,0 +1,136 @@
+package otp.sf.service.journal;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Чтение журнала OTP-кодов для аудита
+ */
+@Component
+@RequiredArgsConstructor
+public class OtpJournalReader {
+
+    private static final int MAX_TAIL = 1000;
+
+    private final OtpJournal journal;
+
+    /**
+     * Сегменты журнала в хронологическом порядке
+     * Пока сжатый сегмент еще не удален, на диске есть обе копии - берется архив
+     *
+     * @return список файлов сегментов
+     */
+    public List<Path> segments() {
+        final var segments = new TreeMap<String, Path>();
+        try (var files = Files.list(journal.getDirectory())) {
+            files.filter(OtpJournalReader::isSegment)
+                    .forEach(file -> segments.merge(segmentName(file), file,
+                            (current, other) -> isCompressed(current) ? current : other));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return List.copyOf(segments.values());
+    }
+
+    /**
+     * Все записи журнала по порядку (поток нужно закрыть после использования)
+     *
+     * @return поток записей
+     */
+    public Stream<String> records() {
+        return segments().stream().flatMap(OtpJournalReader::lines);
+    }
+
+    /**
+     * Последние записи журнала
+     *
+     * @param limit количество записей, не больше 1000
+     * @return записи от старых к новым
+     */
+    public List<String> tail(final int limit) {
+        final int count = Math.clamp(limit, 1, MAX_TAIL);
+        final var result = new ArrayDeque<String>(count);
+        final var segments = segments();
+        for (int i = segments.size() - 1; i >= 0 && result.size() < count; i--) {
+            final var segmentTail = new ArrayDeque<String>(count);
+            try (var lines = lines(segments.get(i))) {
+                lines.forEach(line -> {
+                    if (segmentTail.size() == count) {
+                        segmentTail.pollFirst();
+                    }
+                    segmentTail.addLast(line);
+                });
+            }
+            while (!segmentTail.isEmpty() && result.size() < count) {
+                result.addFirst(segmentTail.pollLast());
+            }
+        }
+        return List.copyOf(result);
+    }
+
+    private static Stream<String> lines(final Path segment) {
+        try {
+            var in = open(segment);
+            if (isCompressed(segment)) {
+                in = new GZIPInputStream(in);
+            }
+            final var reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            return reader.lines().onClose(() -> {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Открытие сегмента; если его успели сжать и удалить после выборки списка, читается архив
+     */
+    private static InputStream open(final Path segment) throws IOException {
+        try {
+            return Files.newInputStream(segment);
+        } catch (NoSuchFileException e) {
+            if (isCompressed(segment)) {
+                throw e;
+            }
+            return Files.newInputStream(segment.resolveSibling(segment.getFileName() + OtpJournal.COMPRESSED_SUFFIX));
+        }
+    }
+
+    private static boolean isSegment(final Path file) {
+        final var name = file.getFileName().toString();
+        return name.startsWith(OtpJournal.SEGMENT_PREFIX)
+                && (name.endsWith(OtpJournal.SEGMENT_SUFFIX)
+                || name.endsWith(OtpJournal.SEGMENT_SUFFIX + OtpJournal.COMPRESSED_SUFFIX));
+    }
+
+    private static boolean isCompressed(final Path segment) {
+        return segment.getFileName().toString().endsWith(OtpJournal.COMPRESSED_SUFFIX);
+    }
+
+    private static String segmentName(final Path segment) {
+        final var name = segment.getFileName().toString();
+        return isCompressed(segment)
+                ? name.substring(0, name.length() - OtpJournal.COMPRESSED_SUFFIX.length())
+                : name;
+    }
+}
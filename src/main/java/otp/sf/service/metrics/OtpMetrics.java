@@ -0,0 +1,225 @@
+package otp.sf.service.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import otp.sf.exception.LogicException;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Метрики жизненного цикла OTP-кодов
+ * Метки принимают только фиксированные значения (операция, канал, исход), идентификаторы
+ * пользователей и операций в метки не попадают, поэтому количество временных рядов ограничено.
+ */
+@Component
+@RequiredArgsConstructor
+public class OtpMetrics {
+
+    public static final String CREATE = "create";
+    public static final String CREATE_BATCH = "create_batch";
+    public static final String ACTIVATE = "activate";
+    public static final String ACTIVATE_REACTIVE = "activate_reactive";
+
+    public static final String SENT = "sent";
+    public static final String FAILED = "failed";
+    public static final String ERROR = "error";
+
+    private static final String SUCCESS = "success";
+    private static final String REJECTED = "rejected";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> sweepDurations = new ConcurrentHashMap<>();
+
+    private Counter created;
+    private Counter used;
+    private Counter expired;
+    private Counter locked;
+    private Timer keyGeneration;
+    private DistributionSummary keyAttempts;
+    private Timer hash;
+    private Timer match;
+
+    @PostConstruct
+    void init() {
+        created = codes("created");
+        used = codes("used");
+        expired = codes("expired");
+        locked = codes("locked");
+
+        keyGeneration = Timer.builder("otp.generator.duration")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        keyAttempts = DistributionSummary.builder("otp.generator.attempts")
+                .description("Количество попыток получить уникальный OTP-код")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+
+        hash = Timer.builder("otp.hash.duration")
+                .tag("operation", "hash")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        match = Timer.builder("otp.hash.duration")
+                .tag("operation", "match")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Замер операции с кодом: исход success, rejected (бизнес-отказ) или error
+     *
+     * @param operation операция ({@link #CREATE}, {@link #ACTIVATE})
+     * @param action действие
+     * @param <T> тип результата
+     * @return результат действия
+     */
+    public <T> T time(final String operation, final Supplier<T> action) {
+        final long start = System.nanoTime();
+        String outcome = ERROR;
+        try {
+            final var result = action.get();
+            outcome = SUCCESS;
+            return result;
+        } catch (LogicException e) {
+            outcome = REJECTED;
+            throw e;
+        } finally {
+            record(operation, outcome, start);
+        }
+    }
+
+    /**
+     * Замер реактивной операции с кодом: время от подписки до результата или ошибки
+     *
+     * @param operation операция ({@link #ACTIVATE_REACTIVE})
+     * @param action действие
+     * @param <T> тип результата
+     * @return действие с замером
+     */
+    public <T> Mono<T> time(final String operation, final Mono<T> action) {
+        return Mono.defer(() -> {
+            final long start = System.nanoTime();
+            return action
+                    .doOnSuccess(result -> record(operation, SUCCESS, start))
+                    .doOnError(e -> record(operation, e instanceof LogicException ? REJECTED : ERROR, start));
+        });
+    }
+
+    /**
+     * Замер отправки кода по каналу
+     *
+     * @param channel канал
+     * @param outcome исход ({@link #SENT}, {@link #FAILED}, {@link #ERROR})
+     * @param nanos длительность в наносекундах
+     */
+    public void recordSend(final String channel, final String outcome, final long nanos) {
+        timer("otp.notification.send", "channel", channel, "outcome", outcome).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Замер генерации кода
+     *
+     * @param nanos длительность в наносекундах
+     * @param attempts количество попыток
+     */
+    public void recordKeyGeneration(final long nanos, final int attempts) {
+        keyGeneration.record(nanos, TimeUnit.NANOSECONDS);
+        keyAttempts.record(attempts);
+    }
+
+    /**
+     * Замер хеширования кода
+     *
+     * @param nanos длительность в наносекундах
+     */
+    public void recordHash(final long nanos) {
+        hash.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Замер проверки кода
+     *
+     * @param nanos длительность в наносекундах
+     */
+    public void recordMatch(final long nanos) {
+        match.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Длительность последнего прохода истечения кодов
+     *
+     * @param sweep вид прохода (wheel - колесо таймеров, reconcile - страховочная сверка)
+     * @param millis длительность в миллисекундах
+     */
+    public void recordSweep(final String sweep, final long millis) {
+        sweepDurations.computeIfAbsent(sweep, name -> {
+            final var value = new AtomicLong();
+            Gauge.builder("otp.expiry.sweep.duration", value, AtomicLong::get)
+                    .tag("sweep", name)
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+            return value;
+        }).set(millis);
+    }
+
+    /**
+     * Учет созданных кодов
+     *
+     * @param count количество кодов
+     */
+    public void codesCreated(final int count) {
+        created.increment(count);
+    }
+
+    /**
+     * Учет использованного кода
+     */
+    public void codeUsed() {
+        used.increment();
+    }
+
+    /**
+     * Учет кода, заблокированного после неудачных попыток активации
+     */
+    public void codeLocked() {
+        locked.increment();
+    }
+
+    /**
+     * Учет просроченных кодов
+     *
+     * @param count количество кодов
+     */
+    public void codesExpired(final int count) {
+        expired.increment(count);
+    }
+
+    private void record(final String operation, final String outcome, final long start) {
+        timer("otp.code." + operation, "outcome", outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private Counter codes(final String event) {
+        return Counter.builder("otp.codes")
+                .tag("event", event)
+                .register(meterRegistry);
+    }
+
+    private Timer timer(final String name, final String... tags) {
+        return timers.computeIfAbsent(name + String.join("|", tags), key -> Timer.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+}
@@ -2,10 +2,12 @@ package otp.sf.service.notification;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 import otp.sf.domain.model.User;
+import otp.sf.service.notification.mail.SmtpDeliveryEngine;
+
+import java.nio.charset.StandardCharsets;
 
 /**
  * Сервис рассылки сообщений электронной почты
@@ -17,18 +19,36 @@ public class EmailNotificationService implements NotificationService {
 
     private static final String SUBJECT = "OTP код";
 
-    private final JavaMailSender emailSender;
+    private final SmtpDeliveryEngine deliveryEngine;
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getChannel() {
+        return "email";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getRecipient(final User user) {
+        return user.getEmail();
+    }
 
     /**
      * {@inheritDoc}
      */
     public boolean sendOtpCode(final User user, final String otpCode) {
         try {
-            final var simpleMailMessage = new SimpleMailMessage();
-            simpleMailMessage.setTo(user.getEmail());
-            simpleMailMessage.setSubject(SUBJECT);
-            simpleMailMessage.setText(String.format("OTP: %s", otpCode));
-            emailSender.send(simpleMailMessage);
+            final var message = deliveryEngine.createMessage();
+            final var helper = new MimeMessageHelper(message, StandardCharsets.UTF_8.name());
+            helper.setTo(user.getEmail());
+            helper.setSubject(SUBJECT);
+            helper.setText(String.format("OTP: %s", otpCode));
+
+            if (!deliveryEngine.send(message).join()) {
+                return false;
+            }
 
             log.info("Сообщение Email отправлено успешно");
 
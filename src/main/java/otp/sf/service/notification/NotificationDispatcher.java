@@ -0,0 +1,193 @@
+package otp.sf.service.notification;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import otp.sf.domain.model.DeliveryStatus;
+import otp.sf.domain.model.OtpCode;
+import otp.sf.domain.model.OtpDelivery;
+import otp.sf.domain.model.User;
+import otp.sf.repository.OtpDeliveryRepository;
+import otp.sf.service.TransactionHooks;
+import otp.sf.service.metrics.OtpMetrics;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Асинхронная доставка OTP-кодов
+ * Записи о доставке по каждому каналу сохраняются в одной транзакции с кодом (outbox),
+ * а отправка выполняется после фиксации в виртуальных потоках с повторами и экспоненциальной паузой.
+ * Сам OTP-код в БД не сохраняется, поэтому доставки, брошенные остановленным экземпляром сервиса,
+ * закрываются со статусом FAILED. Брошенной считается доставка старше максимальной длительности отправки:
+ * незавершенные доставки других работающих экземпляров моложе нее и не затрагиваются.
+ * Доставка по каналу, для которого у пользователя нет адреса, сразу сохраняется со статусом FAILED без попыток.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class NotificationDispatcher {
+
+    private static final int MAX_ERROR_LENGTH = 255;
+    private static final String NO_RECIPIENT = "Не указан адрес получателя";
+
+    private final List<NotificationService> notificationServices;
+    private final OtpDeliveryRepository deliveryRepository;
+    private final OtpMetrics metrics;
+
+    // Максимальное количество попыток отправки по одному каналу
+    @Value("${otp.notification.max-attempts:3}")
+    private int maxAttempts;
+
+    // Пауза перед первым повтором в миллисекундах, далее удваивается
+    @Value("${otp.notification.initial-backoff-millis:500}")
+    private long initialBackoffMillis;
+
+    // Максимальное количество одновременных отправок
+    @Value("${otp.notification.max-in-flight:1000}")
+    private int maxInFlight;
+
+    // Возраст незавершенной доставки в миллисекундах, после которого она считается брошенной
+    @Value("${otp.notification.stale-after-millis:900000}")
+    private long staleAfterMillis;
+
+    private ExecutorService executor;
+    private Semaphore inFlight;
+
+    @PostConstruct
+    void init() {
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("otp-notify-", 0).factory());
+        inFlight = new Semaphore(maxInFlight);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Не все OTP-коды отправлены до остановки сервиса");
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Регистрация доставки кода по всем каналам в текущей транзакции
+     * Отправка начнется только после ее фиксации
+     *
+     * @param code OTP-код
+     * @param user получатель
+     * @param otpCode значение OTP-кода
+     */
+    public void enqueue(final OtpCode code, final User user, final String otpCode) {
+        enqueueAll(List.of(code), user, List.of(otpCode));
+    }
+
+    /**
+     * Регистрация доставки пакета кодов одного пользователя по всем каналам в текущей транзакции
+     * Записи о доставке сохраняются одним пакетом, отправка начнется только после фиксации
+     *
+     * @param codes OTP-коды
+     * @param user получатель
+     * @param otpCodes значения OTP-кодов в порядке codes
+     */
+    public void enqueueAll(final List<OtpCode> codes, final User user, final List<String> otpCodes) {
+        final int channels = notificationServices.size();
+        final var deliveries = new ArrayList<OtpDelivery>(codes.size() * channels);
+        for (final var code : codes) {
+            for (final var service : notificationServices) {
+                final var delivery = new OtpDelivery();
+                delivery.setOtpCode(code);
+                delivery.setChannel(service.getChannel());
+                if (StringUtils.isBlank(service.getRecipient(user))) {
+                    // Повтор адрес не добавит, поэтому отправка не планируется
+                    delivery.setStatus(DeliveryStatus.FAILED);
+                    delivery.setLastError(NO_RECIPIENT);
+                } else {
+                    delivery.setStatus(DeliveryStatus.PENDING);
+                }
+                deliveries.add(delivery);
+            }
+        }
+        deliveryRepository.saveAll(deliveries);
+
+        TransactionHooks.afterCommit(() -> {
+            for (int i = 0; i < deliveries.size(); i++) {
+                if (deliveries.get(i).getStatus() != DeliveryStatus.PENDING) {
+                    continue;
+                }
+                final var service = notificationServices.get(i % channels);
+                final var otpCode = otpCodes.get(i / channels);
+                final long deliveryId = deliveries.get(i).getId();
+                executor.execute(() -> deliver(service, deliveryId, user, otpCode));
+            }
+        });
+    }
+
+    /**
+     * Закрытие доставок, брошенных остановленными экземплярами сервиса
+     */
+    @Scheduled(fixedDelayString = "${otp.notification.stale-check-millis:300000}",
+            initialDelayString = "${otp.notification.stale-check-millis:300000}")
+    public void closeStaleDeliveries() {
+        final var closed = deliveryRepository.closeStale(DeliveryStatus.PENDING, DeliveryStatus.FAILED,
+                "Отправка прервана остановкой сервиса", new Date(System.currentTimeMillis() - staleAfterMillis));
+        if (closed > 0) {
+            log.info("Закрыто незавершенных доставок OTP-кодов: {}", closed);
+        }
+    }
+
+    private void deliver(final NotificationService service, final long deliveryId,
+                         final User user, final String otpCode) {
+        inFlight.acquireUninterruptibly();
+        int attempt = 0;
+        try {
+            long backoff = initialBackoffMillis;
+            while (++attempt <= maxAttempts) {
+                if (send(service, user, otpCode)) {
+                    deliveryRepository.updateResult(deliveryId, DeliveryStatus.SENT, attempt, null);
+                    return;
+                }
+                if (attempt < maxAttempts) {
+                    Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+                    backoff *= 2;
+                }
+            }
+            deliveryRepository.updateResult(deliveryId, DeliveryStatus.FAILED, maxAttempts,
+                    "Исчерпаны попытки отправки");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            deliveryRepository.updateResult(deliveryId, DeliveryStatus.FAILED, attempt, "Отправка прервана");
+        } catch (Exception e) {
+            log.error("Ошибка доставки OTP-кода по каналу {}", service.getChannel(), e);
+            deliveryRepository.updateResult(deliveryId, DeliveryStatus.FAILED, attempt,
+                    StringUtils.abbreviate("Ошибка отправки: " + e, MAX_ERROR_LENGTH));
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    /**
+     * Одна попытка отправки с замером по каналу и исходу
+     */
+    private boolean send(final NotificationService service, final User user, final String otpCode) {
+        final long start = System.nanoTime();
+        String outcome = OtpMetrics.ERROR;
+        try {
+            final boolean sent = service.sendOtpCode(user, otpCode);
+            outcome = sent ? OtpMetrics.SENT : OtpMetrics.FAILED;
+            return sent;
+        } finally {
+            metrics.recordSend(service.getChannel(), outcome, System.nanoTime() - start);
+        }
+    }
+}
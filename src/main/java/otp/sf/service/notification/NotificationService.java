@@ -7,6 +7,21 @@ import otp.sf.domain.model.User;
  */
 public interface NotificationService {
 
+    /**
+     * Название канала доставки
+     *
+     * @return канал
+     */
+    String getChannel();
+
+    /**
+     * Адрес получателя в канале доставки
+     *
+     * @param user пользователь
+     * @return адрес, пустой - пользователь не указал адрес для канала
+     */
+    String getRecipient(User user);
+
     /**
      * Отправка OTP кода
      *
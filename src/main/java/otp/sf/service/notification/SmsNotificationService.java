@@ -2,13 +2,11 @@ package otp.sf.service.notification;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.smpp.Session;
-import org.smpp.TCPIPConnection;
-import org.smpp.pdu.BindTransmitter;
 import org.smpp.pdu.SubmitSM;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import otp.sf.domain.model.User;
+import otp.sf.service.notification.smpp.SmppSessionPool;
 
 /**
  * Сервис рассылки SMS-сообщений
@@ -18,46 +16,40 @@ import otp.sf.domain.model.User;
 @Service
 public class SmsNotificationService implements NotificationService {
 
-    @Value("${notification.smpp.host}")
-    private String host;
-    @Value("${notification.smpp.port}")
-    private int port;
-    @Value("${notification.smpp.system_id}")
-    private String systemId;
-    @Value("${notification.smpp.password}")
-    private String password;
-    @Value("${notification.smpp.system_type}")
-    private String systemType;
+    private final SmppSessionPool sessionPool;
+
     @Value("${notification.smpp.source_addr}")
     private String sourceAddress;
 
+    /**
+     * {@inheritDoc}
+     */
+    public String getChannel() {
+        return "sms";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getRecipient(final User user) {
+        return user.getPhone();
+    }
+
     /**
      * {@inheritDoc}
      */
     public boolean sendOtpCode(final User user, final String otpCode) {
         try {
-            // 1. Установка соединения
-            final var connection = new TCPIPConnection(host, port);
-            final var session = new Session(connection);
-            // 2. Подготовка Bind Request
-            final var bindRequest = new BindTransmitter();
-            bindRequest.setSystemId(systemId);
-            bindRequest.setPassword(password);
-            bindRequest.setSystemType(systemType);
-            bindRequest.setInterfaceVersion((byte) 0x34); // SMPP v3.4
-            bindRequest.setAddressRange(sourceAddress);
-            // 3. Выполнение привязки
-            final var bindResponse = session.bind(bindRequest);
-            if (bindResponse.getCommandStatus() != 0) {
-                throw new Exception("Bind failed: " + bindResponse.getCommandStatus());
-            }
-            // 4. Отправка сообщения
             final var submitSM = new SubmitSM();
             submitSM.setSourceAddr(sourceAddress);
             submitSM.setDestAddr(user.getPhone());
             submitSM.setShortMessage(String.format("OTP: %s", otpCode));
 
-            session.submit(submitSM);
+            // Сессия уже привязана, ждем только submit_sm_resp
+            final var status = sessionPool.submit(submitSM).join();
+            if (status != 0) {
+                throw new Exception("Submit failed: " + status);
+            }
 
             log.info("Сообщение Sms отправлено успешно");
 
@@ -0,0 +1,231 @@
+package otp.sf.service.notification.mail;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отправка писем через пул постоянных SMTP-соединений
+ * Каждый рабочий поток владеет одним аутентифицированным соединением, собирает письма
+ * из общей очереди в небольшие пакеты и отправляет пакет за одну сессию SMTP.
+ * Простаивающее соединение закрывается, разорванное - переоткрывается при следующей отправке.
+ * Потоки платформенные: Jakarta Mail блокирует ввод-вывод внутри synchronized.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SmtpDeliveryEngine {
+
+    private final JavaMailSenderImpl mailSender;
+    private final MeterRegistry meterRegistry;
+
+    // Количество SMTP-соединений
+    @Value("${notification.email.pool.size:2}")
+    private int poolSize;
+
+    // Максимальный размер пакета писем
+    @Value("${notification.email.pool.batch-size:50}")
+    private int batchSize;
+
+    // Сколько ждать добора пакета в миллисекундах
+    @Value("${notification.email.pool.linger-millis:20}")
+    private long lingerMillis;
+
+    // Через сколько миллисекунд простоя соединение закрывается
+    @Value("${notification.email.pool.idle-timeout-millis:30000}")
+    private long idleTimeoutMillis;
+
+    // Размер очереди писем
+    @Value("${notification.email.pool.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private BlockingQueue<Envelope> queue;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+    private DistributionSummary batchSizes;
+
+    @PostConstruct
+    void init() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        Gauge.builder("email.queue.depth", queue, BlockingQueue::size)
+                .description("Письма, ожидающие отправки")
+                .register(meterRegistry);
+        batchSizes = DistributionSummary.builder("email.batch.size")
+                .description("Количество писем, отправленных за одну SMTP-сессию")
+                .register(meterRegistry);
+
+        running = true;
+        for (int i = 0; i < poolSize; i++) {
+            workers.add(Thread.ofPlatform().name("smtp-worker-" + i).daemon().start(this::work));
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Постановка письма в очередь отправки
+     *
+     * @param message письмо
+     * @return результат отправки
+     */
+    public CompletableFuture<Boolean> send(final MimeMessage message) {
+        final var envelope = new Envelope(message, new CompletableFuture<>());
+        if (!queue.offer(envelope)) {
+            log.error("Очередь писем переполнена");
+            envelope.result().complete(false);
+        }
+        return envelope.result();
+    }
+
+    /**
+     * @return новое письмо в сессии почтового клиента
+     */
+    public MimeMessage createMessage() {
+        return mailSender.createMimeMessage();
+    }
+
+    private void work() {
+        Transport transport = null;
+        final var batch = new ArrayList<Envelope>(batchSize);
+        while (running) {
+            try {
+                final var first = queue.poll(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    transport = close(transport);
+                    continue;
+                }
+                batch.add(first);
+                collect(batch);
+                transport = sendBatch(transport, batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                // Поток не должен завершаться из-за одной ошибки: соединение переоткроется на следующем пакете
+                log.error("Ошибка отправки пакета писем", e);
+                transport = close(transport);
+            } finally {
+                batch.forEach(envelope -> envelope.result().complete(false));
+                batch.clear();
+            }
+        }
+        close(transport);
+    }
+
+    /**
+     * Добор пакета: все, что уже в очереди, и то, что придет в течение короткого окна ожидания
+     */
+    private void collect(final List<Envelope> batch) throws InterruptedException {
+        queue.drainTo(batch, batchSize - batch.size());
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        while (batch.size() < batchSize) {
+            final long wait = deadline - System.nanoTime();
+            final var next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : null;
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+    }
+
+    private Transport sendBatch(Transport transport, final List<Envelope> batch) {
+        batchSizes.record(batch.size());
+        for (final var envelope : batch) {
+            try {
+                transport = connected(transport);
+                send(transport, envelope.message());
+                envelope.result().complete(true);
+            } catch (MessagingException e) {
+                if (!isConnectionError(e, transport)) {
+                    // Письмо отклонено сервером или некорректно: соединение исправно, повтор не поможет
+                    log.error("Письмо не принято SMTP-сервером: {}", e.getMessage());
+                    envelope.result().complete(false);
+                    continue;
+                }
+                // Соединение закрыто сервером или разорвано: одна повторная попытка на новом соединении
+                transport = close(transport);
+                try {
+                    transport = connected(null);
+                    send(transport, envelope.message());
+                    envelope.result().complete(true);
+                } catch (MessagingException retryError) {
+                    log.error("Ошибка отправки Email: {}", retryError.getMessage());
+                    transport = close(transport);
+                    envelope.result().complete(false);
+                }
+            } catch (RuntimeException e) {
+                log.error("Ошибка отправки Email", e);
+                envelope.result().complete(false);
+            }
+        }
+        return transport;
+    }
+
+    /**
+     * Ошибка соединения, а не письма: соединение не открылось или сервер его закрыл
+     * Отказ в приеме адресатов или письма (SendFailedException) при живой сессии повторять бессмысленно
+     */
+    private static boolean isConnectionError(final MessagingException e, final Transport transport) {
+        if (transport == null || !transport.isConnected()) {
+            return true;
+        }
+        return !(e instanceof SendFailedException) && e.getCause() instanceof IOException;
+    }
+
+    private static void send(final Transport transport, final MimeMessage message) throws MessagingException {
+        if (message.getSentDate() == null) {
+            message.setSentDate(new Date());
+        }
+        message.saveChanges();
+        transport.sendMessage(message, message.getAllRecipients());
+    }
+
+    private Transport connected(final Transport transport) throws MessagingException {
+        if (transport != null && transport.isConnected()) {
+            return transport;
+        }
+        final var newTransport = mailSender.getSession().getTransport(mailSender.getProtocol());
+        newTransport.connect(mailSender.getHost(), mailSender.getPort(),
+                mailSender.getUsername(), mailSender.getPassword());
+        return newTransport;
+    }
+
+    private static Transport close(final Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("SMTP-соединение не закрыто: {}", e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private record Envelope(MimeMessage message, CompletableFuture<Boolean> result) {
+    }
+}
@@ -0,0 +1,195 @@
+package otp.sf.service.notification.smpp;
+
+import lombok.extern.slf4j.Slf4j;
+import org.smpp.ServerPDUEvent;
+import org.smpp.ServerPDUEventListener;
+import org.smpp.Session;
+import org.smpp.TCPIPConnection;
+import org.smpp.pdu.BindTransmitter;
+import org.smpp.pdu.EnquireLink;
+import org.smpp.pdu.Request;
+import org.smpp.pdu.SubmitSM;
+import org.smpp.pdu.Unbind;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Долгоживущая асинхронная SMPP-сессия с окном неподтвержденных PDU
+ * Ответы SMSC сопоставляются с запросами по sequence number, в том числе ответы на enquire_link:
+ * сессия без ответа на enquire_link за время ожидания считается разорванной
+ */
+@Slf4j
+class PooledSmppSession implements ServerPDUEventListener {
+
+    private final SmppSettings settings;
+    private final Semaphore window;
+    private final Map<Integer, CompletableFuture<Integer>> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock lifecycleLock = new ReentrantLock();
+
+    private volatile Session session;
+    private volatile boolean bound;
+
+    PooledSmppSession(final SmppSettings settings) {
+        this.settings = settings;
+        this.window = new Semaphore(settings.windowSize());
+    }
+
+    /**
+     * Установка соединения и асинхронная привязка в режиме передатчика
+     */
+    void connect() throws Exception {
+        lifecycleLock.lock();
+        try {
+            close();
+            doConnect();
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    private void doConnect() throws Exception {
+        final var newSession = new Session(new TCPIPConnection(settings.host(), settings.port()));
+        final var bindRequest = new BindTransmitter();
+        bindRequest.setSystemId(settings.systemId());
+        bindRequest.setPassword(settings.password());
+        bindRequest.setSystemType(settings.systemType());
+        bindRequest.setInterfaceVersion((byte) 0x34); // SMPP v3.4
+        bindRequest.setAddressRange(settings.sourceAddress());
+        final var bindResponse = newSession.bind(bindRequest, this);
+        if (bindResponse == null || bindResponse.getCommandStatus() != 0) {
+            throw new IllegalStateException("Bind failed: "
+                    + (bindResponse == null ? "timeout" : bindResponse.getCommandStatus()));
+        }
+        session = newSession;
+        bound = true;
+    }
+
+    /**
+     * Асинхронная отправка сообщения
+     * Вызывающий поток ждет только свободного места в окне
+     *
+     * @param submitSM сообщение
+     * @return будущий command_status ответа SMSC
+     */
+    CompletableFuture<Integer> submit(final SubmitSM submitSM) throws Exception {
+        if (!window.tryAcquire(settings.responseTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException("Окно SMPP-сессии заполнено");
+        }
+        final var future = new CompletableFuture<Integer>();
+        try {
+            submitSM.assignSequenceNumber();
+            pending.put(submitSM.getSequenceNumber(), future);
+            session.submit(submitSM);
+        } catch (Exception e) {
+            pending.remove(submitSM.getSequenceNumber());
+            window.release();
+            markBroken();
+            throw e;
+        }
+        return future
+                .orTimeout(settings.responseTimeoutMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((status, error) -> {
+                    if (pending.remove(submitSM.getSequenceNumber()) != null) {
+                        window.release();
+                    }
+                });
+    }
+
+    /**
+     * Проверка соединения командой enquire_link
+     * В асинхронном режиме ответ приходит через {@link #handleEvent}, поэтому ожидается по sequence number
+     */
+    void enquireLink() {
+        final var request = new EnquireLink();
+        final var future = new CompletableFuture<Integer>();
+        try {
+            request.assignSequenceNumber();
+            pending.put(request.getSequenceNumber(), future);
+            session.enquireLink(request);
+        } catch (Exception e) {
+            pending.remove(request.getSequenceNumber());
+            log.warn("SMPP enquire_link не выполнен: {}", e.getMessage());
+            markBroken();
+            return;
+        }
+        future.orTimeout(settings.responseTimeoutMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((status, error) -> {
+                    pending.remove(request.getSequenceNumber());
+                    if (error != null && bound) {
+                        log.warn("SMSC не ответил на enquire_link, SMPP-сессия считается разорванной");
+                        markBroken();
+                    }
+                });
+    }
+
+    @Override
+    public void handleEvent(final ServerPDUEvent event) {
+        final var pdu = event.getPDU();
+        if (pdu.isResponse()) {
+            final var future = pending.get(pdu.getSequenceNumber());
+            if (future != null) {
+                future.complete(pdu.getCommandStatus());
+            }
+            return;
+        }
+        if (pdu.isRequest()) {
+            try {
+                session.respond(((Request) pdu).getResponse());
+            } catch (Exception e) {
+                log.warn("Не удалось ответить SMSC: {}", e.getMessage());
+            }
+            if (pdu instanceof Unbind) {
+                log.info("SMSC разорвал SMPP-сессию");
+                markBroken();
+            }
+        }
+    }
+
+    boolean isBound() {
+        return bound;
+    }
+
+    int inFlight() {
+        return settings.windowSize() - window.availablePermits();
+    }
+
+    void close() {
+        lifecycleLock.lock();
+        try {
+            bound = false;
+            final var current = session;
+            session = null;
+            if (current == null) {
+                return;
+            }
+            try {
+                current.unbind();
+            } catch (Exception e) {
+                log.debug("SMPP unbind не выполнен: {}", e.getMessage());
+            }
+            try {
+                current.close();
+            } catch (Exception e) {
+                log.debug("SMPP-соединение не закрыто: {}", e.getMessage());
+            }
+            failPending();
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    private void markBroken() {
+        bound = false;
+        failPending();
+    }
+
+    private void failPending() {
+        final var error = new IllegalStateException("SMPP-сессия закрыта");
+        pending.values().forEach(future -> future.completeExceptionally(error));
+    }
+}
@@ -0,0 +1,165 @@
+package otp.sf.service.notification.smpp;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.smpp.pdu.SubmitSM;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Пул долгоживущих SMPP-сессий
+ * Сессии привязываются один раз, поддерживаются командой enquire_link и переподключаются
+ * автоматически. Отправка асинхронная с ограниченным окном неподтвержденных PDU на сессию,
+ * общий темп отправки ограничивается лимитом TPS SMSC.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SmppSessionPool {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${notification.smpp.host}")
+    private String host;
+    @Value("${notification.smpp.port}")
+    private int port;
+    @Value("${notification.smpp.system_id}")
+    private String systemId;
+    @Value("${notification.smpp.password}")
+    private String password;
+    @Value("${notification.smpp.system_type}")
+    private String systemType;
+    @Value("${notification.smpp.source_addr}")
+    private String sourceAddress;
+
+    // Количество сессий в пуле
+    @Value("${notification.smpp.pool.size:2}")
+    private int poolSize;
+
+    // Максимальное количество неподтвержденных submit_sm на сессию
+    @Value("${notification.smpp.pool.window:10}")
+    private int windowSize;
+
+    // Лимит SMSC на количество сообщений в секунду
+    @Value("${notification.smpp.pool.tps:50}")
+    private int tps;
+
+    // Время ожидания ответа SMSC в миллисекундах
+    @Value("${notification.smpp.pool.response-timeout-millis:5000}")
+    private long responseTimeoutMillis;
+
+    private final List<PooledSmppSession> sessions = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong nextSendNanos = new AtomicLong(System.nanoTime());
+    private long sendIntervalNanos;
+    private Counter rejected;
+
+    @PostConstruct
+    void init() {
+        // Счетчик нужен и без настроенного SMPP: submit() отклоняет отправку через него
+        rejected = Counter.builder("smpp.submit.rejected")
+                .description("Сообщения, не отправленные из-за отсутствия сессий")
+                .register(meterRegistry);
+        if (StringUtils.isBlank(host)) {
+            log.info("SMPP не настроен, отправка SMS отключена");
+            return;
+        }
+        final var settings = new SmppSettings(host, port, systemId, password, systemType, sourceAddress,
+                windowSize, responseTimeoutMillis);
+        for (int i = 0; i < poolSize; i++) {
+            sessions.add(new PooledSmppSession(settings));
+        }
+        sendIntervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, tps);
+
+        Gauge.builder("smpp.pool.bound", sessions, list -> list.stream().filter(PooledSmppSession::isBound).count())
+                .description("Количество привязанных SMPP-сессий")
+                .register(meterRegistry);
+        Gauge.builder("smpp.window.in-flight", sessions,
+                        list -> list.stream().mapToInt(PooledSmppSession::inFlight).sum())
+                .description("Количество submit_sm, ожидающих ответа SMSC")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sessions.forEach(PooledSmppSession::close);
+    }
+
+    /**
+     * Отправка сообщения через свободную сессию пула
+     *
+     * @param submitSM сообщение
+     * @return будущий command_status ответа SMSC
+     */
+    public CompletableFuture<Integer> submit(final SubmitSM submitSM) throws Exception {
+        final var session = nextBoundSession();
+        if (session == null) {
+            rejected.increment();
+            throw new IllegalStateException("Нет активных SMPP-сессий");
+        }
+        throttle();
+        return session.submit(submitSM);
+    }
+
+    /**
+     * Поддержание сессий: enquire_link для живых, переподключение для разорванных
+     */
+    @Scheduled(fixedDelayString = "${notification.smpp.pool.enquire-link-millis:30000}",
+            initialDelay = 0)
+    public void keepAlive() {
+        for (final var session : sessions) {
+            if (session.isBound()) {
+                session.enquireLink();
+                continue;
+            }
+            try {
+                session.connect();
+                log.info("SMPP-сессия привязана к {}:{}", host, port);
+            } catch (Exception e) {
+                log.warn("Не удалось привязать SMPP-сессию: {}", e.getMessage());
+            }
+        }
+    }
+
+    private PooledSmppSession nextBoundSession() {
+        if (sessions.isEmpty()) {
+            return null;
+        }
+        final int start = Math.floorMod(next.getAndIncrement(), sessions.size());
+        for (int i = 0; i < sessions.size(); i++) {
+            final var session = sessions.get((start + i) % sessions.size());
+            if (session.isBound()) {
+                return session;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Равномерное распределение отправок: каждый вызов резервирует следующий свободный слот времени
+     */
+    private void throttle() {
+        final long now = System.nanoTime();
+        final long reserved = nextSendNanos.getAndAccumulate(now,
+                (previous, current) -> Math.max(previous, current) + sendIntervalNanos);
+        final long wait = Math.max(reserved, now) - now;
+        if (wait > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package otp.sf.service.notification.smpp;
+
+/**
+ * Параметры подключения к SMSC
+ */
+record SmppSettings(String host,
+                    int port,
+                    String systemId,
+                    String password,
+                    String systemType,
+                    String sourceAddress,
+                    int windowSize,
+                    long responseTimeoutMillis) {
+}
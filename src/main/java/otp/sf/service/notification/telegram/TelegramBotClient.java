@@ -0,0 +1,367 @@
+package otp.sf.service.notification.telegram;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Общий асинхронный клиент Telegram Bot API
+ * Одно HTTP-соединение (пул) на все сообщения, ограниченная очередь и единственный
+ * поток-диспетчер, который соблюдает лимиты Telegram: общий на бота и отдельный на каждый чат.
+ * Сообщения в чат, который еще не готов, ждут в очереди этого чата и не задерживают остальные чаты.
+ * Интервал чата отсчитывается от завершения предыдущей отправки в этот чат, поэтому сообщения
+ * приходят в Telegram не чаще лимита при любой задержке сети.
+ * Ответ 429 повторяется после паузы retry_after, ошибки сервера - с экспоненциальной паузой.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TelegramBotClient {
+
+    private static final long CHAT_IDLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper;
+
+    @Value("${notification.telegram.bot.token}")
+    private String token;
+
+    // Адрес Bot API (для тестов можно указать локальную заглушку)
+    @Value("${notification.telegram.api-url:https://api.telegram.org}")
+    private String apiUrl;
+
+    // Размер очереди сообщений
+    @Value("${notification.telegram.queue-capacity:10000}")
+    private int queueCapacity;
+
+    // Лимит сообщений в секунду на бота
+    @Value("${notification.telegram.bot-rate:30}")
+    private int botRate;
+
+    // Минимальный интервал между сообщениями в один чат в миллисекундах
+    @Value("${notification.telegram.chat-interval-millis:1000}")
+    private long chatIntervalMillis;
+
+    // Максимальное количество повторов одного сообщения
+    @Value("${notification.telegram.max-retries:3}")
+    private int maxRetries;
+
+    // Время ожидания ответа в миллисекундах
+    @Value("${notification.telegram.timeout-millis:10000}")
+    private long timeoutMillis;
+
+    private HttpClient httpClient;
+    // Новые сообщения, повторы и завершения отправок; обрабатываются только потоком-диспетчером
+    private BlockingQueue<Event> events;
+    private ScheduledExecutorService scheduler;
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    // Принятые и еще не отправленные сообщения (ограничиваются размером очереди)
+    private final AtomicInteger queued = new AtomicInteger();
+    private long botIntervalNanos;
+    private long botNextSend;
+    private volatile long pausedUntil;
+
+    private Timer latency;
+    private Counter retries;
+    private Counter rejected;
+
+    @PostConstruct
+    void init() {
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(timeoutMillis))
+                .build();
+        events = new LinkedBlockingQueue<>();
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("telegram-retry").daemon().factory());
+        botIntervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, botRate);
+        botNextSend = System.nanoTime();
+
+        Gauge.builder("telegram.queue.depth", queued, AtomicInteger::get)
+                .description("Сообщения Telegram, ожидающие отправки")
+                .register(meterRegistry);
+        latency = Timer.builder("telegram.send.latency")
+                .description("Время ответа Telegram Bot API")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        retries = Counter.builder("telegram.send.retries").register(meterRegistry);
+        rejected = Counter.builder("telegram.queue.rejected").register(meterRegistry);
+
+        running = true;
+        dispatcher = Thread.ofPlatform().name("telegram-dispatcher").daemon().start(this::dispatch);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        dispatcher.interrupt();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Постановка сообщения в очередь отправки
+     *
+     * @param chatId идентификатор чата
+     * @param text текст сообщения
+     * @return результат отправки; false, если очередь переполнена или попытки исчерпаны
+     */
+    public CompletableFuture<Boolean> send(final String chatId, final String text) {
+        final var message = new Message(chatId, text, new CompletableFuture<>(), 0);
+        if (!enqueue(message)) {
+            log.error("Очередь сообщений Telegram переполнена");
+        }
+        return message.result();
+    }
+
+    private boolean enqueue(final Message message) {
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            rejected.increment();
+            message.result().complete(false);
+            return false;
+        }
+        events.add(message);
+        return true;
+    }
+
+    private void dispatch() {
+        final var chats = new HashMap<String, Chat>();
+        // Готовые к отправке чаты с ожидающими сообщениями по времени готовности
+        final var waiting = new PriorityQueue<Chat>(Comparator.comparingLong(Chat::nextSend));
+        long nextEviction = System.nanoTime() + CHAT_IDLE_NANOS;
+        while (running) {
+            try {
+                final long now = System.nanoTime();
+                final var due = waiting.peek();
+                if (due != null && due.nextSend() <= now) {
+                    waiting.poll();
+                    send(due, due.pending().poll());
+                    continue;
+                }
+                final var event = events.poll(due == null ? CHAT_IDLE_NANOS : due.nextSend() - now,
+                        TimeUnit.NANOSECONDS);
+                if (event instanceof Message message) {
+                    accept(chats, waiting, message);
+                } else if (event instanceof Completed completed) {
+                    complete(chats, waiting, completed.chatId());
+                }
+                if (now >= nextEviction) {
+                    final long idleSince = now - CHAT_IDLE_NANOS;
+                    chats.values().removeIf(chat -> chat.isIdle() && chat.nextSend() < idleSince);
+                    nextEviction = now + CHAT_IDLE_NANOS;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Отправка сразу, если чат готов и в нем нет ожидающих сообщений, иначе - в очередь чата
+     * Повтор встает в начало очереди чата, чтобы сообщения чата не переставлялись.
+     * Чат ждет в очереди готовности, только пока у него есть сообщения и нет отправки в процессе.
+     */
+    private void accept(final Map<String, Chat> chats, final PriorityQueue<Chat> waiting, final Message message) {
+        final var chat = chats.computeIfAbsent(message.chatId(), chatId -> new Chat(System.nanoTime()));
+        if (chat.isIdle() && chat.nextSend() <= System.nanoTime()) {
+            send(chat, message);
+            return;
+        }
+        if (chat.pending().isEmpty() && !chat.inFlight()) {
+            waiting.add(chat);
+        }
+        if (message.attempt() > 0) {
+            chat.pending().addFirst(message);
+        } else {
+            chat.pending().addLast(message);
+        }
+    }
+
+    /**
+     * Отправка в чат завершена: следующее сообщение чата - не раньше чем через интервал чата
+     */
+    private void complete(final Map<String, Chat> chats, final PriorityQueue<Chat> waiting, final String chatId) {
+        final var chat = chats.get(chatId);
+        if (chat == null) {
+            return;
+        }
+        chat.inFlight(false);
+        chat.nextSend(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(chatIntervalMillis));
+        if (!chat.pending().isEmpty()) {
+            waiting.add(chat);
+        }
+    }
+
+    private void send(final Chat chat, final Message message) {
+        awaitBotSlot();
+        chat.inFlight(true);
+        queued.decrementAndGet();
+        execute(message);
+    }
+
+    private void awaitBotSlot() {
+        final long now = System.nanoTime();
+        final long slot = Math.max(Math.max(botNextSend, now), pausedUntil);
+        botNextSend = slot + botIntervalNanos;
+        if (slot > now) {
+            LockSupport.parkNanos(slot - now);
+        }
+    }
+
+    private void execute(final Message message) {
+        final var body = "chat_id=" + urlEncode(message.chatId()) + "&text=" + urlEncode(message.text());
+        final var request = HttpRequest.newBuilder(URI.create(apiUrl + "/bot" + token + "/sendMessage"))
+                .timeout(Duration.ofMillis(timeoutMillis))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        final long start = System.nanoTime();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    events.add(new Completed(message.chatId()));
+                    if (error != null) {
+                        log.error("Ошибка отправки Telegram: {}", error.getMessage());
+                        retryOrFail(message, backoffNanos(message));
+                    } else {
+                        handleResponse(message, response);
+                    }
+                });
+    }
+
+    private void handleResponse(final Message message, final HttpResponse<String> response) {
+        final int statusCode = response.statusCode();
+        if (statusCode == 200) {
+            log.info("Сообщение Telegram отправлено успешно");
+            message.result().complete(true);
+        } else if (statusCode == 429) {
+            final long delay = TimeUnit.SECONDS.toNanos(retryAfter(response.body()));
+            // Лимит превышен для всего бота: приостанавливаем все отправки
+            pausedUntil = System.nanoTime() + delay;
+            log.warn("Telegram API: превышен лимит, повтор через {} с", TimeUnit.NANOSECONDS.toSeconds(delay));
+            retryOrFail(message, delay);
+        } else if (statusCode >= 500) {
+            log.error("Telegram API error. Status code: {}", statusCode);
+            retryOrFail(message, backoffNanos(message));
+        } else {
+            log.error("Telegram API error. Status code: {}", statusCode);
+            message.result().complete(false);
+        }
+    }
+
+    private void retryOrFail(final Message message, final long delayNanos) {
+        if (message.attempt() >= maxRetries) {
+            message.result().complete(false);
+            return;
+        }
+        retries.increment();
+        retryLater(message.nextAttempt(), delayNanos);
+    }
+
+    private void retryLater(final Message message, final long delayNanos) {
+        scheduler.schedule(() -> enqueue(message), delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private long retryAfter(final String body) {
+        try {
+            final var retryAfter = objectMapper.readTree(body).path("parameters").path("retry_after").asLong(1);
+            return Math.max(1, retryAfter);
+        } catch (Exception e) {
+            return 1;
+        }
+    }
+
+    private static long backoffNanos(final Message message) {
+        return TimeUnit.MILLISECONDS.toNanos(500L << Math.min(message.attempt(), 6));
+    }
+
+    private static String urlEncode(final String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private sealed interface Event permits Message, Completed {
+    }
+
+    private record Message(String chatId, String text, CompletableFuture<Boolean> result, int attempt)
+            implements Event {
+
+        Message nextAttempt() {
+            return new Message(chatId, text, result, attempt + 1);
+        }
+    }
+
+    /**
+     * Завершение отправки в чат (успешное или нет)
+     */
+    private record Completed(String chatId) implements Event {
+    }
+
+    /**
+     * Состояние чата; доступно только потоку-диспетчеру
+     */
+    private static final class Chat {
+
+        private final ArrayDeque<Message> pending = new ArrayDeque<>();
+        private long nextSend;
+        private boolean inFlight;
+
+        private Chat(final long nextSend) {
+            this.nextSend = nextSend;
+        }
+
+        ArrayDeque<Message> pending() {
+            return pending;
+        }
+
+        long nextSend() {
+            return nextSend;
+        }
+
+        void nextSend(final long nextSend) {
+            this.nextSend = nextSend;
+        }
+
+        boolean inFlight() {
+            return inFlight;
+        }
+
+        void inFlight(final boolean inFlight) {
+            this.inFlight = inFlight;
+        }
+
+        boolean isIdle() {
+            return pending.isEmpty() && !inFlight;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package otp.sf.service.purge;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import otp.sf.domain.dto.UserDeleteResponse;
+import otp.sf.repository.OtpCodeRepository;
+import otp.sf.repository.UserRepository;
+import otp.sf.service.TransactionHooks;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Удаление пользователей вместе с историей OTP-кодов, включая архив
+ * Коды удаляются порциями фиксированного размера, каждая в своей транзакции: сначала
+ * из рабочей таблицы, затем из архива, куда их мог перенести архиватор. Первая порция
+ * удаляется в запросе администратора, оставшиеся - фоновой задачей, поэтому время запроса
+ * не зависит от объема истории пользователя.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class UserPurgeService {
+
+    private final UserRepository userRepository;
+    private final OtpCodeRepository codeRepository;
+    private final MeterRegistry meterRegistry;
+
+    // Количество OTP-кодов, удаляемых одним запросом
+    @Value("${user.purge.batch-size:1000}")
+    private int batchSize;
+
+    private final Set<Long> inProgress = ConcurrentHashMap.newKeySet();
+    private ExecutorService executor;
+    private Counter removedCodes;
+
+    @PostConstruct
+    void init() {
+        executor = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("user-purge").daemon().factory());
+        removedCodes = Counter.builder("user.purge.removed")
+                .description("Количество OTP-кодов, удаленных вместе с пользователями")
+                .register(meterRegistry);
+        Gauge.builder("user.purge.pending", inProgress, Set::size)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Незавершенное удаление продолжится после перезапуска по пометке deleted
+        executor.shutdownNow();
+    }
+
+    /**
+     * Удаление пользователя, уже помеченного удаленным в текущей транзакции
+     * Если история помещается в одну порцию, пользователь удаляется сразу,
+     * иначе остаток передается фоновой задаче после фиксации транзакции
+     *
+     * @param userId идентификатор пользователя
+     * @return результат удаления
+     */
+    public UserDeleteResponse purge(final long userId) {
+        final int removed = deleteChunk(userId);
+        if (removed < batchSize) {
+            userRepository.deleteMarked(userId);
+            return new UserDeleteResponse(userId, removed, true);
+        }
+        TransactionHooks.afterCommit(() -> schedule(userId));
+        return new UserDeleteResponse(userId, removed, false);
+    }
+
+    /**
+     * Возобновление удаления пользователей, прерванного перезапуском или ошибкой
+     */
+    @Scheduled(fixedDelayString = "${user.purge.resume-millis:600000}",
+            initialDelayString = "${user.purge.resume-millis:600000}")
+    public void resumePending() {
+        userRepository.findDeletedIds().forEach(this::schedule);
+    }
+
+    private void schedule(final long userId) {
+        if (inProgress.add(userId)) {
+            executor.execute(() -> purgeInBackground(userId));
+        }
+    }
+
+    private void purgeInBackground(final long userId) {
+        long total = 0;
+        try {
+            int removed;
+            do {
+                removed = deleteChunk(userId);
+                total += removed;
+            } while (removed == batchSize && !Thread.currentThread().isInterrupted());
+
+            if (removed < batchSize) {
+                userRepository.deleteMarked(userId);
+                log.info("Пользователь {} удален, удалено OTP-кодов в фоне: {}", userId, total);
+            }
+        } catch (Exception e) {
+            log.error("Ошибка удаления пользователя {}, удалено OTP-кодов: {}", userId, total, e);
+        } finally {
+            inProgress.remove(userId);
+        }
+    }
+
+    /**
+     * Удаление порции кодов пользователя: неполная порция рабочей таблицы дополняется из архива
+     *
+     * @return количество удаленных кодов; меньше размера порции, если кодов больше нет
+     */
+    private int deleteChunk(final long userId) {
+        int removed = codeRepository.deleteChunkByUser(userId, batchSize);
+        if (removed < batchSize) {
+            removed += codeRepository.deleteArchiveChunkByUser(userId, batchSize - removed);
+        }
+        removedCodes.increment(removed);
+        return removed;
+    }
+}
@@ -0,0 +1,174 @@
+package otp.sf.service.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import otp.sf.exception.RateLimitException;
+import otp.sf.exception.RequestTooLargeException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничение частоты создания и активации OTP-кодов
+ * Для каждого эндпоинта две корзины: по пользователю и по операции пользователя. Токен списывается
+ * из обеих корзин или ни из одной, поэтому перебор идентификаторов операций упирается в лимит пользователя,
+ * а запрос, отклоненный лимитом операции, не расходует лимит пользователя. Корзина операции
+ * привязана к пользователю: чужие запросы с тем же идентификатором операции ее не расходуют.
+ * Пакетное создание ограничивается отдельной корзиной пользователя в кодах (лимит back-office).
+ * Лимиты задаются в otp.rate-limit.{create,activate}.{user,operation} и otp.rate-limit.create-batch.user.
+ */
+@Component
+@RequiredArgsConstructor
+public class OtpRateLimiter {
+
+    private static final String CREATE = "create";
+    private static final String CREATE_BATCH = "create-batch";
+    private static final String ACTIVATE = "activate";
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+
+    // Ограничение включено
+    @Value("${otp.rate-limit.enabled:true}")
+    private boolean enabled;
+
+    // Количество сегментов корзин одного лимита
+    @Value("${otp.rate-limit.stripes:64}")
+    private int stripes;
+
+    // Максимальное количество корзин одного лимита
+    @Value("${otp.rate-limit.max-buckets:100000}")
+    private int maxBuckets;
+
+    private Limit<Long> createByUser;
+    private Limit<UserOperation> createByOperation;
+    private Limit<Long> createBatchByUser;
+    private Limit<Long> activateByUser;
+    private Limit<UserOperation> activateByOperation;
+
+    @PostConstruct
+    void init() {
+        createByUser = limit(CREATE, "user", 10);
+        createByOperation = limit(CREATE, "operation", 3);
+        createBatchByUser = limit(CREATE_BATCH, "user", 5000);
+        activateByUser = limit(ACTIVATE, "user", 30);
+        activateByOperation = limit(ACTIVATE, "operation", 5);
+    }
+
+    /**
+     * Проверка лимита создания кода
+     *
+     * @param userId идентификатор пользователя
+     * @param operationId идентификатор операции
+     * @throws RateLimitException если лимит исчерпан
+     */
+    public void checkCreate(final long userId, final long operationId) {
+        acquire(createByUser, userId, createByOperation, new UserOperation(userId, operationId));
+    }
+
+    /**
+     * Проверка лимита пакетного создания: каждый код пакета списывает токен из корзины пакетов пользователя
+     * Пакет больше емкости этой корзины не пропускается никогда
+     *
+     * @param userId идентификатор пользователя
+     * @param count количество кодов в пакете
+     * @throws RequestTooLargeException если пакет больше емкости корзины
+     * @throws RateLimitException если лимит исчерпан
+     */
+    public void checkCreateBatch(final long userId, final int count) {
+        if (!enabled) {
+            return;
+        }
+        final int capacity = createBatchByUser.limiter().getCapacity();
+        if (count > capacity) {
+            throw new RequestTooLargeException("Размер пакета превышает лимит создания OTP-кодов: не более "
+                    + capacity);
+        }
+        reject(createBatchByUser, createBatchByUser.limiter().tryAcquire(userId, count, System.nanoTime()));
+    }
+
+    /**
+     * Проверка лимита активации кода
+     *
+     * @param userId идентификатор пользователя
+     * @param operationId идентификатор операции
+     * @throws RateLimitException если лимит исчерпан
+     */
+    public void checkActivate(final long userId, final long operationId) {
+        acquire(activateByUser, userId, activateByOperation, new UserOperation(userId, operationId));
+    }
+
+    /**
+     * Удаление простаивающих корзин
+     */
+    @Scheduled(fixedRateString = "${otp.rate-limit.evict-millis:60000}",
+            initialDelayString = "${otp.rate-limit.evict-millis:60000}")
+    public void evictIdle() {
+        final long now = System.nanoTime();
+        createByUser.limiter().evictIdle(now);
+        createByOperation.limiter().evictIdle(now);
+        createBatchByUser.limiter().evictIdle(now);
+        activateByUser.limiter().evictIdle(now);
+        activateByOperation.limiter().evictIdle(now);
+    }
+
+    /**
+     * Списание токена из двух корзин: обе проверяются до списания, а если вторую успел исчерпать
+     * одновременный запрос, токен первой возвращается
+     */
+    private <A, B> void acquire(final Limit<A> first, final A firstKey, final Limit<B> second, final B secondKey) {
+        if (!enabled) {
+            return;
+        }
+        final long now = System.nanoTime();
+        reject(first, first.limiter().waitNanos(firstKey, 1, now));
+        reject(second, second.limiter().waitNanos(secondKey, 1, now));
+        reject(first, first.limiter().tryAcquire(firstKey, 1, now));
+        final long waitNanos = second.limiter().tryAcquire(secondKey, 1, now);
+        if (waitNanos > 0) {
+            first.limiter().release(firstKey, 1, now);
+            reject(second, waitNanos);
+        }
+    }
+
+    private static void reject(final Limit<?> limit, final long waitNanos) {
+        if (waitNanos > 0) {
+            limit.rejected().increment();
+            throw new RateLimitException("Слишком много запросов, повторите позже",
+                    Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1)));
+        }
+    }
+
+    private <K> Limit<K> limit(final String endpoint, final String key, final int defaultCapacity) {
+        final var prefix = "otp.rate-limit." + endpoint + "." + key + ".";
+        final int capacity = environment.getProperty(prefix + "capacity", Integer.class, defaultCapacity);
+        final long periodMillis = environment.getProperty(prefix + "period-millis", Long.class, 60000L);
+        final var limiter = new TokenBucketLimiter<K>(capacity, TimeUnit.MILLISECONDS.toNanos(periodMillis),
+                stripes, maxBuckets);
+
+        Gauge.builder("otp.ratelimit.buckets", limiter, TokenBucketLimiter::size)
+                .tag("endpoint", endpoint)
+                .tag("key", key)
+                .register(meterRegistry);
+        final var rejected = Counter.builder("otp.ratelimit.rejected")
+                .tag("endpoint", endpoint)
+                .tag("key", key)
+                .register(meterRegistry);
+        return new Limit<>(limiter, rejected);
+    }
+
+    private record Limit<K>(TokenBucketLimiter<K> limiter, Counter rejected) {
+    }
+
+    /**
+     * Ключ корзины операции: идентификатор операции в пределах пользователя
+     */
+    private record UserOperation(long userId, long operationId) {
+    }
+}
@@ -0,0 +1,185 @@
+package otp.sf.service.ratelimit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограничитель на корзинах токенов без блокировок
+ * Корзина хранится одним числом - моментом, когда она снова станет полной (GCRA):
+ * списание токенов - это сдвиг момента одним CAS. Полная корзина ничем не отличается от новой,
+ * поэтому простаивающие корзины удаляются без потери состояния. Ключи распределены по сегментам
+ * с лимитом размера; если сегмент заполнен активными корзинами, новые ключи делят одну общую корзину сегмента.
+ *
+ * @param <K> тип ключа корзины
+ */
+final class TokenBucketLimiter<K> {
+
+    // Время пополнения одного токена в наносекундах
+    private final long intervalNanos;
+    // Емкость корзины в наносекундах пополнения
+    private final long burstNanos;
+    private final int capacity;
+    private final int maxBucketsPerStripe;
+    private final Stripe<K>[] stripes;
+    private final int stripeMask;
+
+    /**
+     * @param capacity емкость корзины
+     * @param periodNanos время полного пополнения корзины в наносекундах
+     * @param stripeCount количество сегментов (округляется вверх до степени двойки)
+     * @param maxBuckets максимальное количество корзин
+     */
+    @SuppressWarnings("unchecked")
+    TokenBucketLimiter(final int capacity, final long periodNanos, final int stripeCount, final int maxBuckets) {
+        this.capacity = Math.max(1, capacity);
+        this.intervalNanos = Math.max(1, periodNanos / this.capacity);
+        this.burstNanos = intervalNanos * this.capacity;
+
+        final int count = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe<>();
+        }
+        stripeMask = count - 1;
+        maxBucketsPerStripe = Math.max(1, maxBuckets / count);
+    }
+
+    /**
+     * Списание токенов из корзины ключа
+     * Списываются все запрошенные токены или ни одного
+     *
+     * @param key ключ корзины
+     * @param permits количество токенов, не больше емкости корзины
+     * @param now текущее время в наносекундах ({@link System#nanoTime()})
+     * @return 0, если токены списаны, иначе через сколько наносекунд повторить запрос
+     * @throws IllegalArgumentException если запрос больше емкости корзины: его нельзя выполнить никогда
+     */
+    long tryAcquire(final K key, final int permits, final long now) {
+        checkPermits(permits);
+        final var bucket = bucket(key, now);
+        final long cost = intervalNanos * permits;
+        while (true) {
+            final long fullAt = bucket.get();
+            final long next = (fullAt - now > 0 ? fullAt : now) + cost;
+            final long overdraft = next - now - burstNanos;
+            if (overdraft > 0) {
+                return overdraft;
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Проверка без списания: через сколько наносекунд в корзине ключа будет нужное количество токенов
+     * Отсутствующая корзина не создается
+     *
+     * @param key ключ корзины
+     * @param permits количество токенов, не больше емкости корзины
+     * @param now текущее время в наносекундах
+     * @return 0, если токенов достаточно
+     */
+    long waitNanos(final K key, final int permits, final long now) {
+        checkPermits(permits);
+        final var stripe = stripe(key);
+        var bucket = stripe.buckets.get(key);
+        if (bucket == null) {
+            if (stripe.buckets.size() < maxBucketsPerStripe) {
+                return 0;
+            }
+            bucket = stripe.overflow;
+        }
+        final long fullAt = bucket.get();
+        return Math.max(0, (fullAt - now > 0 ? fullAt : now) + intervalNanos * permits - now - burstNanos);
+    }
+
+    /**
+     * Возврат списанных токенов, если запрос все-таки не выполнен
+     * Корзина не наполняется сверх емкости
+     *
+     * @param key ключ корзины
+     * @param permits количество токенов
+     * @param now текущее время в наносекундах
+     */
+    void release(final K key, final int permits, final long now) {
+        checkPermits(permits);
+        final var bucket = bucket(key, now);
+        final long cost = intervalNanos * permits;
+        while (true) {
+            final long fullAt = bucket.get();
+            if (fullAt - now <= 0) {
+                return;
+            }
+            final long next = fullAt - cost - now > 0 ? fullAt - cost : now;
+            if (bucket.compareAndSet(fullAt, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Удаление полных корзин: их состояние совпадает с состоянием новой корзины
+     *
+     * @param now текущее время в наносекундах
+     * @return количество удаленных корзин
+     */
+    int evictIdle(final long now) {
+        int evicted = 0;
+        for (final var stripe : stripes) {
+            evicted += stripe.evictIdle(now);
+        }
+        return evicted;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    int size() {
+        int size = 0;
+        for (final var stripe : stripes) {
+            size += stripe.buckets.size();
+        }
+        return size;
+    }
+
+    private void checkPermits(final int permits) {
+        if (permits < 1 || permits > capacity) {
+            throw new IllegalArgumentException("Запрошено " + permits + " токенов при емкости корзины " + capacity);
+        }
+    }
+
+    private Stripe<K> stripe(final K key) {
+        final int hash = key.hashCode() * 0x9e3779b9;
+        return stripes[(hash ^ (hash >>> 16)) & stripeMask];
+    }
+
+    private AtomicLong bucket(final K key, final long now) {
+        final var stripe = stripe(key);
+        final var bucket = stripe.buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (stripe.buckets.size() >= maxBucketsPerStripe && stripe.evictIdle(now) == 0) {
+            return stripe.overflow;
+        }
+        return stripe.buckets.computeIfAbsent(key, ignored -> new AtomicLong(now));
+    }
+
+    /**
+     * Сегмент корзин
+     * Гонка удаления с одновременным списанием может потерять одно списание, это допустимо
+     */
+    private static final class Stripe<K> {
+
+        private final ConcurrentHashMap<K, AtomicLong> buckets = new ConcurrentHashMap<>();
+        private final AtomicLong overflow = new AtomicLong(System.nanoTime());
+
+        private int evictIdle(final long now) {
+            final int before = buckets.size();
+            buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+            return before - buckets.size();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package otp.sf.service.reactive;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import otp.sf.domain.dto.OtpCodeActivateRequest;
+import otp.sf.domain.dto.OtpCodeResponse;
+import otp.sf.domain.model.Role;
+import otp.sf.domain.model.Status;
+import otp.sf.domain.model.User;
+import otp.sf.exception.LogicException;
+import otp.sf.repository.ReactiveOtpCodeRepository;
+import otp.sf.service.OtpAttemptService;
+import otp.sf.service.OtpCodeRules;
+import otp.sf.service.cache.ActiveOtpCode;
+import otp.sf.service.cache.ActiveOtpCodeIndex;
+import otp.sf.service.expiry.OtpExpiryService;
+import otp.sf.service.hash.OtpCodeHasher;
+import otp.sf.service.journal.OtpJournal;
+import otp.sf.service.metrics.OtpMetrics;
+import reactor.core.publisher.Mono;
+
+/**
+ * Неблокирующая активация и просмотр OTP-кодов
+ * Правила те же, что в {@link otp.sf.service.OtpCodeService}: сначала индекс в памяти, затем БД,
+ * активация - условным UPDATE, поэтому транзакция не нужна. Пользователь передается явно:
+ * контекст безопасности привязан к потоку запроса, а цепочка выполняется на потоках драйвера.
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "otp.reactive", name = "enabled", havingValue = "true")
+public class ReactiveOtpCodeService {
+
+    private final ReactiveOtpCodeRepository repository;
+    private final OtpCodeHasher codeHasher;
+    private final ActiveOtpCodeIndex activeCodeIndex;
+    private final OtpJournal journal;
+    private final OtpMetrics metrics;
+    private final OtpAttemptService attemptService;
+    private final OtpExpiryService expiryService;
+
+    /**
+     * Активация OTP-кода
+     *
+     * @param user текущий пользователь
+     * @param id идентификатор операции
+     * @param request данные OTP-кода
+     * @return информация о OTP-коде
+     */
+    public Mono<OtpCodeResponse> activateCode(final User user, final long id, final OtpCodeActivateRequest request) {
+        return metrics.time(OtpMetrics.ACTIVATE_REACTIVE, findActiveCode(user, id)
+                .switchIfEmpty(Mono.error(() -> new LogicException(OtpCodeRules.ACTIVE_CODE_NOT_FOUND)))
+                .flatMap(code -> OtpCodeRules.matches(code, request.code(), codeHasher)
+                        ? Mono.just(code)
+                        : registerFailure(user, id, code))
+                .flatMap(code -> repository.updateStatus(code.id(), Status.ACTIVE, Status.USED)
+                        .map(updated -> {
+                            // Запись индекса удаляется в обоих случаях: код использован или индекс устарел
+                            activeCodeIndex.remove(user.getId(), id);
+                            expiryService.cancel(code.id());
+                            if (updated == 0) {
+                                throw new LogicException(OtpCodeRules.ACTIVE_CODE_NOT_FOUND);
+                            }
+                            journal.append("USED", user.getUsername(), id, code.id());
+                            metrics.codeUsed();
+                            return new OtpCodeResponse(code.id(), Status.USED);
+                        })));
+    }
+
+    /**
+     * Информация о OTP-коде: администратору доступны все коды, пользователю - только свои
+     *
+     * @param user текущий пользователь
+     * @param id идентификатор операции
+     * @return информация о OTP-коде
+     */
+    public Mono<OtpCodeResponse> getCodeInfo(final User user, final long id) {
+        final var code = Role.ROLE_ADMIN.equals(user.getRole())
+                ? repository.findByOperationId(id)
+                : repository.findByOperationIdAndUserId(id, user.getId());
+        return code
+                .map(OtpCodeRules::toResponse)
+                .switchIfEmpty(Mono.error(() -> new LogicException(OtpCodeRules.CODE_NOT_FOUND)));
+    }
+
+    private Mono<ActiveOtpCode> registerFailure(final User user, final long id, final ActiveOtpCode code) {
+        return repository.registerFailedAttempt(code.id(), attemptService.getMaxFailedAttempts())
+                .switchIfEmpty(Mono.defer(() -> {
+                    // Код уже не активен, запись индекса устарела
+                    activeCodeIndex.remove(user.getId(), id);
+                    expiryService.cancel(code.id());
+                    return Mono.error(new LogicException(OtpCodeRules.ACTIVE_CODE_NOT_FOUND));
+                }))
+                .flatMap(status -> {
+                    final boolean locked = status == Status.LOCKED;
+                    if (locked) {
+                        activeCodeIndex.remove(user.getId(), id);
+                        expiryService.cancel(code.id());
+                        journal.append("LOCKED", user.getUsername(), id, code.id());
+                        metrics.codeLocked();
+                    }
+                    return Mono.error(OtpCodeRules.activationFailed(locked));
+                });
+    }
+
+    private Mono<ActiveOtpCode> findActiveCode(final User user, final long operationId) {
+        return Mono.defer(() -> {
+            final var cached = activeCodeIndex.find(user.getId(), operationId);
+            if (cached.isPresent()) {
+                return Mono.just(cached.get());
+            }
+            return repository.findActive(operationId, user.getId());
+        });
+    }
+}
@@ -0,0 +1,73 @@
+package otp.sf.service.token;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Фильтр Блума по ключам long
+ * Добавление потокобезопасно, удаление не поддерживается: фильтр пересоздается целиком.
+ * Отрицательный ответ точный, положительный нужно подтверждать по точному множеству.
+ */
+final class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitMask;
+    private final int hashes;
+
+    /**
+     * @param expectedEntries ожидаемое количество ключей
+     * @param falsePositiveRate допустимая доля ложных срабатываний
+     */
+    BloomFilter(final int expectedEntries, final double falsePositiveRate) {
+        final double ln2 = Math.log(2);
+        final long optimalBits = (long) Math.ceil(
+                -Math.max(expectedEntries, 1) * Math.log(falsePositiveRate) / (ln2 * ln2));
+        // Размер округляется до степени двойки, чтобы позиция бита считалась маской
+        final long size = Long.highestOneBit(Math.max(optimalBits, 64) - 1) << 1;
+        this.bits = new AtomicLongArray(Math.toIntExact(size >>> 6));
+        this.bitMask = size - 1;
+        this.hashes = Math.clamp(Math.round((double) size / Math.max(expectedEntries, 1) * ln2), 1, 16);
+    }
+
+    /**
+     * Добавление ключа
+     *
+     * @param key ключ
+     */
+    void add(final long key) {
+        final long h1 = mix(key);
+        final long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashes; i++) {
+            final long bit = (h1 + i * h2) & bitMask;
+            final int word = (int) (bit >>> 6);
+            final long flag = 1L << bit;
+            long current;
+            while (((current = bits.get(word)) & flag) == 0 && !bits.compareAndSet(word, current, current | flag)) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * Проверка ключа
+     *
+     * @param key ключ
+     * @return false, если ключ точно не добавлялся
+     */
+    boolean mightContain(final long key) {
+        final long h1 = mix(key);
+        final long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashes; i++) {
+            final long bit = (h1 + i * h2) & bitMask;
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+}
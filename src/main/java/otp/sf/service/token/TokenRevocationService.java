@@ -0,0 +1,161 @@
+package otp.sf.service.token;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import otp.sf.domain.model.TokenRevocation;
+import otp.sf.repository.TokenRevocationRepository;
+import otp.sf.service.TransactionHooks;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Отзыв JWT-токенов
+ * В токен записывается версия (claim ver). Отзыв всех токенов пользователя повышает минимально
+ * допустимую версию. Проверка идет в памяти: фильтр Блума отсекает пользователей без отзывов,
+ * точная таблица подтверждает попадание. Версия в БД только растет, в памяти отзыв хранится
+ * до истечения последнего отозванного токена. Отзывы, сделанные другими экземплярами сервиса,
+ * подтягиваются периодическим опросом по времени изменения.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TokenRevocationService {
+
+    private final TokenRevocationRepository repository;
+    private final MeterRegistry meterRegistry;
+
+    // Время жизни токена в миллисекундах
+    @Value("${security.token.expiration.milliseconds:6000000}")
+    private long jwtExpirationMillis;
+
+    // Ожидаемое количество отзывов для размера фильтра
+    @Value("${security.token.revocation.expected-entries:100000}")
+    private int expectedEntries;
+
+    // Допустимая доля ложных срабатываний фильтра
+    @Value("${security.token.revocation.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    // Перекрытие окон опроса: покрывает транзакции, зафиксированные позже своего времени изменения,
+    // и расхождение часов с БД
+    @Value("${security.token.revocation.refresh-overlap-millis:60000}")
+    private long refreshOverlapMillis;
+
+    // Минимальная допустимая версия токенов по пользователям
+    private final Map<Long, TokenRevocation> revocations = new ConcurrentHashMap<>();
+    private volatile BloomFilter filter;
+    // Изменения таблицы и пересборка фильтра не должны перемежаться
+    private final Object writeLock = new Object();
+    // Начало предыдущего опроса БД
+    private volatile long lastRefreshMillis;
+
+    /**
+     * Загрузка действующих отзывов
+     * Выполняется до приема запросов, чтобы отозванные токены не принимались после перезапуска
+     */
+    @PostConstruct
+    void init() {
+        lastRefreshMillis = System.currentTimeMillis();
+        repository.findByExpiresAtAfter(new Date(lastRefreshMillis))
+                .forEach(revocation -> revocations.put(revocation.getUserId(), revocation));
+        filter = buildFilter();
+        log.info("Загружено отзывов токенов: {}", revocations.size());
+
+        Gauge.builder("security.token.revocations", revocations, Map::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Текущая версия токенов пользователя
+     *
+     * @param userId идентификатор пользователя
+     * @return версия для новых токенов
+     */
+    public long currentVersion(final long userId) {
+        final var revocation = revocations.get(userId);
+        return revocation == null ? 0 : revocation.getVersion();
+    }
+
+    /**
+     * Проверка отзыва токена
+     *
+     * @param userId идентификатор пользователя
+     * @param version версия токена
+     * @return true, если токен отозван
+     */
+    public boolean isRevoked(final long userId, final long version) {
+        if (!filter.mightContain(userId)) {
+            return false;
+        }
+        final var revocation = revocations.get(userId);
+        return revocation != null && version < revocation.getVersion();
+    }
+
+    /**
+     * Отзыв всех выданных пользователю токенов
+     * В памяти отзыв применяется после фиксации транзакции
+     *
+     * @param userId идентификатор пользователя
+     */
+    @Transactional
+    public void revokeAll(final long userId) {
+        repository.incrementVersion(userId, new Date(System.currentTimeMillis() + jwtExpirationMillis));
+        final var revocation = repository.findById(userId)
+                .orElseThrow(() -> new IllegalStateException("Отзыв токенов пользователя " + userId + " не сохранен"));
+
+        TransactionHooks.afterCommit(() -> apply(revocation));
+    }
+
+    /**
+     * Загрузка отзывов, сделанных другими экземплярами сервиса
+     */
+    @Scheduled(fixedDelayString = "${security.token.revocation.refresh-millis:5000}",
+            initialDelayString = "${security.token.revocation.refresh-millis:5000}")
+    public void refresh() {
+        final long start = System.currentTimeMillis();
+        final var now = new Date(start);
+        repository.findByChangedAtAfter(new Date(lastRefreshMillis - refreshOverlapMillis)).stream()
+                .filter(revocation -> revocation.getExpiresAt() != null && revocation.getExpiresAt().after(now))
+                .forEach(this::apply);
+        lastRefreshMillis = start;
+    }
+
+    /**
+     * Удаление истекших отзывов из памяти и пересборка фильтра; в БД остается версия
+     */
+    @Scheduled(fixedRateString = "${security.token.revocation.cleanup-millis:600000}",
+            initialDelayString = "${security.token.revocation.cleanup-millis:600000}")
+    public void cleanup() {
+        final var now = new Date();
+        synchronized (writeLock) {
+            if (revocations.values().removeIf(revocation -> !revocation.getExpiresAt().after(now))) {
+                filter = buildFilter();
+            }
+        }
+        repository.clearExpired(now);
+    }
+
+    private void apply(final TokenRevocation revocation) {
+        synchronized (writeLock) {
+            // Сначала точная таблица, затем фильтр: попадание в фильтр всегда подтверждается таблицей
+            revocations.merge(revocation.getUserId(), revocation,
+                    (current, updated) -> updated.getVersion() > current.getVersion() ? updated : current);
+            filter.add(revocation.getUserId());
+        }
+    }
+
+    private BloomFilter buildFilter() {
+        final var bloom = new BloomFilter(Math.max(expectedEntries, revocations.size() * 2), falsePositiveRate);
+        revocations.keySet().forEach(bloom::add);
+        return bloom;
+    }
+}
@@ -0,0 +1,57 @@
+-- Исходная схема, ранее создаваемая Hibernate (ddl-auto: update).
+-- Все объекты создаются через if not exists, поэтому миграция применима и к уже существующей БД.
+
+create sequence if not exists users_seq start with 1 increment by 50;
+create sequence if not exists otp_code_seq start with 1 increment by 50;
+create sequence if not exists otp_delivery_seq start with 1 increment by 50;
+
+create table if not exists users (
+    id bigint not null,
+    username varchar(50) not null,
+    password varchar(255) not null,
+    role varchar(255) not null check (role in ('ROLE_USER', 'ROLE_ADMIN')),
+    email varchar(255),
+    phone varchar(255),
+    telegram_chat_id varchar(255),
+    constraint users_pkey primary key (id),
+    constraint users_username_key unique (username)
+);
+
+create table if not exists otp_config (
+    id bigint not null,
+    expiration_time bigint not null,
+    length integer not null,
+    constraint otp_config_pkey primary key (id)
+);
+
+create table if not exists otp_code (
+    id bigint not null,
+    user_id bigint,
+    operation_id bigint not null,
+    status varchar(255) not null check (status in ('ACTIVE', 'EXPIRED', 'USED')),
+    code varchar(255) not null,
+    insert_time timestamp(6) not null,
+    expiration_time bigint not null,
+    constraint otp_code_pkey primary key (id),
+    constraint otp_code_operation_id_key unique (operation_id),
+    constraint otp_code_user_fkey foreign key (user_id) references users (id)
+);
+
+create table if not exists otp_delivery (
+    id bigint not null,
+    otp_code_id bigint not null,
+    channel varchar(20) not null,
+    status varchar(255) not null check (status in ('PENDING', 'SENT', 'FAILED')),
+    attempts integer not null,
+    last_error varchar(255),
+    update_time timestamp(6) not null,
+    constraint otp_delivery_pkey primary key (id),
+    constraint otp_delivery_otp_code_fkey foreign key (otp_code_id) references otp_code (id) on delete cascade
+);
+
+create table if not exists token_revocation (
+    user_id bigint not null,
+    version bigint not null,
+    expires_at timestamp(6) not null,
+    constraint token_revocation_pkey primary key (user_id)
+);
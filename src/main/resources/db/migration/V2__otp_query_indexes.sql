@@ -0,0 +1,37 @@
+-- Индексы под запросы OtpCodeRepository, OtpDeliveryRepository и архивации.
+-- Поиск по operation_id уже покрыт уникальным индексом otp_code_operation_id_key.
+
+-- Активные коды пользователя (findByStatusAndUser, findByOperationIdAndStatusAndUser):
+-- частичный индекс содержит только ACTIVE-строки, которых на порядки меньше завершенных
+create index if not exists otp_code_active_user_idx
+    on otp_code (user_id, operation_id)
+    include (code, insert_time, expiration_time)
+    where status = 'ACTIVE';
+
+-- Загрузка всех активных кодов при старте (findByStatus) и перевод просроченных (expireOverdue)
+create index if not exists otp_code_active_insert_time_idx
+    on otp_code (insert_time)
+    include (expiration_time)
+    where status = 'ACTIVE';
+
+-- Отбор завершенных кодов для переноса в архив
+create index if not exists otp_code_closed_insert_time_idx
+    on otp_code (insert_time)
+    where status <> 'ACTIVE';
+
+-- Все коды пользователя: удаление пользователя и проверка внешнего ключа
+create index if not exists otp_code_user_idx
+    on otp_code (user_id);
+
+-- Доставки по коду (findByOtpCode) и каскадное удаление вместе с кодом
+create index if not exists otp_delivery_otp_code_idx
+    on otp_delivery (otp_code_id);
+
+-- Закрытие зависших доставок при старте (closeStale)
+create index if not exists otp_delivery_pending_update_time_idx
+    on otp_delivery (update_time)
+    where status = 'PENDING';
+
+-- Очистка истекших отзывов токенов
+create index if not exists token_revocation_expires_at_idx
+    on token_revocation (expires_at);
@@ -0,0 +1,7 @@
+-- Удаленный пользователь помечается сразу, а его OTP-коды удаляются фоновой задачей порциями
+alter table users add column if not exists deleted boolean not null default false;
+
+-- Пользователи, ожидающие окончательного удаления
+create index if not exists users_deleted_idx
+    on users (id)
+    where deleted;
@@ -0,0 +1,8 @@
+-- Постраничная выборка активных кодов по возрастанию id: для администратора и для пользователя
+create index if not exists otp_code_active_id_idx
+    on otp_code (id)
+    where status = 'ACTIVE';
+
+create index if not exists otp_code_active_user_id_idx
+    on otp_code (user_id, id)
+    where status = 'ACTIVE';
@@ -0,0 +1,10 @@
+-- Версия конфигурации: увеличивается при любом изменении, узлы перечитывают конфигурацию при ее смене
+alter table otp_config add column if not exists version bigint not null default 0;
+
+-- Именованные профили OTP-кодов по типу операции
+create table if not exists otp_config_profile (
+    name varchar(50) not null,
+    expiration_time bigint not null,
+    length integer not null,
+    constraint otp_config_profile_pkey primary key (name)
+);
@@ -0,0 +1,6 @@
+-- Неудачные попытки активации; по достижении лимита код переводится в LOCKED
+alter table otp_code add column if not exists failed_attempts integer not null default 0;
+
+alter table otp_code drop constraint if exists otp_code_status_check;
+alter table otp_code add constraint otp_code_status_check
+    check (status in ('ACTIVE', 'EXPIRED', 'USED', 'LOCKED'));
@@ -0,0 +1,9 @@
+-- Строка отзыва больше не удаляется: версия токенов пользователя только растет.
+-- По истечении отозванных токенов очищается только expires_at.
+alter table token_revocation alter column expires_at drop not null;
+
+-- Момент последнего отзыва: по нему другие экземпляры сервиса подтягивают новые отзывы
+alter table token_revocation add column if not exists changed_at timestamp(6) not null default now();
+
+create index if not exists token_revocation_changed_at_idx
+    on token_revocation (changed_at);
@@ -0,0 +1,61 @@
+-- Архив завершенных OTP-кодов, ранее создаваемый OtpArchiveService при каждом запуске архивации.
+-- Таблица секционирована по месяцам insert_time: устаревший месяц удаляется целиком, без построчного DELETE.
+create table if not exists otp_code_archive (
+    id bigint not null,
+    user_id bigint,
+    operation_id bigint not null,
+    status varchar(255) not null,
+    code varchar(255) not null,
+    insert_time timestamp(6) not null,
+    expiration_time bigint not null,
+    archive_time timestamp(6) not null default now()
+) partition by range (insert_time);
+
+-- Создание месячных секций архива с месяца from_time по месяц to_time включительно.
+-- Возвращает количество созданных секций.
+create or replace function otp_code_archive_add_partitions(from_time timestamp, to_time timestamp)
+    returns integer
+    language plpgsql
+as $$
+declare
+    month date := date_trunc('month', coalesce(from_time, to_time))::date;
+    partition text;
+    created integer := 0;
+begin
+    while month <= to_time loop
+        partition := 'otp_code_archive_' || to_char(month, 'YYYY_MM');
+        if to_regclass(partition) is null then
+            execute format('create table %I partition of otp_code_archive for values from (%L) to (%L)',
+                           partition, month, (month + interval '1 month')::date);
+            created := created + 1;
+        end if;
+        month := (month + interval '1 month')::date;
+    end loop;
+    return created;
+end;
+$$;
+
+-- Удаление секций архива за месяцы раньше before_time.
+-- Возвращает количество удаленных секций.
+create or replace function otp_code_archive_drop_partitions(before_time timestamp)
+    returns integer
+    language plpgsql
+as $$
+declare
+    partition text;
+    dropped integer := 0;
+begin
+    for partition in
+        select c.relname from pg_inherits i
+        join pg_class c on c.oid = i.inhrelid
+        join pg_class p on p.oid = i.inhparent
+        where p.relname = 'otp_code_archive' and c.relname ~ '^otp_code_archive_[0-9]{4}_[0-9]{2}$'
+    loop
+        if to_date(right(partition, 7), 'YYYY_MM') < date_trunc('month', before_time) then
+            execute format('drop table %I', partition);
+            dropped := dropped + 1;
+        end if;
+    end loop;
+    return dropped;
+end;
+$$;
@@ -0,0 +1,4 @@
+-- Удаление архивных кодов пользователя порциями: выбор порции и удаление по (user_id, id).
+-- Индекс секционированной таблицы создается в каждой секции, в том числе в будущих.
+create index if not exists otp_code_archive_user_id_idx
+    on otp_code_archive (user_id, id);
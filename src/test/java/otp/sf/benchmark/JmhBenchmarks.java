@@ -0,0 +1,61 @@
+package otp.sf.benchmark;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Запуск JMH-замеров из тестов с тегом benchmark
+ * Режим, единицы и параметры задаются аннотациями класса замера, здесь - только короткие итерации,
+ * чтобы замер занимал десятки секунд, а не минуты. Отчет JMH печатается в вывод теста.
+ */
+public final class JmhBenchmarks {
+
+    private JmhBenchmarks() {
+    }
+
+    /**
+     * Запуск всех замеров класса
+     *
+     * @param benchmark класс с методами @Benchmark
+     * @return среднее значение по имени метода и значениям @Param, например "encode:strength=10"
+     */
+    public static Map<String, Double> run(final Class<?> benchmark) throws RunnerException {
+        return run(benchmark, UnaryOperator.identity());
+    }
+
+    /**
+     * Запуск всех замеров класса с дополнительными настройками
+     *
+     * @param benchmark класс с методами @Benchmark
+     * @param options настройки поверх коротких итераций
+     * @return среднее значение по имени метода и значениям @Param
+     */
+    public static Map<String, Double> run(final Class<?> benchmark, final UnaryOperator<ChainedOptionsBuilder> options)
+            throws RunnerException {
+        final var builder = new OptionsBuilder()
+                .include("^" + benchmark.getName().replace(".", "\\.") + "\\.")
+                .forks(1)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(1));
+        final var scores = new LinkedHashMap<String, Double>();
+        for (final RunResult result : new Runner(options.apply(builder).build()).run()) {
+            final var params = result.getParams();
+            final var name = new StringBuilder(params.getBenchmark().substring(benchmark.getName().length() + 1));
+            for (final var key : params.getParamsKeys()) {
+                name.append(':').append(key).append('=').append(params.getParam(key));
+            }
+            scores.put(name.toString(), result.getPrimaryResult().getScore());
+        }
+        return scores;
+    }
+}
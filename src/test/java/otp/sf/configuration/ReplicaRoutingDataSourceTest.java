@@ -0,0 +1,123 @@
+package otp.sf.configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import otp.sf.domain.model.Role;
+import otp.sf.domain.model.User;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Два экземпляра сервиса над общими основной БД и репликой (H2 в памяти):
+ * закрепление после записи на одном экземпляре переносится на другой заголовком
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private static final long PIN_MILLIS = 5_000;
+
+    private ReplicaRoutingDataSource first;
+    private ReplicaRoutingDataSource second;
+
+    @BeforeEach
+    void setUp() {
+        first = routing("first");
+        second = routing("second");
+        first.checkReplicaLag();
+        second.checkReplicaLag();
+
+        final var user = User.builder().id(1L).username("user1").role(Role.ROLE_USER).build();
+        SecurityContextHolder.getContext()
+                .setAuthentication(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void readsGoToReplicaWithoutWrites() {
+        assertThat(first.isReplicaAvailable()).isTrue();
+        assertThat(first.getReplicaLagMillis()).isZero();
+
+        assertThat(read(second, new MockHttpServletRequest())).isEqualTo(ReplicaRoutingDataSource.Target.REPLICA);
+    }
+
+    @Test
+    void writeOnOneInstancePinsReadsOnBoth() {
+        final var response = write(first);
+        final var pin = response.getHeader(ReplicaRoutingDataSource.PIN_HEADER);
+        assertThat(pin).isNotNull();
+
+        // Тот же экземпляр помнит закрепление сам
+        assertThat(read(first, new MockHttpServletRequest())).isEqualTo(ReplicaRoutingDataSource.Target.PRIMARY);
+        // Другой экземпляр о записи не знает, пока клиент не вернет заголовок
+        assertThat(read(second, new MockHttpServletRequest())).isEqualTo(ReplicaRoutingDataSource.Target.REPLICA);
+        final var request = new MockHttpServletRequest();
+        request.addHeader(ReplicaRoutingDataSource.PIN_HEADER, pin);
+        assertThat(read(second, request)).isEqualTo(ReplicaRoutingDataSource.Target.PRIMARY);
+    }
+
+    @Test
+    void ignoresExpiredOrTooDistantPin() {
+        final long now = System.currentTimeMillis();
+        for (final var pin : new String[]{Long.toString(now - 1), Long.toString(now + PIN_MILLIS * 10), "abc"}) {
+            final var request = new MockHttpServletRequest();
+            request.addHeader(ReplicaRoutingDataSource.PIN_HEADER, pin);
+            assertThat(read(second, request)).as(pin).isEqualTo(ReplicaRoutingDataSource.Target.REPLICA);
+        }
+    }
+
+    private static MockHttpServletResponse write(final ReplicaRoutingDataSource routing) {
+        final var response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest(), response));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThat(routing.determineCurrentLookupKey()).isEqualTo(ReplicaRoutingDataSource.Target.PRIMARY);
+            TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+            RequestContextHolder.resetRequestAttributes();
+        }
+        return response;
+    }
+
+    private static Object read(final ReplicaRoutingDataSource routing, final MockHttpServletRequest request) {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, new MockHttpServletResponse()));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try {
+            return routing.determineCurrentLookupKey();
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    private static ReplicaRoutingDataSource routing(final String instance) {
+        final var routing = new ReplicaRoutingDataSource(h2(instance + "-primary", "primary"),
+                h2(instance + "-replica", "replica"), "select 0", 1_000, PIN_MILLIS);
+        routing.afterPropertiesSet();
+        return routing;
+    }
+
+    private static HikariDataSource h2(final String poolName, final String database) {
+        final var dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1");
+        dataSource.setPoolName(poolName);
+        dataSource.setMaximumPoolSize(2);
+        return dataSource;
+    }
+}
@@ -0,0 +1,156 @@
+package otp.sf.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Планы запросов репозиториев на заполненной БД: ни один запрос не должен читать таблицу целиком
+ * Схема создается миграциями Flyway, поэтому тест ломается и при потере индекса, и при смене запроса
+ */
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class OtpQueryPlanTest {
+
+    private static final int USERS = 20_000;
+    private static final int CODES = 200_000;
+
+    // Контейнер запускается до создания контекста: экземпляр теста с PER_CLASS создается раньше расширений
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    static {
+        POSTGRES.start();
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Пользователи по 10 кодов на каждого и доставка по каждому коду.
+     * Активен примерно один код из ста, как в работающей системе; завершенные коды также лежат в архиве
+     */
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.update("""
+                insert into users (id, username, password, role, deleted)
+                select g, 'user' || g, 'hash', 'ROLE_USER', g % 100 = 0
+                from generate_series(1, ?) g""", USERS);
+        jdbcTemplate.update("""
+                insert into otp_code (id, user_id, operation_id, status, code, insert_time, expiration_time)
+                select g, g % ? + 1, g,
+                       case when g % 100 = 0 then 'ACTIVE' when g % 2 = 0 then 'USED' else 'EXPIRED' end,
+                       lpad((g % 1000000)::text, 6, '0'),
+                       localtimestamp - (? - g) * interval '10 seconds',
+                       300000
+                from generate_series(1, ?) g""", USERS, CODES, CODES);
+        jdbcTemplate.update("""
+                insert into otp_delivery (id, otp_code_id, channel, status, attempts, update_time)
+                select g, g, 'email', case when g % 1000 = 0 then 'PENDING' else 'SENT' end, 1,
+                       localtimestamp - (? - g) * interval '10 seconds'
+                from generate_series(1, ?) g""", CODES, CODES);
+        jdbcTemplate.queryForObject("select otp_code_archive_add_partitions(localtimestamp - interval '60 days', "
+                + "localtimestamp)", Integer.class);
+        jdbcTemplate.update("""
+                insert into otp_code_archive (id, user_id, operation_id, status, code, insert_time, expiration_time)
+                select id, user_id, operation_id, status, code, insert_time - interval '30 days', expiration_time
+                from otp_code where status <> 'ACTIVE'""");
+        jdbcTemplate.execute("analyze");
+    }
+
+    /**
+     * SQL, который выполняют методы репозиториев и фоновые задачи, с типичными значениями параметров
+     */
+    Stream<Arguments> queries() {
+        return Stream.of(
+                Arguments.of("OtpCodeRepository.findByOperationId",
+                        "select * from otp_code where operation_id = 150000"),
+                Arguments.of("OtpCodeRepository.findByOperationIdAndStatusAndUser",
+                        "select * from otp_code where operation_id = 150000 and status = 'ACTIVE' and user_id = 1"),
+                Arguments.of("OtpCodeRepository.findExistingOperationIds",
+                        "select operation_id from otp_code where operation_id in (150000, 150001, 150002)"),
+                Arguments.of("OtpCodeRepository.findByStatus",
+                        "select * from otp_code where status = 'ACTIVE'"),
+                Arguments.of("OtpCodeRepository.findByStatusAndIdGreaterThanOrderByIdAsc",
+                        "select id, status, insert_time, expiration_time from otp_code "
+                                + "where status = 'ACTIVE' and id > 100000 order by id limit 100"),
+                Arguments.of("OtpCodeRepository.findByStatusAndUserIdAndIdGreaterThanOrderByIdAsc",
+                        "select id, status, insert_time, expiration_time from otp_code "
+                                + "where status = 'ACTIVE' and user_id = 1 and id > 0 order by id limit 100"),
+                Arguments.of("OtpCodeRepository.expireOverdue",
+                        "update otp_code set status = 'EXPIRED' where status = 'ACTIVE' "
+                                + "and insert_time + expiration_time * interval '1 millisecond' < now()"),
+                Arguments.of("OtpCodeRepository.deleteChunkByUser",
+                        "delete from otp_code where id in (select id from otp_code where user_id = 1 limit 1000)"),
+                Arguments.of("OtpCodeRepository.deleteArchiveChunkByUser",
+                        "delete from otp_code_archive where user_id = 1 and id in "
+                                + "(select id from otp_code_archive where user_id = 1 limit 1000)"),
+                Arguments.of("OtpArchiveService.MOVE_CHUNK",
+                        "select id from otp_code where status <> 'ACTIVE' "
+                                + "and insert_time < localtimestamp - interval '20 days' order by insert_time limit 5000"),
+                Arguments.of("OtpDeliveryRepository.findByOtpCodeIdOrderById",
+                        "select * from otp_delivery where otp_code_id = 150000 order by id"),
+                Arguments.of("OtpDeliveryRepository.closeStale",
+                        "update otp_delivery set status = 'FAILED' where status = 'PENDING' "
+                                + "and update_time < localtimestamp - interval '15 minutes'"),
+                Arguments.of("UserRepository.findByUsernameAndDeletedFalse",
+                        "select * from users where username = 'user500' and not deleted"),
+                Arguments.of("UserRepository.findDeletedIds",
+                        "select id from users where deleted"));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("queries")
+    void usesIndexes(final String name, final String sql) throws Exception {
+        final var plan = jdbcTemplate.queryForObject("explain (format json) " + sql, String.class);
+
+        assertThat(sequentialScans(objectMapper.readTree(plan).get(0).get("Plan")))
+                .as("%s: %s", name, plan)
+                .isEmpty();
+    }
+
+    @Test
+    void archivePartitionsAreManagedByMigrationFunctions() {
+        assertThat(jdbcTemplate.queryForObject(
+                "select otp_code_archive_add_partitions(timestamp '2020-01-15', timestamp '2020-03-01')",
+                Integer.class)).isEqualTo(3);
+        assertThat(jdbcTemplate.queryForObject(
+                "select otp_code_archive_add_partitions(timestamp '2020-02-01', timestamp '2020-03-01')",
+                Integer.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject(
+                "select otp_code_archive_drop_partitions(timestamp '2020-03-01')", Integer.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject(
+                "select to_regclass('otp_code_archive_2020_03') is not null", Boolean.class)).isTrue();
+    }
+
+    private static List<String> sequentialScans(final JsonNode node) {
+        final var found = new ArrayList<String>();
+        if ("Seq Scan".equals(node.path("Node Type").asText())) {
+            found.add(node.path("Relation Name").asText());
+        }
+        for (final var child : node.path("Plans")) {
+            found.addAll(sequentialScans(child));
+        }
+        return found;
+    }
+}
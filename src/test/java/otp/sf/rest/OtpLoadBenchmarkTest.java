@@ -0,0 +1,199 @@
+package otp.sf.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.annotation.DirtiesContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+import otp.sf.domain.model.OtpCode;
+import otp.sf.service.notification.NotificationDispatcher;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Нагрузочный замер /otp/create и /otp/{id}/activate; режим потоков сервиса задает подкласс,
+ * нагрузка в обоих режимах одинаковая, поэтому результаты сравниваются построчно в журнале теста.
+ * Каждый клиент - отдельный пользователь, который создает код и сразу активирует его.
+ * Код перехватывается вместо отправки, поэтому каналы уведомлений в замер не входят.
+ * Запуск: mvn test -Pbenchmark -Dtest='*ThreadsLoadBenchmarkTest'
+ */
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "otp.rate-limit.enabled=false",
+        "otp.archive.enabled=false",
+        "security.password.bcrypt-strength=4",
+        "spring.jpa.show-sql=false"})
+@DirtiesContext
+abstract class OtpLoadBenchmarkTest {
+
+    private static final int CLIENTS = 500;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 20;
+
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    static {
+        POSTGRES.start();
+    }
+
+    // Идентификаторы операций уникальны в таблице, поэтому общие для обоих режимов в одной JVM
+    private static final AtomicLong OPERATION_IDS = new AtomicLong();
+
+    // Перехваченные коды по идентификатору операции
+    private final Map<Long, String> codes = new ConcurrentHashMap<>();
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    @MockBean
+    private NotificationDispatcher notificationDispatcher;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @LocalServerPort
+    private int port;
+
+    @BeforeEach
+    void captureCodes() {
+        doAnswer(invocation -> {
+            final OtpCode code = invocation.getArgument(0);
+            codes.put(code.getOperationId(), invocation.getArgument(2));
+            return null;
+        }).when(notificationDispatcher).enqueue(any(), any(), any());
+    }
+
+    @Test
+    void createAndActivateUnderLoad() throws Exception {
+        final var tokens = signUp();
+        run(tokens, WARMUP_ROUNDS);
+        final var result = run(tokens, ROUNDS);
+
+        log.info("{}: {} клиентов, {} пар create + activate за {} мс ({} пар/с); "
+                        + "create p50 {} мс, p99 {} мс; activate p50 {} мс, p99 {} мс; ошибок {}",
+                getClass().getSimpleName(), CLIENTS, result.pairs(), result.elapsedMillis(), result.pairsPerSecond(),
+                millis(result.create(), 0.5), millis(result.create(), 0.99),
+                millis(result.activate(), 0.5), millis(result.activate(), 0.99), result.failures());
+        assertThat(result.failures()).isZero();
+    }
+
+    /**
+     * Регистрация пользователей по одному: очередь BCrypt ограничена и отклоняет всплеск регистраций
+     */
+    private List<String> signUp() throws Exception {
+        final var tokens = new ArrayList<String>(CLIENTS);
+        for (int i = 0; i < CLIENTS; i++) {
+            final var response = post(null, "/auth/sign/up", Map.of(
+                    "username", getClass().getSimpleName() + i,
+                    "password", "load-benchmark",
+                    "email", "load" + i + "@example.com",
+                    "phone", "+7%010d".formatted(i),
+                    "telegramId", Integer.toString(i)));
+            assertThat(response.statusCode()).as(response.body()).isEqualTo(201);
+            tokens.add(objectMapper.readTree(response.body()).get("token").asText());
+        }
+        return tokens;
+    }
+
+    /**
+     * Все клиенты одновременно выполняют заданное количество пар create + activate
+     */
+    private Result run(final List<String> tokens, final int rounds) {
+        final var create = new long[tokens.size()][rounds];
+        final var activate = new long[tokens.size()][rounds];
+        final var failures = new AtomicInteger();
+        final long start = System.nanoTime();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int client = 0; client < tokens.size(); client++) {
+                final var token = tokens.get(client);
+                final var createNanos = create[client];
+                final var activateNanos = activate[client];
+                executor.submit(() -> {
+                    for (int round = 0; round < rounds; round++) {
+                        final long operationId = OPERATION_IDS.incrementAndGet();
+                        final long started = System.nanoTime();
+                        final boolean created = send(token, "/otp/create", Map.of("operationId", operationId), 201);
+                        final long createdAt = System.nanoTime();
+                        final var code = codes.remove(operationId);
+                        final boolean activated = created && code != null
+                                && send(token, "/otp/" + operationId + "/activate", Map.of("code", code), 200);
+                        createNanos[round] = createdAt - started;
+                        activateNanos[round] = System.nanoTime() - createdAt;
+                        if (!activated) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                });
+            }
+        }
+        final long elapsed = System.nanoTime() - start;
+        return new Result(tokens.size() * rounds, TimeUnit.NANOSECONDS.toMillis(elapsed), flatten(create),
+                flatten(activate), failures.get());
+    }
+
+    private boolean send(final String token, final String path, final Map<String, ?> body, final int status) {
+        try {
+            return post(token, path, body).statusCode() == status;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private HttpResponse<String> post(final String token, final String path, final Map<String, ?> body)
+            throws IOException, InterruptedException {
+        final var request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static long[] flatten(final long[][] nanos) {
+        final var all = Arrays.stream(nanos).flatMapToLong(Arrays::stream).toArray();
+        Arrays.sort(all);
+        return all;
+    }
+
+    private static double millis(final long[] sortedNanos, final double percentile) {
+        final int index = Math.min(sortedNanos.length - 1, (int) (sortedNanos.length * percentile));
+        return sortedNanos[index] / 1_000_000.0;
+    }
+
+    private record Result(int pairs, long elapsedMillis, long[] create, long[] activate, int failures) {
+
+        long pairsPerSecond() {
+            return elapsedMillis == 0 ? 0 : pairs * 1000L / elapsedMillis;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package otp.sf.rest;
+
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Нагрузочный замер на платформенных потоках: пул Tomcat, исполнитель @Async и планировщик по умолчанию
+ */
+@TestPropertySource(properties = {
+        "spring.threads.virtual.enabled=false",
+        "otp.journal.directory=target/benchmark/platform-journal"})
+class PlatformThreadsLoadBenchmarkTest extends OtpLoadBenchmarkTest {
+}
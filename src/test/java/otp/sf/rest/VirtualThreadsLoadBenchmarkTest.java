@@ -0,0 +1,12 @@
+package otp.sf.rest;
+
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Нагрузочный замер на виртуальных потоках; закрепления потоков попадают в журнал VirtualThreadPinningMonitor
+ */
+@TestPropertySource(properties = {
+        "spring.threads.virtual.enabled=true",
+        "otp.journal.directory=target/benchmark/virtual-journal"})
+class VirtualThreadsLoadBenchmarkTest extends OtpLoadBenchmarkTest {
+}
@@ -0,0 +1,97 @@
+package otp.sf.service;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+import otp.sf.service.token.TokenRevocationService;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Проверка токена в JwtAuthenticationFilter на запрос:
+ * прежняя схема (три разбора с построением парсера и декодированием ключа), один разбор готовым парсером
+ * и повторный запрос с тем же токеном через кеш проверенных токенов
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtServiceBenchmark {
+
+    private static final String SIGNING_KEY = "53A73E5F1C4E0A2D3B5F2D784E6A1B423D6F247D1F6E5C3A596D635A75327855";
+
+    private JwtService jwtService;
+    // Кеш на одну запись: два токена по очереди вытесняют друг друга, каждый вызов проверяет подпись
+    private JwtService missingService;
+    private UserDetails[] users;
+    private String[] tokens;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        jwtService = jwtService(1000);
+        missingService = jwtService(1);
+        // Не otp.sf.domain.model.User: проверка отзыва в замер не входит
+        users = new UserDetails[]{new User("first", "password", List.of()), new User("second", "password", List.of())};
+        tokens = new String[]{jwtService.generateToken(users[0]), jwtService.generateToken(users[1])};
+    }
+
+    /**
+     * Прежняя схема: extractUserName в фильтре, затем extractUserName и extractExpiration в isTokenValid
+     */
+    @Benchmark
+    public boolean threeParses() {
+        final var userName = parseWithNewParser(tokens[0]).getSubject();
+        return userName.equals(users[0].getUsername())
+                && parseWithNewParser(tokens[0]).getSubject().equals(users[0].getUsername())
+                && !parseWithNewParser(tokens[0]).getExpiration().before(new Date());
+    }
+
+    /**
+     * Первый запрос с токеном: один разбор и проверка подписи
+     */
+    @Benchmark
+    public boolean singleParse() {
+        next ^= 1;
+        return missingService.isTokenValid(missingService.parseToken(tokens[next]), users[next]);
+    }
+
+    /**
+     * Повторный запрос с тем же токеном: проверенный токен берется из кеша
+     */
+    @Benchmark
+    public boolean cachedToken() {
+        return jwtService.isTokenValid(jwtService.parseToken(tokens[0]), users[0]);
+    }
+
+    private static JwtService jwtService(final int cacheMaxEntries) {
+        final var jwtService = new JwtService(mock(TokenRevocationService.class));
+        ReflectionTestUtils.setField(jwtService, "jwtSigningKey", SIGNING_KEY);
+        ReflectionTestUtils.setField(jwtService, "jwtExpirationMillis", 3_600_000);
+        ReflectionTestUtils.setField(jwtService, "cacheMaxEntries", cacheMaxEntries);
+        jwtService.init();
+        return jwtService;
+    }
+
+    private static Claims parseWithNewParser(final String token) {
+        return Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SIGNING_KEY)))
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+}
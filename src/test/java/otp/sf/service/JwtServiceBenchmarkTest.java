@@ -0,0 +1,26 @@
+package otp.sf.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import otp.sf.benchmark.JmhBenchmarks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Экономия от однократного разбора JWT и кеша проверенных токенов (JMH, {@link JwtServiceBenchmark})
+ * Запуск: mvn test -Pbenchmark -Dtest=JwtServiceBenchmarkTest
+ */
+@Slf4j
+@Tag("benchmark")
+class JwtServiceBenchmarkTest {
+
+    @Test
+    void singleParseAndCacheAreFasterThanThreeParses() throws Exception {
+        final var micros = JmhBenchmarks.run(JwtServiceBenchmark.class);
+        log.info("Проверка токена, мкс на запрос: {}", micros);
+
+        assertThat(micros.get("singleParse")).isLessThan(micros.get("threeParses"));
+        assertThat(micros.get("cachedToken")).isLessThan(micros.get("singleParse"));
+    }
+}
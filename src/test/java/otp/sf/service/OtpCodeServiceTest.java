@@ -0,0 +1,155 @@
+package otp.sf.service;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import otp.sf.domain.dto.OtpCodeBatchCreateRequest;
+import otp.sf.domain.dto.OtpCodeCreateRequest;
+import otp.sf.domain.dto.OtpConfigurationDTO;
+import otp.sf.domain.model.OtpCode;
+import otp.sf.domain.model.Role;
+import otp.sf.domain.model.User;
+import otp.sf.exception.LogicException;
+import otp.sf.repository.OtpCodeRepository;
+import otp.sf.repository.OtpDeliveryRepository;
+import otp.sf.service.cache.ActiveOtpCode;
+import otp.sf.service.cache.ActiveOtpCodeIndex;
+import otp.sf.service.expiry.OtpExpiryService;
+import otp.sf.service.generator.GeneratedKey;
+import otp.sf.service.generator.OtpKeyGenerator;
+import otp.sf.service.hash.OtpCodeHasher;
+import otp.sf.service.journal.OtpJournal;
+import otp.sf.service.metrics.OtpMetrics;
+import otp.sf.service.notification.NotificationDispatcher;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Создание OTP-кода: повтор операции определяется индексом в памяти и уникальным индексом БД,
+ * без отдельного запроса на каждый промах индекса
+ */
+class OtpCodeServiceTest {
+
+    private static final long USER_ID = 7;
+    private static final long OPERATION_ID = 100;
+
+    private final OtpConfigurationService configurationService = mock(OtpConfigurationService.class);
+    private final OtpCodeRepository repository = mock(OtpCodeRepository.class);
+    private final UserService userService = mock(UserService.class);
+    private final OtpCodeHasher codeHasher = mock(OtpCodeHasher.class);
+    private final NotificationDispatcher notificationDispatcher = mock(NotificationDispatcher.class);
+    private final ActiveOtpCodeIndex activeCodeIndex = mock(ActiveOtpCodeIndex.class);
+    private final OtpKeyGenerator keyGenerator = mock(OtpKeyGenerator.class);
+    private final OtpMetrics metrics = mock(OtpMetrics.class);
+    private OtpCodeService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new OtpCodeService(configurationService, repository, userService, codeHasher,
+                notificationDispatcher, mock(OtpDeliveryRepository.class), activeCodeIndex,
+                mock(OtpExpiryService.class), keyGenerator, mock(OtpJournal.class), metrics,
+                mock(OtpAttemptService.class));
+
+        when(userService.getCurrentUser())
+                .thenReturn(User.builder().id(USER_ID).username("user").role(Role.ROLE_USER).build());
+        when(configurationService.getConfiguration(any())).thenReturn(new OtpConfigurationDTO(60_000, 6));
+        when(keyGenerator.generate(anyLong(), anyInt())).thenReturn(new GeneratedKey("123456", 42));
+        when(codeHasher.hash(anyString())).thenReturn("hash");
+        when(activeCodeIndex.find(anyLong(), anyLong())).thenReturn(Optional.empty());
+        when(metrics.time(anyString(), any(Supplier.class)))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+    }
+
+    @Test
+    void indexMissDoesNotQueryDatabase() {
+        when(repository.saveAndFlush(any())).thenAnswer(invocation -> {
+            final OtpCode code = invocation.getArgument(0);
+            code.setId(1L);
+            return code;
+        });
+
+        assertThat(service.createCode(new OtpCodeCreateRequest(OPERATION_ID, null)).id()).isEqualTo(1L);
+
+        verify(repository, never()).findByOperationIdAndStatusAndUser(any(), any(), any());
+        verify(notificationDispatcher).enqueue(any(), any(), any());
+    }
+
+    @Test
+    void activeCodeInIndexIsRejectedWithoutInsert() {
+        when(activeCodeIndex.find(USER_ID, OPERATION_ID))
+                .thenReturn(Optional.of(new ActiveOtpCode(1, USER_ID, OPERATION_ID, "hash", Long.MAX_VALUE, 42)));
+
+        assertThatThrownBy(() -> service.createCode(new OtpCodeCreateRequest(OPERATION_ID, null)))
+                .isInstanceOf(LogicException.class)
+                .hasMessage("Найден активный OTP-код для операции");
+        verify(repository, never()).saveAndFlush(any());
+    }
+
+    /**
+     * Код операции, созданный другим экземпляром сервиса, отклоняется уникальным индексом
+     */
+    @Test
+    void duplicateOperationFromDatabaseBecomesLogicError() {
+        when(repository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("duplicate",
+                new ConstraintViolationException("duplicate", new SQLException(), "otp_code_operation_id_key")));
+
+        assertThatThrownBy(() -> service.createCode(new OtpCodeCreateRequest(OPERATION_ID, null)))
+                .isInstanceOf(LogicException.class)
+                .hasMessage("OTP-код для операции уже создан");
+        verify(notificationDispatcher, never()).enqueue(any(), any(), any());
+    }
+
+    /**
+     * Занятые операции пакета находятся одним запросом, а не запросом на каждую операцию
+     */
+    @Test
+    void batchChecksExistingOperationsWithOneQuery() {
+        final var operationIds = List.of(1L, 2L, 3L);
+        when(keyGenerator.generate(anyLong(), anyInt(), any())).thenReturn(new GeneratedKey("123456", 42));
+        when(repository.saveAllAndFlush(any())).thenAnswer(invocation -> {
+            final List<OtpCode> codes = invocation.getArgument(0);
+            codes.forEach(code -> code.setId(code.getOperationId()));
+            return codes;
+        });
+
+        assertThat(service.createCodes(new OtpCodeBatchCreateRequest(operationIds, null))).hasSize(3);
+
+        verify(repository).findExistingOperationIds(operationIds);
+        verify(repository, never()).findByOperationIdAndStatusAndUser(any(), any(), any());
+    }
+
+    @Test
+    void batchWithExistingOperationIsRejectedWithoutInsert() {
+        final var operationIds = List.of(1L, 2L, 3L);
+        when(repository.findExistingOperationIds(operationIds)).thenReturn(List.of(2L));
+
+        assertThatThrownBy(() -> service.createCodes(new OtpCodeBatchCreateRequest(operationIds, null)))
+                .isInstanceOf(LogicException.class)
+                .hasMessage("OTP-код для операции уже создан: 2");
+        verify(repository, never()).saveAllAndFlush(any());
+    }
+
+    @Test
+    void otherIntegrityViolationsAreNotTranslated() {
+        when(repository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("fk",
+                new ConstraintViolationException("fk", new SQLException(), "otp_code_user_fkey")));
+
+        assertThatThrownBy(() -> service.createCode(new OtpCodeCreateRequest(OPERATION_ID, null)))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+}
@@ -0,0 +1,53 @@
+package otp.sf.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность хеширования паролей через {@link PasswordHashingExecutor} при разной стоимости BCrypt
+ * Запросов больше, чем потоков пула, как при всплеске входов: замер включает ожидание в очереди
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class PasswordHashingBenchmark {
+
+    // security.password.bcrypt-strength
+    @Param({"4", "8", "10", "12"})
+    private int strength;
+
+    private PasswordHashingExecutor executor;
+
+    @Setup
+    public void setUp() {
+        executor = new PasswordHashingExecutor(new BCryptPasswordEncoder(strength), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(executor, "threads", 0);
+        ReflectionTestUtils.setField(executor, "queueCapacity", 64);
+        ReflectionTestUtils.setField(executor, "retryAfterSeconds", 1L);
+        executor.init();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public String encode() {
+        return executor.encode("my_1secret1_password");
+    }
+}
@@ -0,0 +1,31 @@
+package otp.sf.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import otp.sf.benchmark.JmhBenchmarks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Хеширований в секунду при разной стоимости BCrypt (JMH, {@link PasswordHashingBenchmark})
+ * По результату выбирается security.password.bcrypt-strength: пропускная способность на целевом сервере
+ * должна покрывать пиковый поток входов и регистраций
+ * Запуск: mvn test -Pbenchmark -Dtest=PasswordHashingBenchmarkTest
+ */
+@Slf4j
+@Tag("benchmark")
+class PasswordHashingBenchmarkTest {
+
+    @Test
+    void throughputHalvesWithEachCostStep() throws Exception {
+        final var perSecond = JmhBenchmarks.run(PasswordHashingBenchmark.class);
+        log.info("BCrypt через пул, хеширований в секунду ({} ядер): {}",
+                Runtime.getRuntime().availableProcessors(), perSecond);
+
+        // Каждая единица стоимости удваивает работу BCrypt
+        assertThat(perSecond.get("encode:strength=8")).isLessThan(perSecond.get("encode:strength=4") / 4);
+        assertThat(perSecond.get("encode:strength=10")).isLessThan(perSecond.get("encode:strength=8") / 2);
+        assertThat(perSecond.get("encode:strength=12")).isLessThan(perSecond.get("encode:strength=10") / 2);
+    }
+}
@@ -0,0 +1,173 @@
+package otp.sf.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.testcontainers.containers.PostgreSQLContainer;
+import otp.sf.domain.model.Role;
+import otp.sf.domain.model.User;
+import otp.sf.service.cache.ActiveOtpCodeIndex;
+import otp.sf.service.cache.UserDirectory;
+import otp.sf.service.expiry.OtpExpiryService;
+import otp.sf.service.generator.OtpKeyGenerator;
+import otp.sf.service.hash.OtpCodeHasher;
+import otp.sf.service.journal.OtpJournal;
+import otp.sf.service.metrics.OtpMetrics;
+import otp.sf.service.notification.NotificationDispatcher;
+import otp.sf.service.purge.UserPurgeService;
+import otp.sf.service.token.TokenRevocationService;
+
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Количество SQL-запросов на чтение OTP-кодов и пользователей не зависит от количества строк
+ * Лишний запрос на строку (N+1) ломает тест
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({OtpCodeService.class, UserService.class})
+class ReadStatementCountTest {
+
+    private static final long ADMIN_ID = 1;
+    private static final long USER_ID = 2;
+    private static final int CODES = 30;
+
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    static {
+        POSTGRES.start();
+    }
+
+    @MockBean
+    private OtpConfigurationService configurationService;
+    @MockBean
+    private OtpCodeHasher codeHasher;
+    @MockBean
+    private NotificationDispatcher notificationDispatcher;
+    @MockBean
+    private ActiveOtpCodeIndex activeCodeIndex;
+    @MockBean
+    private OtpExpiryService expiryService;
+    @MockBean
+    private OtpKeyGenerator keyGenerator;
+    @MockBean
+    private OtpJournal journal;
+    @MockBean
+    private OtpMetrics metrics;
+    @MockBean
+    private OtpAttemptService attemptService;
+    @MockBean
+    private UserDirectory userDirectory;
+    @MockBean
+    private TokenRevocationService revocationService;
+    @MockBean
+    private UserPurgeService purgeService;
+
+    @Autowired
+    private OtpCodeService otpCodeService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.update("""
+                insert into users (id, username, password, role)
+                values (?, 'admin', 'hash', 'ROLE_ADMIN'), (?, 'user', 'hash', 'ROLE_USER')""", ADMIN_ID, USER_ID);
+        jdbcTemplate.update("""
+                insert into users (id, username, password, role)
+                select g, 'user' || g, 'hash', 'ROLE_USER' from generate_series(3, ?) g""", CODES);
+        jdbcTemplate.update("""
+                insert into otp_code (id, user_id, operation_id, status, code, insert_time, expiration_time)
+                select g, ?, g, 'ACTIVE', 'hash', localtimestamp, 86400000 from generate_series(1, ?) g""",
+                USER_ID, CODES);
+        jdbcTemplate.update("""
+                insert into otp_delivery (id, otp_code_id, channel, status, attempts, update_time)
+                select g, (g - 1) / 2 + 1, case when g % 2 = 0 then 'email' else 'sms' end, 'SENT', 1, localtimestamp
+                from generate_series(1, ?) g""", CODES * 2);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void codeInfoIsOneStatement() {
+        loginAs(USER_ID, Role.ROLE_USER);
+
+        assertThat(otpCodeService.getCodeInfo(1L).id()).isEqualTo(1L);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void deliveryInfoIsTwoStatements() {
+        loginAs(ADMIN_ID, Role.ROLE_ADMIN);
+
+        assertThat(otpCodeService.getDeliveryInfo(1L)).hasSize(2);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void codePageIsOneStatement() {
+        loginAs(USER_ID, Role.ROLE_USER);
+
+        assertThat(otpCodeService.getAllCodeInfo(null, CODES).items()).hasSize(CODES);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void codeStreamIsOneStatement() {
+        loginAs(ADMIN_ID, Role.ROLE_ADMIN);
+        final var codes = new ArrayList<>();
+
+        otpCodeService.streamAllCodeInfo(codes::add);
+
+        assertThat(codes).hasSize(CODES);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void userPageIsOneStatement() {
+        assertThat(userService.getAllUsers(null, CODES).items()).hasSize(CODES - 1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void userStreamIsOneStatement() {
+        final var users = new ArrayList<>();
+
+        userService.streamAllUsers(users::add);
+
+        assertThat(users).hasSize(CODES - 1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    private static void loginAs(final long id, final Role role) {
+        final var user = User.builder().id(id).username("user" + id).role(role).build();
+        SecurityContextHolder.getContext()
+                .setAuthentication(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+}
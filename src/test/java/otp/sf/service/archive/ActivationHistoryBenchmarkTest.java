@@ -0,0 +1,161 @@
+package otp.sf.service.archive;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.testcontainers.containers.PostgreSQLContainer;
+import otp.sf.domain.dto.OtpCodeActivateRequest;
+import otp.sf.domain.dto.OtpCodeCreateRequest;
+import otp.sf.domain.model.OtpCode;
+import otp.sf.domain.model.Role;
+import otp.sf.domain.model.User;
+import otp.sf.service.OtpCodeService;
+import otp.sf.service.notification.NotificationDispatcher;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Время активации OTP-кода по мере роста истории завершенных кодов
+ * История добавляется ступенями; завершенные коды старше суток переносит в секции архива
+ * {@link OtpArchiveService}, как по расписанию. Активация читает только активные коды,
+ * поэтому ее время не должно зависеть от объема истории.
+ * Запуск: mvn test -Pbenchmark -Dtest=ActivationHistoryBenchmarkTest
+ */
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "otp.rate-limit.enabled=false",
+        "spring.jpa.show-sql=false",
+        "otp.journal.directory=target/benchmark/history-journal"})
+class ActivationHistoryBenchmarkTest {
+
+    private static final long USER_ID = 1_000_000;
+    private static final int HISTORY_USERS = 1000;
+    // Идентификаторы истории не пересекаются с последовательностью otp_code_seq
+    private static final long HISTORY_ID_BASE = 1_000_000_000_000L;
+    // Общий объем истории на каждой ступени
+    private static final int[] HISTORY = {0, 500_000, 2_000_000};
+    private static final int HISTORY_DAYS = 300;
+    private static final int WARMUP = 200;
+    private static final int ACTIVATIONS = 1000;
+
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    static {
+        POSTGRES.start();
+    }
+
+    // Перехваченные коды по идентификатору операции
+    private final Map<Long, String> codes = new ConcurrentHashMap<>();
+    private long operationId;
+
+    @MockBean
+    private NotificationDispatcher notificationDispatcher;
+
+    @Autowired
+    private OtpCodeService otpCodeService;
+    @Autowired
+    private OtpArchiveService archiveService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            final OtpCode code = invocation.getArgument(0);
+            codes.put(code.getOperationId(), invocation.getArgument(2));
+            return null;
+        }).when(notificationDispatcher).enqueue(any(), any(), any());
+
+        jdbcTemplate.update("""
+                insert into users (id, username, password, role)
+                select ? + g, 'history' || g, 'hash', 'ROLE_USER' from generate_series(0, ?) g""",
+                USER_ID, HISTORY_USERS);
+        final var user = User.builder().id(USER_ID).username("history0").role(Role.ROLE_USER).build();
+        SecurityContextHolder.getContext()
+                .setAuthentication(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void activationLatencyDoesNotGrowWithHistory() {
+        activate(WARMUP);
+        final var p50 = new LinkedHashMap<Integer, Double>();
+        int seeded = 0;
+        for (final int history : HISTORY) {
+            seedHistory(seeded, history);
+            seeded = history;
+            archiveService.archive();
+            jdbcTemplate.execute("analyze");
+
+            final var nanos = activate(ACTIVATIONS);
+            p50.put(history, millis(nanos, 0.5));
+            log.info("История {} кодов (в основной таблице {}): активация p50 {} мс, p99 {} мс", history,
+                    jdbcTemplate.queryForObject("select count(*) from otp_code", Long.class),
+                    millis(nanos, 0.5), millis(nanos, 0.99));
+        }
+
+        // Запас в миллисекунду: при времени меньше миллисекунды кратное сравнение неустойчиво
+        assertThat(p50.get(HISTORY[HISTORY.length - 1])).isLessThan(p50.get(HISTORY[0]) * 2 + 1);
+    }
+
+    /**
+     * Завершенные коды истории от from до to, равномерно по пользователям и за HISTORY_DAYS дней
+     */
+    private void seedHistory(final int from, final int to) {
+        if (to > from) {
+            jdbcTemplate.update("""
+                    insert into otp_code (id, user_id, operation_id, status, code, insert_time, expiration_time)
+                    select ? + g, ? + g % ?, ? + g,
+                           case when g % 2 = 0 then 'USED' else 'EXPIRED' end, 'hash',
+                           localtimestamp - (g % ?) * interval '1 minute', 300000
+                    from generate_series(?, ?) g""",
+                    HISTORY_ID_BASE, USER_ID, HISTORY_USERS, HISTORY_ID_BASE, HISTORY_DAYS * 24 * 60, from + 1, to);
+        }
+    }
+
+    /**
+     * Создание и активация кодов, время замеряется только у активации
+     *
+     * @return время активаций в наносекундах по возрастанию
+     */
+    private long[] activate(final int count) {
+        final var nanos = new long[count];
+        for (int i = 0; i < count; i++) {
+            final long id = ++operationId;
+            otpCodeService.createCode(new OtpCodeCreateRequest(id, null));
+            final var request = new OtpCodeActivateRequest(codes.remove(id));
+            final long start = System.nanoTime();
+            otpCodeService.activateCode(id, request);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private static double millis(final long[] sortedNanos, final double percentile) {
+        final int index = Math.min(sortedNanos.length - 1, (int) (sortedNanos.length * percentile));
+        return sortedNanos[index] / 1_000_000.0;
+    }
+}
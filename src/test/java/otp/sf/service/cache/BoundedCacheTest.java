@@ -0,0 +1,99 @@
+package otp.sf.service.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BoundedCacheTest {
+
+    @Test
+    void evictsInInsertionOrder() {
+        final var cache = new BoundedCache<Integer, String>(3);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.put(3, "c");
+
+        cache.put(4, "d");
+
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.get(2)).isEqualTo("b");
+        assertThat(cache.get(4)).isEqualTo("d");
+        assertThat(cache.size()).isEqualTo(3);
+    }
+
+    /**
+     * Вытеснение старого узла не удаляет более новое значение того же ключа
+     */
+    @Test
+    void replacedKeyIsNotEvictedByItsOlderNode() {
+        final var cache = new BoundedCache<Integer, String>(3);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.put(1, "a2");
+
+        cache.put(3, "c");
+
+        assertThat(cache.get(1)).isEqualTo("a2");
+        assertThat(cache.get(2)).isEqualTo("b");
+        assertThat(cache.get(3)).isEqualTo("c");
+
+        cache.put(4, "d");
+
+        assertThat(cache.get(1)).isEqualTo("a2");
+        assertThat(cache.get(2)).isNull();
+    }
+
+    @Test
+    void removeAndReinsertKeepsCacheBounded() {
+        final var cache = new BoundedCache<Integer, Integer>(10);
+        for (int i = 0; i < 100_000; i++) {
+            cache.put(i % 5, i);
+            cache.remove(i % 5);
+        }
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, i);
+        }
+
+        assertThat(cache.size()).isEqualTo(10);
+        assertThat(cache.get(99)).isEqualTo(99);
+        assertThat(cache.get(89)).isNull();
+    }
+
+    @Test
+    void rejectsNonPositiveSize() {
+        assertThatThrownBy(() -> new BoundedCache<Integer, Integer>(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void staysBoundedUnderConcurrentWrites() throws Exception {
+        final var cache = new BoundedCache<Integer, Integer>(1_000);
+        final int threads = 8;
+        final var start = new CountDownLatch(1);
+        final var results = new ArrayList<Future<?>>();
+        try (var executor = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                final int base = t * 100_000;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 20_000; i++) {
+                        cache.put(base + i, i);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (final var result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(1_000);
+    }
+}
@@ -0,0 +1,139 @@
+package otp.sf.service.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongObjectMapTest {
+
+    private static final int INITIAL_MASK = 15;
+
+    @Test
+    void putGetReplaceRemove() {
+        final var map = new LongObjectMap<String>();
+
+        assertThat(map.put(0, "zero")).isNull();
+        assertThat(map.put(-1, "minus")).isNull();
+        assertThat(map.put(0, "nil")).isEqualTo("zero");
+
+        assertThat(map.get(0)).isEqualTo("nil");
+        assertThat(map.get(-1)).isEqualTo("minus");
+        assertThat(map.get(1)).isNull();
+        assertThat(map.size()).isEqualTo(2);
+
+        assertThat(map.remove(0)).isEqualTo("nil");
+        assertThat(map.remove(0)).isNull();
+        assertThat(map.get(0)).isNull();
+        assertThat(map.size()).isEqualTo(1);
+    }
+
+    /**
+     * Удаление из середины цепочки пробирования сдвигает хвост цепочки, остальные ключи остаются доступны
+     */
+    @Test
+    void removeFromCollisionChainKeepsOtherKeysReachable() {
+        final var keys = collidingKeys(3, 6);
+
+        for (final long removed : keys) {
+            final var copy = new LongObjectMap<Long>();
+            keys.forEach(key -> copy.put(key, key));
+
+            assertThat(copy.remove(removed)).isEqualTo(removed);
+
+            for (final long key : keys) {
+                assertThat(copy.get(key)).isEqualTo(key == removed ? null : key);
+            }
+        }
+    }
+
+    /**
+     * Цепочка из последнего слота продолжается с начала массива
+     */
+    @Test
+    void probingWrapsAroundTableEnd() {
+        final var keys = collidingKeys(INITIAL_MASK, 4);
+        final var map = new LongObjectMap<Long>();
+        keys.forEach(key -> map.put(key, key));
+
+        assertThat(map.remove(keys.get(1))).isEqualTo(keys.get(1));
+
+        assertThat(map.get(keys.get(0))).isEqualTo(keys.get(0));
+        assertThat(map.get(keys.get(2))).isEqualTo(keys.get(2));
+        assertThat(map.get(keys.get(3))).isEqualTo(keys.get(3));
+        assertThat(map.size()).isEqualTo(3);
+    }
+
+    @Test
+    void resizeKeepsAllEntries() {
+        final var map = new LongObjectMap<Long>();
+        for (long key = 0; key < 10_000; key++) {
+            map.put(key * 31, key);
+        }
+
+        assertThat(map.size()).isEqualTo(10_000);
+        for (long key = 0; key < 10_000; key++) {
+            assertThat(map.get(key * 31)).isEqualTo(key);
+        }
+
+        for (long key = 0; key < 10_000; key += 2) {
+            map.remove(key * 31);
+        }
+        assertThat(map.size()).isEqualTo(5_000);
+        final var values = new ArrayList<Long>();
+        map.forEach(values::add);
+        assertThat(values).hasSize(5_000).allMatch(value -> value % 2 == 1);
+    }
+
+    @Test
+    void clearResetsTable() {
+        final var map = new LongObjectMap<Long>();
+        for (long key = 0; key < 100; key++) {
+            map.put(key, key);
+        }
+
+        map.clear();
+
+        assertThat(map.size()).isZero();
+        assertThat(map.get(1)).isNull();
+        map.put(1, 1L);
+        assertThat(map.get(1)).isEqualTo(1L);
+    }
+
+    @Test
+    void behavesLikeHashMapUnderRandomOperations() {
+        final var random = new Random(42);
+        final var map = new LongObjectMap<Long>();
+        final var expected = new HashMap<Long, Long>();
+
+        for (int i = 0; i < 200_000; i++) {
+            final long key = random.nextInt(512) - 256;
+            if (random.nextInt(3) == 0) {
+                assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+            } else {
+                final long value = random.nextLong();
+                assertThat(map.put(key, value)).isEqualTo(expected.put(key, value));
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        expected.forEach((key, value) -> assertThat(map.get(key)).isEqualTo(value));
+    }
+
+    /**
+     * Ключи с одинаковым "домашним" слотом в таблице начального размера
+     */
+    private static List<Long> collidingKeys(final int home, final int count) {
+        final var keys = new ArrayList<Long>();
+        for (long key = 0; keys.size() < count; key++) {
+            if ((LongObjectMap.mix(key) & INITIAL_MASK) == home) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+}
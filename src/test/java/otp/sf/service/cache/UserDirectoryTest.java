@@ -0,0 +1,80 @@
+package otp.sf.service.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import otp.sf.domain.model.Role;
+import otp.sf.domain.model.User;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserDirectoryTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void returnsCachedCopyUntilInvalidated() {
+        final var directory = directory(10, 60_000);
+
+        final var loaded = directory.get(1, () -> load(1));
+        loaded.orElseThrow().setEmail("changed@example.com");
+        final var cached = directory.get(1, () -> load(1));
+
+        assertThat(loads).hasValue(1);
+        assertThat(cached.orElseThrow().getEmail()).isEqualTo("user1@example.com");
+
+        directory.invalidateAfterCommit(1);
+        directory.get(1, () -> load(1));
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void expiredEntryIsReloaded() {
+        final var directory = directory(10, -1);
+
+        directory.get(1, () -> load(1));
+        directory.get(1, () -> load(1));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    /**
+     * Переполненный кеш вытесняет самые старые записи и продолжает кешировать новых пользователей
+     */
+    @Test
+    void fullCacheEvictsOldestEntries() {
+        final var directory = directory(100, 60_000);
+        for (long id = 0; id < 1_000; id++) {
+            final long userId = id;
+            directory.get(userId, () -> load(userId));
+        }
+        loads.set(0);
+
+        directory.get(999, () -> load(999));
+        assertThat(loads).hasValue(0);
+        directory.get(0, () -> load(0));
+        assertThat(loads).hasValue(1);
+    }
+
+    private UserDirectory directory(final int maxEntries, final long ttlMillis) {
+        final var directory = new UserDirectory(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(directory, "maxEntries", maxEntries);
+        ReflectionTestUtils.setField(directory, "ttlMillis", ttlMillis);
+        directory.init();
+        return directory;
+    }
+
+    private Optional<User> load(final long id) {
+        loads.incrementAndGet();
+        return Optional.of(User.builder()
+                .id(id)
+                .username("user" + id)
+                .password("hash")
+                .role(Role.ROLE_USER)
+                .email("user" + id + "@example.com")
+                .build());
+    }
+}
@@ -0,0 +1,63 @@
+package otp.sf.service.expiry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import otp.sf.domain.model.Status;
+import otp.sf.repository.OtpCodeRepository;
+import otp.sf.service.cache.ActiveOtpCode;
+import otp.sf.service.cache.ActiveOtpCodeIndex;
+import otp.sf.service.metrics.OtpMetrics;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+class OtpExpiryServiceTest {
+
+    private final OtpCodeRepository repository = mock(OtpCodeRepository.class);
+    private final ActiveOtpCodeIndex activeCodeIndex = mock(ActiveOtpCodeIndex.class);
+    private OtpExpiryService service;
+
+    @BeforeEach
+    void setUp() {
+        when(repository.updateStatus(anyCollection(), any(), any())).thenReturn(1);
+        service = new OtpExpiryService(repository, activeCodeIndex, new SimpleMeterRegistry(), mock(OtpMetrics.class));
+        ReflectionTestUtils.setField(service, "tickMillis", 10L);
+        ReflectionTestUtils.setField(service, "batchSize", 500);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    /**
+     * Колесо продвигает собственный поток без общего планировщика; снятый код не обновляется
+     */
+    @Test
+    void expiresScheduledCodesExceptCancelled() {
+        final long expiresAt = System.currentTimeMillis() + 50;
+        service.schedule(code(1, expiresAt));
+        service.schedule(code(2, expiresAt));
+        service.cancel(2);
+
+        verify(repository, timeout(2_000)).updateStatus(List.of(1L), Status.ACTIVE, Status.EXPIRED);
+        verify(activeCodeIndex, timeout(2_000)).remove(eq(1L), eq(1L));
+        verifyNoMoreInteractions(repository);
+    }
+
+    private static ActiveOtpCode code(final long id, final long expiresAt) {
+        return new ActiveOtpCode(id, 1L, id, "hash", expiresAt, 0);
+    }
+}
@@ -0,0 +1,159 @@
+package otp.sf.service.expiry;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+
+    private static final long TICK = 1000;
+
+    @Test
+    void firesAtDeadlineRoundedUpToTick() {
+        final var wheel = new TimingWheel<String>(TICK, 0);
+        final var fired = new ArrayList<String>();
+        wheel.schedule("a", 2500);
+
+        wheel.advance(2999, fired::add);
+        assertThat(fired).isEmpty();
+
+        wheel.advance(3000, fired::add);
+        assertThat(fired).containsExactly("a");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void overdueItemFiresOnNextAdvance() {
+        final var wheel = new TimingWheel<String>(TICK, 10_000);
+        final var fired = new ArrayList<String>();
+        wheel.schedule("a", 1_000);
+
+        wheel.advance(10_000, fired::add);
+
+        assertThat(fired).containsExactly("a");
+    }
+
+    /**
+     * Старт рядом с границей оборота второго и третьего уровней: элементы каждого уровня
+     * переносятся вниз и срабатывают ровно в свой шаг
+     */
+    @Test
+    void cascadesAcrossLevelsAndSlotWraparound() {
+        final long start = (64L * 64 - 3) * TICK;
+        final var wheel = new TimingWheel<Long>(TICK, start);
+        final long[] delays = {0, 1, 2, 3, 4, 63, 64, 65, 127, 128, 4_095, 4_096, 4_097, 10_000, 262_143, 262_144};
+        for (final long delay : delays) {
+            wheel.schedule(delay, start + delay * TICK);
+        }
+
+        final Map<Long, Long> firedAt = new HashMap<>();
+        for (long now = start; now <= start + 262_144 * TICK; now += TICK) {
+            final long tick = now;
+            wheel.advance(now, delay -> firedAt.put(delay, tick));
+        }
+
+        for (final long delay : delays) {
+            assertThat(firedAt.get(delay)).as("delay %d", delay).isEqualTo(start + delay * TICK);
+        }
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void largeJumpFiresEverythingDueInDeadlineOrder() {
+        final var wheel = new TimingWheel<Long>(TICK, 0);
+        for (long delay = 1; delay <= 100_000; delay *= 3) {
+            wheel.schedule(delay, delay * TICK);
+        }
+        final var fired = new ArrayList<Long>();
+
+        wheel.advance(50_000 * TICK, fired::add);
+
+        assertThat(fired).containsExactly(1L, 3L, 9L, 27L, 81L, 243L, 729L, 2_187L, 6_561L, 19_683L);
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+
+    @Test
+    void itemBeyondHorizonIsRescheduledUntilDue() {
+        final long tick = 1;
+        final long horizon = (1L << 24) - 1;
+        final var wheel = new TimingWheel<String>(tick, 0);
+        final var fired = new ArrayList<String>();
+        wheel.schedule("far", horizon + 1_000);
+
+        wheel.advance(horizon + 999, fired::add);
+        assertThat(fired).isEmpty();
+
+        wheel.advance(horizon + 1_000, fired::add);
+        assertThat(fired).containsExactly("far");
+    }
+
+    @Test
+    void cancelledItemDoesNotFire() {
+        final var wheel = new TimingWheel<String>(TICK, 0);
+        final var fired = new ArrayList<String>();
+        final var cancelled = wheel.schedule("a", 2_000);
+        wheel.schedule("b", 2_000);
+        // Отмена до и после переноса элемента из очереди в слот
+        final var moved = wheel.schedule("c", 100_000);
+        wheel.advance(0, fired::add);
+
+        assertThat(cancelled.cancel()).isTrue();
+        assertThat(cancelled.cancel()).isFalse();
+        assertThat(moved.cancel()).isTrue();
+        assertThat(wheel.size()).isEqualTo(1);
+
+        wheel.advance(100_000, fired::add);
+
+        assertThat(fired).containsExactly("b");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void firedItemCannotBeCancelled() {
+        final var wheel = new TimingWheel<String>(TICK, 0);
+        final var timeout = wheel.schedule("a", 1_000);
+
+        wheel.advance(1_000, item -> { });
+
+        assertThat(timeout.cancel()).isFalse();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void acceptsSchedulingFromManyThreads() throws Exception {
+        final var wheel = new TimingWheel<Integer>(TICK, 0);
+        final int threads = 8;
+        final int perThread = 1_000;
+        final var start = new CountDownLatch(1);
+        try (var executor = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                final int base = t * perThread;
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        wheel.schedule(base + i, (i % 100 + 1) * TICK);
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        }
+        assertThat(wheel.size()).isEqualTo(threads * perThread);
+
+        final List<Integer> fired = new ArrayList<>();
+        wheel.advance(100 * TICK, fired::add);
+
+        assertThat(fired).hasSize(threads * perThread).doesNotHaveDuplicates();
+        assertThat(wheel.size()).isZero();
+    }
+}
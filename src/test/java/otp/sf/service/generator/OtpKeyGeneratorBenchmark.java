@@ -0,0 +1,96 @@
+package otp.sf.service.generator;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.test.util.ReflectionTestUtils;
+import otp.sf.service.cache.ActiveOtpCode;
+import otp.sf.service.cache.ActiveOtpCodeIndex;
+import otp.sf.service.metrics.OtpMetrics;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность генерации OTP-кодов из нескольких потоков:
+ * {@link OtpKeyGenerator} с проверкой уникальности по заполненному индексу активных кодов
+ * и прежняя схема с общим генератором и StringBuilder на каждую попытку, без ее запроса в БД.
+ * Прежняя схема замеряется на {@link Random}, как было, и на {@link SecureRandom} - равной по стойкости
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class OtpKeyGeneratorBenchmark {
+
+    private static final String ALPHABET = "1234567890";
+    private static final int USERS = 1000;
+    private static final int CODES_PER_USER = 100;
+
+    @Param({"6", "10"})
+    private int length;
+
+    private OtpKeyGenerator generator;
+    private final Random random = new Random();
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    @Setup
+    public void setUp() {
+        final var registry = new SimpleMeterRegistry();
+        final var index = new ActiveOtpCodeIndex(registry);
+        ReflectionTestUtils.setField(index, "shardCount", 64);
+        ReflectionTestUtils.setField(index, "maxEntries", USERS * CODES_PER_USER * 2);
+        ReflectionTestUtils.invokeMethod(index, "init");
+        final var metrics = new OtpMetrics(registry);
+        ReflectionTestUtils.invokeMethod(metrics, "init");
+
+        generator = new OtpKeyGenerator(index, metrics);
+        ReflectionTestUtils.setField(generator, "alphabet", ALPHABET);
+        ReflectionTestUtils.setField(generator, "maxAttempts", 100);
+        generator.init();
+
+        // Активные коды пользователей, с которыми сверяется каждый новый код
+        final var active = new ArrayList<ActiveOtpCode>(USERS * CODES_PER_USER);
+        for (int user = 0; user < USERS; user++) {
+            for (int i = 0; i < CODES_PER_USER; i++) {
+                final long id = (long) user * CODES_PER_USER + i;
+                active.add(new ActiveOtpCode(id, user, id, "hash", Long.MAX_VALUE,
+                        generator.generate(user, length).fingerprint()));
+            }
+        }
+        index.rebuild(active);
+    }
+
+    @Benchmark
+    public GeneratedKey generator() {
+        return generator.generate(ThreadLocalRandom.current().nextInt(USERS), length);
+    }
+
+    @Benchmark
+    public String sharedRandom() {
+        return sharedGenerate(random);
+    }
+
+    @Benchmark
+    public String sharedSecureRandom() {
+        return sharedGenerate(secureRandom);
+    }
+
+    private String sharedGenerate(final Random random) {
+        final var sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,27 @@
+package otp.sf.service.generator;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import otp.sf.benchmark.JmhBenchmarks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Пропускная способность генератора OTP-кодов (JMH, {@link OtpKeyGeneratorBenchmark})
+ * Запуск: mvn test -Pbenchmark -Dtest=OtpKeyGeneratorBenchmarkTest
+ */
+@Slf4j
+@Tag("benchmark")
+class OtpKeyGeneratorBenchmarkTest {
+
+    @Test
+    void generatorThroughput() throws Exception {
+        final var opsPerMicro = JmhBenchmarks.run(OtpKeyGeneratorBenchmark.class);
+        log.info("Генерация OTP-кодов, операций в мкс на 4 потока: {}", opsPerMicro);
+
+        // Общий java.util.Random быстрее, но не годится для OTP; сравнение - с равным по стойкости генератором
+        assertThat(opsPerMicro.get("generator:length=10"))
+                .isGreaterThan(opsPerMicro.get("sharedSecureRandom:length=10"));
+    }
+}
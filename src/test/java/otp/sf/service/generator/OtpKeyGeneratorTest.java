@@ -0,0 +1,141 @@
+package otp.sf.service.generator;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import otp.sf.exception.LogicException;
+import otp.sf.service.cache.ActiveOtpCodeIndex;
+import otp.sf.service.metrics.OtpMetrics;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OtpKeyGeneratorTest {
+
+    private final ActiveOtpCodeIndex activeCodeIndex = mock(ActiveOtpCodeIndex.class);
+    private final OtpMetrics metrics = mock(OtpMetrics.class);
+
+    @Test
+    void generatesCodesOfRequestedLengthFromAlphabet() {
+        final var generator = generator("1234567890", 100);
+
+        assertThat(generator.generate(1L, 6).value()).hasSize(6).containsOnlyDigits();
+        // Длиннее начального массива символов буфера
+        assertThat(generator.generate(1L, 40).value()).hasSize(40).containsOnlyDigits();
+    }
+
+    @Test
+    void symbolsAreUniformlyDistributed() {
+        final var generator = generator("abc", 100);
+        final int samples = 60_000;
+        final var counts = new int[3];
+
+        for (int i = 0; i < samples / 20; i++) {
+            for (final char symbol : generator.generate(i, 20).value().toCharArray()) {
+                counts[symbol - 'a']++;
+            }
+        }
+
+        for (final int count : counts) {
+            assertThat(count).isBetween(samples / 3 - 600, samples / 3 + 600);
+        }
+    }
+
+    @Test
+    void fingerprintDependsOnUserAndCode() {
+        final var generator = generator("01", 100);
+        final var fingerprints = new HashSet<Long>();
+
+        for (int i = 0; i < 200; i++) {
+            fingerprints.add(generator.generate(1L, 1).fingerprint());
+            fingerprints.add(generator.generate(2L, 1).fingerprint());
+        }
+
+        // Два кода у каждого из двух пользователей
+        assertThat(fingerprints).hasSize(4).doesNotContain(0L);
+    }
+
+    @Test
+    void skipsCodesReservedByBatch() {
+        final var generator = generator("01", 100);
+        final Set<Long> reserved = new HashSet<>();
+        final var first = generator.generate(1L, 1);
+        reserved.add(first.fingerprint());
+
+        final var second = generator.generate(1L, 1, reserved::contains);
+        reserved.add(second.fingerprint());
+
+        assertThat(second.value()).isNotEqualTo(first.value());
+        assertThatThrownBy(() -> generator.generate(1L, 1, reserved::contains))
+                .isInstanceOf(LogicException.class);
+        verify(metrics).recordKeyGeneration(anyLong(), eq(100));
+    }
+
+    @Test
+    void retriesWhileCodeIsActiveInIndex() {
+        final var generator = generator("1234567890", 100);
+        when(activeCodeIndex.containsKey(eq(1L), anyLong())).thenReturn(true, true, false);
+
+        generator.generate(1L, 6);
+
+        verify(metrics).recordKeyGeneration(anyLong(), eq(3));
+    }
+
+    @Test
+    void rejectsSingleSymbolAlphabet() {
+        assertThatThrownBy(() -> generator("0", 100)).isInstanceOf(IllegalStateException.class);
+    }
+
+    /**
+     * Буферы из пула не делятся между одновременными вызовами: коды не портятся
+     */
+    @Test
+    void generatesConcurrently() throws Exception {
+        final var generator = generator("1234567890", 100);
+        final var codes = ConcurrentHashMap.<String>newKeySet();
+        final int threads = 8;
+        final var start = new CountDownLatch(1);
+        final var results = new ArrayList<Future<?>>();
+        try (var executor = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                final long userId = t;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 1_000; i++) {
+                        final var key = generator.generate(userId, 12).value();
+                        assertThat(key).hasSize(12).containsOnlyDigits();
+                        codes.add(key);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (final var result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+        }
+
+        assertThat(codes).hasSizeGreaterThan(threads * 1_000 - 10);
+    }
+
+    private OtpKeyGenerator generator(final String alphabet, final int maxAttempts) {
+        final var generator = new OtpKeyGenerator(activeCodeIndex, metrics);
+        ReflectionTestUtils.setField(generator, "alphabet", alphabet);
+        ReflectionTestUtils.setField(generator, "maxAttempts", maxAttempts);
+        generator.init();
+        return generator;
+    }
+}
@@ -0,0 +1,110 @@
+package otp.sf.service.notification;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import otp.sf.domain.model.DeliveryStatus;
+import otp.sf.domain.model.OtpCode;
+import otp.sf.domain.model.OtpDelivery;
+import otp.sf.domain.model.Role;
+import otp.sf.domain.model.User;
+import otp.sf.repository.OtpDeliveryRepository;
+import otp.sf.service.metrics.OtpMetrics;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Доставка OTP-кодов: канал без адреса получателя закрывается сразу, без попыток и повторов
+ */
+class NotificationDispatcherTest {
+
+    private final NotificationService email = channel("email");
+    private final NotificationService telegram = channel("telegram");
+    private final OtpDeliveryRepository deliveryRepository = mock(OtpDeliveryRepository.class);
+    private NotificationDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        final var ids = new AtomicLong();
+        when(deliveryRepository.saveAll(any())).thenAnswer(invocation -> {
+            final List<OtpDelivery> deliveries = invocation.getArgument(0);
+            deliveries.forEach(delivery -> delivery.setId(ids.incrementAndGet()));
+            return deliveries;
+        });
+
+        dispatcher = new NotificationDispatcher(List.of(email, telegram), deliveryRepository, mock(OtpMetrics.class));
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 3);
+        ReflectionTestUtils.setField(dispatcher, "initialBackoffMillis", 10L);
+        ReflectionTestUtils.setField(dispatcher, "maxInFlight", 10);
+        dispatcher.init();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void channelWithoutRecipientFailsWithoutAttempts() throws InterruptedException {
+        final var user = user("user@example.com", " ");
+        when(email.sendOtpCode(user, "123456")).thenReturn(true);
+
+        dispatcher.enqueue(new OtpCode(), user, "123456");
+
+        final ArgumentCaptor<List<OtpDelivery>> saved = ArgumentCaptor.captor();
+        verify(deliveryRepository).saveAll(saved.capture());
+        assertThat(saved.getValue())
+                .extracting(OtpDelivery::getChannel, OtpDelivery::getStatus, OtpDelivery::getAttempts)
+                .containsExactly(
+                        tuple("email", DeliveryStatus.PENDING, 0),
+                        tuple("telegram", DeliveryStatus.FAILED, 0));
+        assertThat(saved.getValue().get(1).getLastError()).isEqualTo("Не указан адрес получателя");
+
+        verify(deliveryRepository, timeout(5000)).updateResult(1L, DeliveryStatus.SENT, 1, null);
+        dispatcher.shutdown();
+        verify(telegram, never()).sendOtpCode(any(), anyString());
+        verify(deliveryRepository, never()).updateResult(eq(2L), any(), anyInt(), any());
+    }
+
+    @Test
+    void failedSendIsRetriedUpToMaxAttempts() {
+        final var user = user("user@example.com", "42");
+        when(email.sendOtpCode(user, "123456")).thenReturn(true);
+        when(telegram.sendOtpCode(user, "123456")).thenReturn(false);
+
+        dispatcher.enqueue(new OtpCode(), user, "123456");
+
+        verify(deliveryRepository, timeout(5000))
+                .updateResult(2L, DeliveryStatus.FAILED, 3, "Исчерпаны попытки отправки");
+        verify(telegram, timeout(5000).times(3)).sendOtpCode(user, "123456");
+    }
+
+    private static NotificationService channel(final String name) {
+        final var service = mock(NotificationService.class);
+        when(service.getChannel()).thenReturn(name);
+        return service;
+    }
+
+    private User user(final String email, final String telegramChatId) {
+        final var user = User.builder().id(1L).username("user").role(Role.ROLE_USER)
+                .email(email).telegramChatId(telegramChatId).build();
+        when(this.email.getRecipient(user)).thenReturn(email);
+        when(telegram.getRecipient(user)).thenReturn(telegramChatId);
+        return user;
+    }
+}
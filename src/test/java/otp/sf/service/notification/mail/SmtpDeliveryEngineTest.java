@@ -0,0 +1,99 @@
+package otp.sf.service.notification.mail;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SmtpDeliveryEngineTest {
+
+    private final JavaMailSenderImpl mailSender = mock(JavaMailSenderImpl.class);
+    private final Session session = mock(Session.class);
+    private final Transport first = mock(Transport.class);
+    private final Transport second = mock(Transport.class);
+    private SmtpDeliveryEngine engine;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(mailSender.getSession()).thenReturn(session);
+        when(mailSender.getProtocol()).thenReturn("smtp");
+        when(session.getTransport((String) any())).thenReturn(first, second);
+
+        engine = new SmtpDeliveryEngine(mailSender, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(engine, "poolSize", 1);
+        ReflectionTestUtils.setField(engine, "batchSize", 10);
+        ReflectionTestUtils.setField(engine, "lingerMillis", 1L);
+        ReflectionTestUtils.setField(engine, "idleTimeoutMillis", 30_000L);
+        ReflectionTestUtils.setField(engine, "queueCapacity", 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    /**
+     * Отказ в приеме письма не разрывает сессию: следующее письмо уходит по тому же соединению
+     */
+    @Test
+    void rejectedMessageFailsWithoutReconnect() throws Exception {
+        final var rejected = mock(MimeMessage.class);
+        final var accepted = mock(MimeMessage.class);
+        when(first.isConnected()).thenReturn(true);
+        doThrow(new SendFailedException("550 mailbox unavailable")).when(first).sendMessage(any(), any());
+        engine.init();
+
+        assertThat(engine.send(rejected).get(5, TimeUnit.SECONDS)).isFalse();
+        doNothing().when(first).sendMessage(any(), any());
+        assertThat(engine.send(accepted).get(5, TimeUnit.SECONDS)).isTrue();
+
+        verify(session, times(1)).getTransport((String) any());
+    }
+
+    /**
+     * Сервер закрыл соединение: письмо повторяется один раз на новом соединении
+     */
+    @Test
+    void closedConnectionIsReopenedAndMessageRetried() throws Exception {
+        when(first.isConnected()).thenReturn(false);
+        doThrow(new MessagingException("421 closing connection")).when(first).sendMessage(any(), any());
+        engine.init();
+
+        assertThat(engine.send(mock(MimeMessage.class)).get(5, TimeUnit.SECONDS)).isTrue();
+
+        verify(first).close();
+        verify(second).sendMessage(any(), any());
+    }
+
+    /**
+     * Непредвиденная ошибка завершает только свое письмо, рабочий поток продолжает отправку
+     */
+    @Test
+    void runtimeErrorDoesNotStopWorker() throws Exception {
+        when(first.isConnected()).thenReturn(true);
+        doThrow(new IllegalStateException("broken message")).when(first).sendMessage(any(), any());
+        engine.init();
+
+        assertThat(engine.send(mock(MimeMessage.class)).get(5, TimeUnit.SECONDS)).isFalse();
+        doNothing().when(first).sendMessage(any(), any());
+        assertThat(engine.send(mock(MimeMessage.class)).get(5, TimeUnit.SECONDS)).isTrue();
+    }
+}
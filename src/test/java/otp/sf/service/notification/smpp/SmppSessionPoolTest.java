@@ -0,0 +1,176 @@
+package otp.sf.service.notification.smpp;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.smpp.pdu.SubmitSM;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Пул SMPP-сессий против локальной заглушки SMSC
+ */
+class SmppSessionPoolTest {
+
+    private static final long RESPONSE_TIMEOUT_MILLIS = 500;
+
+    private StubSmsc smsc;
+    private SmppSessionPool pool;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        smsc = new StubSmsc();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (pool != null) {
+            pool.shutdown();
+        }
+        smsc.close();
+    }
+
+    @Test
+    void bindsOnceAndSubmitsOverLongLivedSession() throws Exception {
+        pool = pool("localhost", 1, 10);
+
+        assertThat(pool.submit(message("one")).get(5, TimeUnit.SECONDS)).isZero();
+        assertThat(pool.submit(message("two")).get(5, TimeUnit.SECONDS)).isZero();
+
+        assertThat(smsc.binds()).isEqualTo(1);
+        assertThat(smsc.messages()).containsExactly("one", "two");
+    }
+
+    @Test
+    void returnsCommandStatusOfSubmitResponse() throws Exception {
+        pool = pool("localhost", 1, 10);
+        // ESME_RSUBMITFAIL
+        smsc.submitStatus(0x45);
+
+        assertThat(pool.submit(message("rejected")).get(5, TimeUnit.SECONDS)).isEqualTo(0x45);
+    }
+
+    /**
+     * Сверх окна submit_sm не отправляется, пока SMSC не подтвердит предыдущие
+     */
+    @Test
+    void limitsUnacknowledgedSubmitsToWindow() throws Exception {
+        pool = pool("localhost", 1, 2);
+        smsc.holdSubmitResponses(true);
+
+        final var first = pool.submit(message("1"));
+        final var second = pool.submit(message("2"));
+        final var third = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.submit(message("3")).join();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        eventually(() -> assertThat(smsc.messages()).hasSize(2));
+        Thread.sleep(RESPONSE_TIMEOUT_MILLIS / 5);
+        assertThat(smsc.messages()).hasSize(2);
+        assertThat(third).isNotDone();
+
+        smsc.holdSubmitResponses(false);
+        smsc.releaseSubmitResponses();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isZero();
+        assertThat(second.get(5, TimeUnit.SECONDS)).isZero();
+        assertThat(third.get(5, TimeUnit.SECONDS)).isZero();
+        assertThat(smsc.messages()).containsExactly("1", "2", "3");
+    }
+
+    /**
+     * Сессия без ответа на enquire_link считается разорванной и переподключается
+     */
+    @Test
+    void reconnectsSessionThatStoppedAnsweringEnquireLink() throws Exception {
+        pool = pool("localhost", 1, 10);
+        smsc.answerEnquireLink(false);
+
+        pool.keepAlive();
+        eventually(() ->
+                assertThatThrownBy(() -> pool.submit(message("lost"))).isInstanceOf(IllegalStateException.class));
+
+        smsc.answerEnquireLink(true);
+        pool.keepAlive();
+
+        assertThat(smsc.binds()).isEqualTo(2);
+        assertThat(pool.submit(message("after")).get(5, TimeUnit.SECONDS)).isZero();
+    }
+
+    /**
+     * Разрыв соединения со стороны SMSC обнаруживается enquire_link, после чего сессия привязывается заново
+     */
+    @Test
+    void reconnectsAfterSmscDropsConnection() throws Exception {
+        pool = pool("localhost", 1, 10);
+
+        smsc.dropConnections();
+        eventually(() -> {
+            pool.keepAlive();
+            assertThat(smsc.binds()).isEqualTo(2);
+        });
+
+        assertThat(pool.submit(message("after")).get(5, TimeUnit.SECONDS)).isZero();
+    }
+
+    @Test
+    void rejectsSubmitWhenSmppIsNotConfigured() {
+        pool = pool("", 1, 10);
+
+        assertThatThrownBy(() -> pool.submit(message("none")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Нет активных SMPP-сессий");
+    }
+
+    /**
+     * Повтор проверки, пока она не пройдет или не истечет время ожидания
+     */
+    private static void eventually(final Runnable assertion) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            try {
+                assertion.run();
+                return;
+            } catch (AssertionError e) {
+                if (System.nanoTime() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    private SmppSessionPool pool(final String host, final int size, final int window) {
+        final var pool = new SmppSessionPool(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(pool, "host", host);
+        ReflectionTestUtils.setField(pool, "port", smsc.port());
+        ReflectionTestUtils.setField(pool, "systemId", "otp");
+        ReflectionTestUtils.setField(pool, "password", "secret");
+        ReflectionTestUtils.setField(pool, "systemType", "");
+        ReflectionTestUtils.setField(pool, "sourceAddress", "OTP");
+        ReflectionTestUtils.setField(pool, "poolSize", size);
+        ReflectionTestUtils.setField(pool, "windowSize", window);
+        ReflectionTestUtils.setField(pool, "tps", 1000);
+        ReflectionTestUtils.setField(pool, "responseTimeoutMillis", RESPONSE_TIMEOUT_MILLIS);
+        pool.init();
+        pool.keepAlive();
+        return pool;
+    }
+
+    private static SubmitSM message(final String text) throws Exception {
+        final var submitSM = new SubmitSM();
+        submitSM.setSourceAddr("OTP");
+        submitSM.setDestAddr("79990000000");
+        submitSM.setShortMessage(text);
+        return submitSM;
+    }
+}
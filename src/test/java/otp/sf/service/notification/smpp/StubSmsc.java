@@ -0,0 +1,165 @@
+package otp.sf.service.notification.smpp;
+
+import org.smpp.pdu.BindTransmitter;
+import org.smpp.pdu.EnquireLink;
+import org.smpp.pdu.PDU;
+import org.smpp.pdu.Request;
+import org.smpp.pdu.SubmitSM;
+import org.smpp.pdu.Unbind;
+import org.smpp.util.ByteBuffer;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Локальная заглушка SMSC: принимает bind_transmitter, submit_sm, enquire_link и unbind
+ * Ответы на submit_sm можно задерживать, на enquire_link - не отправлять, соединения - разрывать.
+ */
+final class StubSmsc implements AutoCloseable {
+
+    private final ServerSocket server;
+    private final List<Socket> connections = new CopyOnWriteArrayList<>();
+    private final Queue<Runnable> heldResponses = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger binds = new AtomicInteger();
+    private final List<String> messages = new CopyOnWriteArrayList<>();
+
+    private volatile boolean holdSubmitResponses;
+    private volatile boolean answerEnquireLink = true;
+    private volatile int submitStatus;
+
+    StubSmsc() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread.ofPlatform().name("stub-smsc").daemon().start(this::acceptLoop);
+    }
+
+    int port() {
+        return server.getLocalPort();
+    }
+
+    int binds() {
+        return binds.get();
+    }
+
+    List<String> messages() {
+        return List.copyOf(messages);
+    }
+
+    void holdSubmitResponses(final boolean hold) {
+        holdSubmitResponses = hold;
+    }
+
+    void answerEnquireLink(final boolean answer) {
+        answerEnquireLink = answer;
+    }
+
+    void submitStatus(final int status) {
+        submitStatus = status;
+    }
+
+    /**
+     * Отправка задержанных ответов на submit_sm
+     */
+    void releaseSubmitResponses() {
+        Runnable response;
+        while ((response = heldResponses.poll()) != null) {
+            response.run();
+        }
+    }
+
+    /**
+     * Разрыв всех соединений без unbind, как при перезапуске SMSC
+     */
+    void dropConnections() {
+        for (final var connection : new ArrayList<>(connections)) {
+            closeQuietly(connection);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        dropConnections();
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                final var connection = server.accept();
+                connections.add(connection);
+                Thread.ofPlatform().name("stub-smsc-connection").daemon().start(() -> serve(connection));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(final Socket connection) {
+        try (connection) {
+            final var input = new DataInputStream(connection.getInputStream());
+            final var output = connection.getOutputStream();
+            while (true) {
+                final int length = input.readInt();
+                final var bytes = new byte[length];
+                bytes[0] = (byte) (length >>> 24);
+                bytes[1] = (byte) (length >>> 16);
+                bytes[2] = (byte) (length >>> 8);
+                bytes[3] = (byte) length;
+                input.readFully(bytes, 4, length - 4);
+                final var pdu = PDU.createPDU(new ByteBuffer(bytes));
+                if (!(pdu instanceof Request request)) {
+                    continue;
+                }
+                final var response = request.getResponse();
+                if (pdu instanceof BindTransmitter) {
+                    binds.incrementAndGet();
+                } else if (pdu instanceof SubmitSM submitSM) {
+                    messages.add(submitSM.getShortMessage());
+                    response.setCommandStatus(submitStatus);
+                    if (holdSubmitResponses) {
+                        heldResponses.add(() -> write(output, response));
+                        continue;
+                    }
+                } else if (pdu instanceof EnquireLink && !answerEnquireLink) {
+                    continue;
+                }
+                write(output, response);
+                if (pdu instanceof Unbind) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            // Соединение закрыто клиентом или заглушкой
+        } finally {
+            connections.remove(connection);
+        }
+    }
+
+    private static void write(final OutputStream output, final PDU response) {
+        try {
+            synchronized (output) {
+                output.write(response.getData().getBuffer());
+                output.flush();
+            }
+        } catch (Exception e) {
+            // Клиент уже отключился
+        }
+    }
+
+    private static void closeQuietly(final Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Уже закрыт
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package otp.sf.service.notification.telegram;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Клиент против локальной заглушки Bot API на JDK HttpServer
+ */
+class TelegramBotClientTest {
+
+    private static final long CHAT_INTERVAL_MILLIS = 300;
+
+    private final List<Request> requests = new ArrayList<>();
+    // Количество ответов 429, которые заглушка вернет перед успешными
+    private final AtomicInteger tooManyRequests = new AtomicInteger();
+    private HttpServer server;
+    private TelegramBotClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/bottest/sendMessage", this::handle);
+        server.start();
+
+        client = new TelegramBotClient(new SimpleMeterRegistry(), new ObjectMapper());
+        ReflectionTestUtils.setField(client, "token", "test");
+        ReflectionTestUtils.setField(client, "apiUrl", "http://localhost:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(client, "queueCapacity", 100);
+        ReflectionTestUtils.setField(client, "botRate", 1000);
+        ReflectionTestUtils.setField(client, "chatIntervalMillis", CHAT_INTERVAL_MILLIS);
+        ReflectionTestUtils.setField(client, "maxRetries", 3);
+        ReflectionTestUtils.setField(client, "timeoutMillis", 5_000L);
+        client.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.shutdown();
+        server.stop(0);
+    }
+
+    /**
+     * Ответ 429 повторяется не раньше retry_after
+     */
+    @Test
+    void retriesAfterTooManyRequests() throws Exception {
+        tooManyRequests.set(1);
+
+        assertThat(client.send("1", "code").get(10, TimeUnit.SECONDS)).isTrue();
+
+        final var sent = requests();
+        assertThat(sent).hasSize(2);
+        assertThat(sent.get(1).nanos() - sent.get(0).nanos()).isGreaterThanOrEqualTo(TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Сообщения одного чата приходят по порядку не чаще интервала чата, другой чат их не ждет
+     */
+    @Test
+    void defersMessagesPerChat() throws Exception {
+        final var results = new ArrayList<CompletableFuture<Boolean>>();
+        for (int i = 1; i <= 3; i++) {
+            results.add(client.send("1", "a" + i));
+        }
+        results.add(client.send("2", "b1"));
+        for (final var result : results) {
+            assertThat(result.get(10, TimeUnit.SECONDS)).isTrue();
+        }
+
+        final var sent = requests();
+        final var first = sent.stream().filter(request -> request.chatId().equals("1")).toList();
+        final var second = sent.stream().filter(request -> request.chatId().equals("2")).toList();
+        assertThat(first).extracting(Request::text).containsExactly("a1", "a2", "a3");
+        // Время приема заглушкой: интервал отсчитывается от ответа на предыдущее сообщение чата,
+        // поэтому задержка первого запроса (установка соединения) не сокращает промежуток
+        final long interval = TimeUnit.MILLISECONDS.toNanos(CHAT_INTERVAL_MILLIS);
+        assertThat(first.get(1).nanos() - first.get(0).nanos()).isGreaterThanOrEqualTo(interval);
+        assertThat(first.get(2).nanos() - first.get(1).nanos()).isGreaterThanOrEqualTo(interval);
+        assertThat(second).singleElement().satisfies(request ->
+                assertThat(request.nanos()).isLessThan(first.get(1).nanos()));
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        final long nanos = System.nanoTime();
+        final var form = form(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        synchronized (requests) {
+            requests.add(new Request(form.get("chat_id"), form.get("text"), nanos));
+        }
+        final boolean limited = tooManyRequests.getAndUpdate(left -> Math.max(0, left - 1)) > 0;
+        final var body = limited
+                ? "{\"ok\":false,\"error_code\":429,\"parameters\":{\"retry_after\":1}}"
+                : "{\"ok\":true}";
+        final var bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(limited ? 429 : 200, bytes.length);
+        try (var response = exchange.getResponseBody()) {
+            response.write(bytes);
+        }
+    }
+
+    private List<Request> requests() {
+        synchronized (requests) {
+            return List.copyOf(requests);
+        }
+    }
+
+    private static Map<String, String> form(final String body) {
+        final var form = new HashMap<String, String>();
+        for (final var pair : body.split("&")) {
+            final int separator = pair.indexOf('=');
+            form.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+        }
+        return form;
+    }
+
+    private record Request(String chatId, String text, long nanos) {
+    }
+}
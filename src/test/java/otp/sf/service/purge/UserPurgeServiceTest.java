@@ -0,0 +1,85 @@
+package otp.sf.service.purge;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import otp.sf.repository.OtpCodeRepository;
+import otp.sf.repository.UserRepository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserPurgeServiceTest {
+
+    private static final int BATCH = 10;
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final OtpCodeRepository codeRepository = mock(OtpCodeRepository.class);
+    private UserPurgeService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new UserPurgeService(userRepository, codeRepository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "batchSize", BATCH);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    /**
+     * Неполная порция рабочей таблицы дополняется архивными кодами того же пользователя
+     */
+    @Test
+    void smallHistoryIsRemovedWithArchiveInRequest() {
+        when(codeRepository.deleteChunkByUser(1L, BATCH)).thenReturn(3);
+        when(codeRepository.deleteArchiveChunkByUser(1L, BATCH - 3)).thenReturn(2);
+
+        final var response = service.purge(1L);
+
+        assertThat(response.removedCodes()).isEqualTo(5);
+        assertThat(response.completed()).isTrue();
+        verify(userRepository).deleteMarked(1L);
+    }
+
+    /**
+     * Пользователь удаляется только после того, как архив опустел
+     */
+    @Test
+    void largeArchiveIsRemovedInBackground() {
+        when(codeRepository.deleteChunkByUser(anyLong(), anyInt())).thenReturn(0);
+        when(codeRepository.deleteArchiveChunkByUser(1L, BATCH)).thenReturn(BATCH, BATCH, 4);
+
+        final var response = service.purge(1L);
+
+        assertThat(response.removedCodes()).isEqualTo(BATCH);
+        assertThat(response.completed()).isFalse();
+        verify(userRepository, timeout(2_000)).deleteMarked(1L);
+        verify(codeRepository, times(3)).deleteArchiveChunkByUser(1L, BATCH);
+    }
+
+    /**
+     * Полная порция рабочей таблицы: архив в этой порции не трогается
+     */
+    @Test
+    void fullChunkDoesNotTouchArchive() {
+        when(codeRepository.deleteChunkByUser(1L, BATCH)).thenReturn(BATCH, 0);
+        when(codeRepository.deleteArchiveChunkByUser(1L, BATCH)).thenReturn(0);
+
+        service.purge(1L);
+
+        verify(userRepository, timeout(2_000)).deleteMarked(1L);
+        verify(codeRepository, never()).deleteArchiveChunkByUser(1L, 0);
+    }
+}
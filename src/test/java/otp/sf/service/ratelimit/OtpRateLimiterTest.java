@@ -0,0 +1,87 @@
+package otp.sf.service.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import otp.sf.exception.RateLimitException;
+import otp.sf.exception.RequestTooLargeException;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OtpRateLimiterTest {
+
+    private OtpRateLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        final var environment = new MockEnvironment()
+                .withProperty("otp.rate-limit.create.user.capacity", "10")
+                .withProperty("otp.rate-limit.create.operation.capacity", "3")
+                .withProperty("otp.rate-limit.create-batch.user.capacity", "2000")
+                .withProperty("otp.rate-limit.activate.operation.capacity", "5");
+        limiter = new OtpRateLimiter(environment, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "stripes", 4);
+        ReflectionTestUtils.setField(limiter, "maxBuckets", 1000);
+        limiter.init();
+    }
+
+    @Test
+    void batchLargerThanBatchBucketIsRejectedAndNotCharged() {
+        assertThatThrownBy(() -> limiter.checkCreateBatch(1L, 3000))
+                .isInstanceOf(RequestTooLargeException.class)
+                .hasMessageContaining("2000");
+
+        assertThatCode(() -> limiter.checkCreateBatch(1L, 1000)).doesNotThrowAnyException();
+        assertThatCode(() -> limiter.checkCreateBatch(1L, 1000)).doesNotThrowAnyException();
+        assertThatThrownBy(() -> limiter.checkCreateBatch(1L, 1)).isInstanceOf(RateLimitException.class);
+    }
+
+    /**
+     * Пакеты расходуют свою корзину, а не лимит одиночного создания
+     */
+    @Test
+    void batchDoesNotDrainSingleCreateBucket() {
+        limiter.checkCreateBatch(1L, 1000);
+
+        for (long operation = 0; operation < 10; operation++) {
+            final long operationId = operation;
+            assertThatCode(() -> limiter.checkCreate(1L, operationId)).doesNotThrowAnyException();
+        }
+    }
+
+    /**
+     * Запрос, отклоненный лимитом операции, не расходует лимит пользователя
+     */
+    @Test
+    void operationRejectionDoesNotChargeUser() {
+        for (int i = 0; i < 3; i++) {
+            limiter.checkCreate(1L, 42L);
+        }
+        for (int i = 0; i < 20; i++) {
+            assertThatThrownBy(() -> limiter.checkCreate(1L, 42L)).isInstanceOf(RateLimitException.class);
+        }
+
+        for (long operation = 0; operation < 7; operation++) {
+            final long operationId = operation;
+            assertThatCode(() -> limiter.checkCreate(1L, operationId)).doesNotThrowAnyException();
+        }
+        assertThatThrownBy(() -> limiter.checkCreate(1L, 100L)).isInstanceOf(RateLimitException.class);
+    }
+
+    @Test
+    void otherUserCannotDrainOperationBucket() {
+        final long victimOperation = 42L;
+        for (int i = 0; i < 5; i++) {
+            limiter.checkActivate(2L, victimOperation);
+        }
+        assertThatThrownBy(() -> limiter.checkActivate(2L, victimOperation))
+                .isInstanceOf(RateLimitException.class)
+                .extracting("retryAfterSeconds").isNotEqualTo(0L);
+
+        assertThatCode(() -> limiter.checkActivate(1L, victimOperation)).doesNotThrowAnyException();
+    }
+}
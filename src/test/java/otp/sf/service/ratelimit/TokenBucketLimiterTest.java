@@ -0,0 +1,132 @@
+package otp.sf.service.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TokenBucketLimiterTest {
+
+    private static final long PERIOD = TimeUnit.SECONDS.toNanos(10);
+
+    @Test
+    void allowsBurstUpToCapacityAndThenRefills() {
+        final var limiter = new TokenBucketLimiter<Long>(5, PERIOD, 4, 100);
+        final long now = 1_000_000_000L;
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryAcquire(1L, 1, now)).isZero();
+        }
+        final long wait = limiter.tryAcquire(1L, 1, now);
+        assertThat(wait).isEqualTo(PERIOD / 5);
+
+        assertThat(limiter.tryAcquire(1L, 1, now + wait)).isZero();
+        assertThat(limiter.tryAcquire(1L, 1, now + wait)).isPositive();
+    }
+
+    @Test
+    void keysHaveIndependentBuckets() {
+        final var limiter = new TokenBucketLimiter<Long>(1, PERIOD, 4, 100);
+
+        assertThat(limiter.tryAcquire(1L, 1, 0)).isZero();
+        assertThat(limiter.tryAcquire(1L, 1, 0)).isPositive();
+        assertThat(limiter.tryAcquire(2L, 1, 0)).isZero();
+    }
+
+    @Test
+    void multiPermitRequestIsAllOrNothing() {
+        final var limiter = new TokenBucketLimiter<Long>(10, PERIOD, 4, 100);
+
+        assertThat(limiter.tryAcquire(1L, 8, 0)).isZero();
+        assertThat(limiter.tryAcquire(1L, 3, 0)).isPositive();
+        assertThat(limiter.tryAcquire(1L, 2, 0)).isZero();
+    }
+
+    @Test
+    void requestLargerThanCapacityIsRejectedWithoutCharging() {
+        final var limiter = new TokenBucketLimiter<Long>(10, PERIOD, 4, 100);
+
+        assertThatThrownBy(() -> limiter.tryAcquire(1L, 1000, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(limiter.tryAcquire(1L, 10, 0)).isZero();
+    }
+
+    @Test
+    void waitNanosDoesNotCharge() {
+        final var limiter = new TokenBucketLimiter<Long>(1, PERIOD, 4, 100);
+
+        assertThat(limiter.waitNanos(1L, 1, 0)).isZero();
+        assertThat(limiter.size()).isZero();
+        assertThat(limiter.tryAcquire(1L, 1, 0)).isZero();
+        assertThat(limiter.waitNanos(1L, 1, 0)).isEqualTo(PERIOD);
+    }
+
+    @Test
+    void releaseRefundsUpToCapacity() {
+        final var limiter = new TokenBucketLimiter<Long>(2, PERIOD, 4, 100);
+        limiter.tryAcquire(1L, 2, 0);
+
+        limiter.release(1L, 1, 0);
+        assertThat(limiter.tryAcquire(1L, 1, 0)).isZero();
+        assertThat(limiter.tryAcquire(1L, 1, 0)).isPositive();
+
+        limiter.release(1L, 2, 0);
+        limiter.release(1L, 2, 0);
+        assertThat(limiter.tryAcquire(1L, 2, 0)).isZero();
+        assertThat(limiter.tryAcquire(1L, 1, 0)).isPositive();
+    }
+
+    @Test
+    void evictsOnlyFullBuckets() {
+        final var limiter = new TokenBucketLimiter<Long>(2, PERIOD, 1, 100);
+        limiter.tryAcquire(1L, 1, 0);
+        limiter.tryAcquire(2L, 2, 0);
+
+        assertThat(limiter.evictIdle(PERIOD / 2)).isEqualTo(1);
+        assertThat(limiter.size()).isEqualTo(1);
+        assertThat(limiter.evictIdle(PERIOD)).isEqualTo(1);
+        assertThat(limiter.size()).isZero();
+    }
+
+    @Test
+    void keysBeyondLimitShareOverflowBucket() {
+        final var limiter = new TokenBucketLimiter<Long>(1, PERIOD, 1, 2);
+        final long now = System.nanoTime();
+        limiter.tryAcquire(1L, 1, now);
+        limiter.tryAcquire(2L, 1, now);
+
+        assertThat(limiter.tryAcquire(3L, 1, now)).isZero();
+        assertThat(limiter.tryAcquire(4L, 1, now)).isPositive();
+        assertThat(limiter.size()).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentCallersNeverExceedCapacity() throws Exception {
+        final int capacity = 100;
+        final var limiter = new TokenBucketLimiter<Long>(capacity, TimeUnit.HOURS.toNanos(1), 4, 100);
+        final long now = System.nanoTime();
+        final var granted = new AtomicInteger();
+        final var start = new CountDownLatch(1);
+        try (var executor = Executors.newFixedThreadPool(8)) {
+            for (int t = 0; t < 8; t++) {
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 1000; i++) {
+                        if (limiter.tryAcquire(1L, 1, now) == 0) {
+                            granted.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        }
+
+        assertThat(granted).hasValue(capacity);
+    }
+}
@@ -0,0 +1,244 @@
+package otp.sf.service.reactive;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.util.ReflectionTestUtils;
+import otp.sf.domain.dto.OtpCodeActivateRequest;
+import otp.sf.domain.dto.OtpCodeResponse;
+import otp.sf.domain.model.Role;
+import otp.sf.domain.model.Status;
+import otp.sf.domain.model.User;
+import otp.sf.exception.ActivationFailedException;
+import otp.sf.exception.LogicException;
+import otp.sf.repository.ReactiveOtpCodeRepository;
+import otp.sf.service.OtpAttemptService;
+import otp.sf.service.OtpCodeRules;
+import otp.sf.service.cache.ActiveOtpCode;
+import otp.sf.service.cache.ActiveOtpCodeIndex;
+import otp.sf.service.expiry.OtpExpiryService;
+import otp.sf.service.hash.OtpCodeHasher;
+import otp.sf.service.journal.OtpJournal;
+import otp.sf.service.metrics.OtpMetrics;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Неблокирующая активация против H2 через R2DBC
+ * H2 не поддерживает UPDATE ... RETURNING, поэтому соединения теста переписывают такой запрос
+ * в равнозначный select ... from final table (update ...)
+ */
+class ReactiveOtpCodeServiceTest {
+
+    private static final Pattern RETURNING = Pattern.compile("(?is)^\\s*(update\\s.*?)\\s+returning\\s+(.*)$");
+    private static final int MAX_FAILED_ATTEMPTS = 3;
+    private static final String CODE = "12345";
+    private static final String WRONG_CODE = "00000";
+
+    private final User user = User.builder().id(1L).username("user").role(Role.ROLE_USER).build();
+    private final OtpCodeHasher codeHasher = mock(OtpCodeHasher.class);
+    private final OtpJournal journal = mock(OtpJournal.class);
+    private final OtpExpiryService expiryService = mock(OtpExpiryService.class);
+    private DatabaseClient databaseClient;
+    private ActiveOtpCodeIndex activeCodeIndex;
+    private ReactiveOtpCodeService service;
+
+    @BeforeEach
+    void setUp() {
+        // Своя БД на каждый тест
+        databaseClient = DatabaseClient.create(withReturning(
+                ConnectionFactories.get("r2dbc:h2:mem:///" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1")));
+        databaseClient.sql("""
+                        create table otp_code (
+                            id bigint primary key,
+                            user_id bigint,
+                            operation_id bigint not null unique,
+                            status varchar(255) not null,
+                            code varchar(255) not null,
+                            insert_time timestamp(6) not null,
+                            expiration_time bigint not null,
+                            failed_attempts integer not null default 0)""")
+                .then()
+                .block();
+
+        final var meterRegistry = new SimpleMeterRegistry();
+        activeCodeIndex = new ActiveOtpCodeIndex(meterRegistry);
+        ReflectionTestUtils.setField(activeCodeIndex, "shardCount", 4);
+        ReflectionTestUtils.setField(activeCodeIndex, "maxEntries", 100);
+        ReflectionTestUtils.invokeMethod(activeCodeIndex, "init");
+        final var metrics = new OtpMetrics(meterRegistry);
+        ReflectionTestUtils.invokeMethod(metrics, "init");
+        final var attemptService = mock(OtpAttemptService.class);
+        when(attemptService.getMaxFailedAttempts()).thenReturn(MAX_FAILED_ATTEMPTS);
+        when(codeHasher.matches(anyString(), anyString())).thenReturn(false);
+        when(codeHasher.matches(CODE, "hash")).thenReturn(true);
+
+        service = new ReactiveOtpCodeService(new ReactiveOtpCodeRepository(databaseClient), codeHasher,
+                activeCodeIndex, journal, metrics, attemptService, expiryService);
+    }
+
+    @Test
+    void activatesCodeFoundInDatabase() {
+        insert(10, 100, Status.ACTIVE);
+
+        final var response = activate(100, CODE).block();
+
+        assertThat(response.id()).isEqualTo(10);
+        assertThat(response.status()).isEqualTo(Status.USED);
+        assertThat(status(10)).isEqualTo(Status.USED);
+        verify(journal).append("USED", "user", 100, 10);
+        verify(expiryService).cancel(10);
+    }
+
+    /**
+     * Неверный код засчитывается каждой попыткой, последняя из допустимых блокирует код
+     */
+    @Test
+    void wrongCodeLocksAfterMaxFailedAttempts() {
+        insert(10, 100, Status.ACTIVE);
+
+        for (int attempt = 1; attempt < MAX_FAILED_ATTEMPTS; attempt++) {
+            assertThatThrownBy(() -> activate(100, WRONG_CODE).block())
+                    .isInstanceOf(ActivationFailedException.class)
+                    .hasMessage(OtpCodeRules.CODE_MISMATCH);
+        }
+        assertThatThrownBy(() -> activate(100, WRONG_CODE).block())
+                .isInstanceOf(ActivationFailedException.class)
+                .hasMessage(OtpCodeRules.CODE_LOCKED);
+
+        assertThat(status(10)).isEqualTo(Status.LOCKED);
+        assertThat(failedAttempts(10)).isEqualTo(MAX_FAILED_ATTEMPTS);
+        verify(journal).append("LOCKED", "user", 100, 10);
+        // Заблокированный код не активируется и верным значением
+        assertThatThrownBy(() -> activate(100, CODE).block())
+                .isInstanceOf(LogicException.class)
+                .hasMessage(OtpCodeRules.ACTIVE_CODE_NOT_FOUND);
+        assertThat(status(10)).isEqualTo(Status.LOCKED);
+    }
+
+    /**
+     * Запись индекса о коде, уже использованном другим экземпляром, не дает повторной активации и удаляется
+     */
+    @Test
+    void staleIndexEntryIsRejectedAndRemoved() {
+        insert(10, 100, Status.USED);
+        activeCodeIndex.put(new ActiveOtpCode(10, 1, 100, "hash", Long.MAX_VALUE, 0));
+
+        assertThatThrownBy(() -> activate(100, CODE).block())
+                .isInstanceOf(LogicException.class)
+                .hasMessage(OtpCodeRules.ACTIVE_CODE_NOT_FOUND);
+
+        assertThat(activeCodeIndex.find(1, 100)).isEmpty();
+        verify(expiryService).cancel(10);
+        verify(journal, never()).append(eq("USED"), anyString(), anyLong(), anyLong());
+    }
+
+    /**
+     * Неверный код по устаревшей записи индекса не засчитывается, запись удаляется
+     */
+    @Test
+    void wrongCodeForStaleIndexEntryRemovesIt() {
+        insert(10, 100, Status.EXPIRED);
+        activeCodeIndex.put(new ActiveOtpCode(10, 1, 100, "hash", Long.MAX_VALUE, 0));
+
+        assertThatThrownBy(() -> activate(100, WRONG_CODE).block())
+                .isInstanceOf(LogicException.class)
+                .hasMessage(OtpCodeRules.ACTIVE_CODE_NOT_FOUND);
+
+        assertThat(activeCodeIndex.find(1, 100)).isEmpty();
+        assertThat(failedAttempts(10)).isZero();
+    }
+
+    @Test
+    void codeInfoIsLimitedToOwner() {
+        insert(10, 100, Status.ACTIVE);
+        final var stranger = User.builder().id(2L).username("stranger").role(Role.ROLE_USER).build();
+
+        assertThat(service.getCodeInfo(user, 100).block().status()).isEqualTo(Status.ACTIVE);
+        assertThatThrownBy(() -> service.getCodeInfo(stranger, 100).block())
+                .isInstanceOf(LogicException.class)
+                .hasMessage(OtpCodeRules.CODE_NOT_FOUND);
+    }
+
+    private Mono<OtpCodeResponse> activate(final long operationId, final String code) {
+        return service.activateCode(user, operationId, new OtpCodeActivateRequest(code));
+    }
+
+    private void insert(final long id, final long operationId, final Status status) {
+        databaseClient.sql("""
+                        insert into otp_code (id, user_id, operation_id, status, code, insert_time, expiration_time)
+                        values (:id, :userId, :operationId, :status, 'hash', :insertTime, 600000)""")
+                .bind("id", id)
+                .bind("userId", user.getId())
+                .bind("operationId", operationId)
+                .bind("status", status.name())
+                .bind("insertTime", LocalDateTime.now())
+                .then()
+                .block();
+    }
+
+    private Status status(final long id) {
+        return databaseClient.sql("select status from otp_code where id = :id")
+                .bind("id", id)
+                .map(row -> Status.valueOf(row.get("status", String.class)))
+                .one()
+                .block();
+    }
+
+    private int failedAttempts(final long id) {
+        return databaseClient.sql("select failed_attempts from otp_code where id = :id")
+                .bind("id", id)
+                .map(row -> row.get("failed_attempts", Integer.class))
+                .one()
+                .block();
+    }
+
+    private static ConnectionFactory withReturning(final ConnectionFactory factory) {
+        return new ConnectionFactory() {
+            @Override
+            public Publisher<? extends Connection> create() {
+                return Mono.from(factory.create()).map(ReactiveOtpCodeServiceTest::withReturning);
+            }
+
+            @Override
+            public ConnectionFactoryMetadata getMetadata() {
+                return factory.getMetadata();
+            }
+        };
+    }
+
+    private static Connection withReturning(final Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("createStatement")) {
+                        args[0] = RETURNING.matcher((String) args[0]).replaceFirst("select $2 from final table ($1)");
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
@@ -0,0 +1,86 @@
+package otp.sf.service.token;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTest {
+
+    @Test
+    void emptyFilterContainsNothing() {
+        final var filter = new BloomFilter(0, 0.01);
+
+        for (long key = 0; key < 1_000; key++) {
+            assertThat(filter.mightContain(key)).isFalse();
+        }
+    }
+
+    @Test
+    void hasNoFalseNegatives() {
+        final var filter = new BloomFilter(10_000, 0.01);
+        for (long key = 0; key < 10_000; key++) {
+            filter.add(key * 7919);
+        }
+
+        for (long key = 0; key < 10_000; key++) {
+            assertThat(filter.mightContain(key * 7919)).isTrue();
+        }
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTarget() {
+        final double target = 0.01;
+        final var filter = new BloomFilter(10_000, target);
+        for (long key = 0; key < 10_000; key++) {
+            filter.add(key);
+        }
+
+        int falsePositives = 0;
+        final int probes = 100_000;
+        for (long key = 1_000_000; key < 1_000_000 + probes; key++) {
+            if (filter.mightContain(key)) {
+                falsePositives++;
+            }
+        }
+
+        assertThat((double) falsePositives / probes).isLessThan(target * 2);
+    }
+
+    /**
+     * Потоки устанавливают биты одного слова через CAS: ни одна установка не теряется
+     */
+    @Test
+    void concurrentAddsAreNotLost() throws Exception {
+        final var filter = new BloomFilter(1_000, 0.01);
+        final int threads = 8;
+        final int perThread = 1_000;
+        final var start = new CountDownLatch(1);
+        final var results = new ArrayList<Future<?>>();
+        try (var executor = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                final long base = (long) t * perThread;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (long key = base; key < base + perThread; key++) {
+                        filter.add(key);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (final var result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+        }
+
+        for (long key = 0; key < (long) threads * perThread; key++) {
+            assertThat(filter.mightContain(key)).isTrue();
+        }
+    }
+}